@@ -5,7 +5,15 @@ import com.codepvg.code.dto.UserProfile;
 import com.codepvg.code.model.Problem;
 import com.codepvg.code.model.Submission;
 import com.codepvg.code.model.User;
+import com.codepvg.code.service.Judge0ConcurrencyLimiter;
+import com.codepvg.code.service.Judge0HedgedRunner;
+import com.codepvg.code.service.Judge0ResultPoller;
+import com.codepvg.code.service.Judge0SubmitBatcher;
+import com.codepvg.code.service.JudgeRouter;
+import com.codepvg.code.service.JudgeSpeedCalibrator;
+import com.codepvg.code.service.LeaderboardService;
 import com.codepvg.code.service.ProblemService;
+import com.codepvg.code.service.ShadowJudgeService;
 import com.codepvg.code.service.SubmissionService;
 import com.codepvg.code.service.UserService;
 import jakarta.validation.Valid;
@@ -35,6 +43,30 @@ public class AdminController {
     @Autowired
     private SubmissionService submissionService;
 
+    @Autowired
+    private ShadowJudgeService shadowJudgeService;
+
+    @Autowired
+    private JudgeRouter judgeRouter;
+
+    @Autowired
+    private Judge0ResultPoller judge0ResultPoller;
+
+    @Autowired
+    private Judge0SubmitBatcher judge0SubmitBatcher;
+
+    @Autowired
+    private Judge0HedgedRunner judge0HedgedRunner;
+
+    @Autowired
+    private Judge0ConcurrencyLimiter judge0ConcurrencyLimiter;
+
+    @Autowired
+    private JudgeSpeedCalibrator judgeSpeedCalibrator;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
     // User Management APIs
     @GetMapping("/users/pending")
     public ResponseEntity<List<UserProfile>> getPendingUsers() {
@@ -249,18 +281,27 @@ public class AdminController {
     // Leaderboard and Student Analytics APIs
     
     @GetMapping("/leaderboard")
-    public ResponseEntity<?> getLeaderboard() {
+    public ResponseEntity<?> getLeaderboard(@RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "50") int limit) {
         try {
-            List<User> leaderboard = userService.getLeaderboard();
+            // One page of approved students in leaderboard order; full documents and submissions are
+            // loaded only for the students on it
+            LeaderboardService.Window page = leaderboardService.page(cursor, Math.max(1, Math.min(limit, 100)));
+            List<LeaderboardService.Standing> standings = page.getStandings();
+            List<String> ids = new ArrayList<>();
+            for (LeaderboardService.Standing standing : standings) {
+                ids.add(standing.getUserId());
+            }
+            Map<String, User> studentsById = userService.getUsersById(ids);
             
-            // Filter only students and add additional analytics
+            // Add additional analytics
             List<Map<String, Object>> studentLeaderboard = new ArrayList<>();
             
-            for (int i = 0; i < leaderboard.size(); i++) {
-                User user = leaderboard.get(i);
-                if (user.getRole() == User.Role.STUDENT && user.getStatus() == User.UserStatus.APPROVED) {
+            for (int i = 0; i < standings.size(); i++) {
+                User user = studentsById.get(standings.get(i).getUserId());
+                if (user != null) {
                     Map<String, Object> studentData = new HashMap<>();
-                    studentData.put("rank", i + 1);
+                    studentData.put("rank", page.getFirstRank() + i);
                     studentData.put("id", user.getId());
                     studentData.put("username", user.getUsername());
                     studentData.put("fullName", user.getFullName());
@@ -295,7 +336,8 @@ public class AdminController {
             
             Map<String, Object> response = new HashMap<>();
             response.put("leaderboard", studentLeaderboard);
-            response.put("totalStudents", studentLeaderboard.size());
+            response.put("totalStudents", page.getTotalUsers());
+            response.put("nextCursor", page.getNextCursor());
             response.put("generatedAt", java.time.LocalDateTime.now());
             
             return ResponseEntity.ok(response);
@@ -308,17 +350,27 @@ public class AdminController {
     }
 
     @GetMapping("/leaderboard/detailed")
-    public ResponseEntity<?> getDetailedLeaderboard() {
+    public ResponseEntity<?> getDetailedLeaderboard(@RequestParam(required = false) String cursor,
+                                                    @RequestParam(defaultValue = "50") int limit) {
         try {
-            List<User> allStudents = userService.getApprovedStudents();
+            // One page of approved students in leaderboard order; full documents and submissions are
+            // loaded only for the students on it
+            LeaderboardService.Window page = leaderboardService.page(cursor, Math.max(1, Math.min(limit, 100)));
+            List<LeaderboardService.Standing> standings = page.getStandings();
+            List<String> ids = new ArrayList<>();
+            for (LeaderboardService.Standing standing : standings) {
+                ids.add(standing.getUserId());
+            }
+            Map<String, User> studentsById = userService.getUsersById(ids);
             List<Map<String, Object>> detailedLeaderboard = new ArrayList<>();
             
-            for (int i = 0; i < allStudents.size(); i++) {
-                User user = allStudents.get(i);
+            for (int i = 0; i < standings.size(); i++) {
+                User user = studentsById.get(standings.get(i).getUserId());
+                if (user == null) continue;
                 Map<String, Object> studentData = new HashMap<>();
                 
                 // Basic info
-                studentData.put("rank", i + 1);
+                studentData.put("rank", page.getFirstRank() + i);
                 studentData.put("id", user.getId());
                 studentData.put("username", user.getUsername());
                 studentData.put("fullName", user.getFullName());
@@ -406,26 +458,10 @@ public class AdminController {
                 detailedLeaderboard.add(studentData);
             }
             
-            // Sort by total solved (descending), then by total submissions (ascending)
-            detailedLeaderboard.sort((a, b) -> {
-                int solvedA = (Integer) a.get("totalSolved");
-                int solvedB = (Integer) b.get("totalSolved");
-                if (solvedA != solvedB) {
-                    return Integer.compare(solvedB, solvedA); // Descending
-                }
-                int submissionsA = (Integer) a.get("totalSubmissions");
-                int submissionsB = (Integer) b.get("totalSubmissions");
-                return Integer.compare(submissionsA, submissionsB); // Ascending
-            });
-            
-            // Update ranks after sorting
-            for (int i = 0; i < detailedLeaderboard.size(); i++) {
-                detailedLeaderboard.get(i).put("rank", i + 1);
-            }
-            
             Map<String, Object> response = new HashMap<>();
             response.put("leaderboard", detailedLeaderboard);
-            response.put("totalStudents", detailedLeaderboard.size());
+            response.put("totalStudents", page.getTotalUsers());
+            response.put("nextCursor", page.getNextCursor());
             response.put("generatedAt", java.time.LocalDateTime.now());
             
             return ResponseEntity.ok(response);
@@ -438,31 +474,12 @@ public class AdminController {
     }
 
     @GetMapping("/leaderboard/summary")
-    public ResponseEntity<?> getAdminLeaderboardSummary() {
+    public ResponseEntity<?> getAdminLeaderboardSummary(@RequestParam(required = false) String cursor,
+                                                        @RequestParam(defaultValue = "50") int limit) {
         try {
-            // Fetch approved students and sort by totalSolved desc, then totalSubmissions asc
-            List<User> students = userService.getApprovedStudents();
-            int totalUsers = students.size();
-            students.sort((a, b) -> {
-                int solvedComparison = Integer.compare(b.getTotalSolved(), a.getTotalSolved());
-                if (solvedComparison != 0) return solvedComparison;
-                return Integer.compare(a.getTotalSubmissions(), b.getTotalSubmissions());
-            });
-
-            // Build performers for ALL approved students
-            List<Map<String, Object>> performers = new ArrayList<>();
-            for (User u : students) {
-                List<Submission> subs = submissionService.getUserSubmissions(u.getId());
-                int streak = computeCurrentStreakForAdmin(subs);
-                Map<String, Object> row = new HashMap<>();
-                row.put("userId", u.getId());
-                row.put("fullName", u.getFullName());
-                row.put("branch", u.getBranch());
-                row.put("year", u.getYear());
-                row.put("solved", u.getTotalSolved());
-                row.put("streak", streak);
-                performers.add(row);
-            }
+            // One page of approved students by totalSolved desc, then totalSubmissions asc
+            LeaderboardService.Window page = leaderboardService.page(cursor, Math.max(1, Math.min(limit, 100)));
+            int totalUsers = page.getTotalUsers();
 
             // Build summary
             Map<String, Object> summary = new HashMap<>();
@@ -472,7 +489,8 @@ public class AdminController {
 
             Map<String, Object> response = new HashMap<>();
             response.put("summary", summary);
-            response.put("performers", performers);
+            response.put("performers", page.rows());
+            response.put("nextCursor", page.getNextCursor());
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -482,25 +500,6 @@ public class AdminController {
         }
     }
 
-    // Helper: compute current streak for a user (based on ACCEPTED submissions)
-    private int computeCurrentStreakForAdmin(List<Submission> submissions) {
-        if (submissions == null || submissions.isEmpty()) return 0;
-        java.util.Set<java.time.LocalDate> days = new java.util.HashSet<>();
-        for (Submission s : submissions) {
-            if (s.getStatus() == Submission.SubmissionStatus.ACCEPTED && s.getSubmittedAt() != null) {
-                days.add(s.getSubmittedAt().toLocalDate());
-            }
-        }
-        if (days.isEmpty()) return 0;
-        int streak = 0;
-        java.time.LocalDate d = java.time.LocalDate.now();
-        while (days.contains(d)) {
-            streak++;
-            d = d.minusDays(1);
-        }
-        return streak;
-    }
-
     @GetMapping("/students/{studentId}/performance")
     public ResponseEntity<?> getStudentPerformance(@PathVariable String studentId) {
         try {
@@ -613,6 +612,48 @@ public class AdminController {
         }
     }
 
+    // Shadow judging: verdict agreement and latency of the second engine, per language
+    @GetMapping("/analytics/judge-shadow")
+    public ResponseEntity<?> getShadowJudgeMetrics() {
+        return ResponseEntity.ok(shadowJudgeService.metrics());
+    }
+
+    // Engine routing settings and the state of the Judge0 circuit breaker
+    @GetMapping("/analytics/judge-routing")
+    public ResponseEntity<?> getJudgeRouting() {
+        return ResponseEntity.ok(judgeRouter.status());
+    }
+
+    // Per-engine speed factors from the periodic benchmark, used to normalize execution times
+    @GetMapping("/analytics/judge-calibration")
+    public ResponseEntity<?> getJudgeCalibration() {
+        return ResponseEntity.ok(judgeSpeedCalibrator.status());
+    }
+
+    // Shared Judge0 result poller: pending tokens, current interval and batch requests made
+    @GetMapping("/analytics/judge0-poller")
+    public ResponseEntity<?> getJudge0Poller() {
+        return ResponseEntity.ok(judge0ResultPoller.status());
+    }
+
+    // Cross-user submission batching: batches sent and their average size
+    @GetMapping("/analytics/judge0-batching")
+    public ResponseEntity<?> getJudge0Batching() {
+        return ResponseEntity.ok(judge0SubmitBatcher.status());
+    }
+
+    // Hedged Judge0 runs: per-language p95 latency, hedges sent and how often the hedge won
+    @GetMapping("/analytics/judge0-hedging")
+    public ResponseEntity<?> getJudge0Hedging() {
+        return ResponseEntity.ok(judge0HedgedRunner.status());
+    }
+
+    // Adaptive Judge0 concurrency: current limit, runs in flight and latency averages
+    @GetMapping("/analytics/judge0-concurrency")
+    public ResponseEntity<?> getJudge0Concurrency() {
+        return ResponseEntity.ok(judge0ConcurrencyLimiter.status());
+    }
+
     // Helper method to generate default code templates
     private Problem.CodeTemplates generateDefaultCodeTemplates(String problemTitle, String functionName) {
         Problem.CodeTemplates templates = new Problem.CodeTemplates();
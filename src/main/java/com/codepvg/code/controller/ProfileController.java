@@ -4,6 +4,7 @@ import com.codepvg.code.dto.ProfileUpdateDto;
 import com.codepvg.code.model.Problem;
 import com.codepvg.code.model.Submission;
 import com.codepvg.code.model.User;
+import com.codepvg.code.service.LeaderboardService;
 import com.codepvg.code.service.ProblemService;
 import com.codepvg.code.service.SubmissionService;
 import com.codepvg.code.service.UserService;
@@ -32,6 +33,9 @@ public class ProfileController {
     @Autowired
     private ProblemService problemService;
 
+    @Autowired
+    private LeaderboardService leaderboardService;
+
     // Get current user's profile
     @GetMapping
     public ResponseEntity<?> getProfile(Authentication auth) {
@@ -220,6 +224,8 @@ public class ProfileController {
         // Basic statistics
         profile.put("totalSolved", user.getTotalSolved());
         profile.put("totalSubmissions", user.getTotalSubmissions());
+        profile.put("currentStreak", UserService.currentStreak(user.getCurrentStreak(), user.getLastAcceptedDay()));
+        profile.put("maxStreak", user.getMaxStreak());
         
         // Calculate acceptance rate
         double acceptanceRate = user.getTotalSubmissions() > 0 
@@ -573,7 +579,7 @@ public class ProfileController {
         return streak;
     }
 
-    private Map<String, Object> getSubmissionCalendar(List<Submission> submissions) {
+    private Map<String, Object> getSubmissionCalendar(List<Submission> submissions, User user) {
         Map<String, Object> calendar = new HashMap<>();
         
         // Get submissions from last 365 days
@@ -601,8 +607,9 @@ public class ProfileController {
             .sum();
         
         long activeDays = dailySubmissions.size();
-        long maxStreak = calculateMaxStreak(submissions);
-        long currentStreak = calculateCurrentStreak(submissions);
+        // Streaks of days with an accepted submission, stored on the user
+        long maxStreak = user.getMaxStreak();
+        long currentStreak = UserService.currentStreak(user.getCurrentStreak(), user.getLastAcceptedDay());
         
         // Calculate contribution levels (0-4 scale like GitHub)
         Map<String, Integer> contributionLevels = calculateContributionLevels(dailySubmissions);
@@ -759,33 +766,8 @@ public class ProfileController {
     }
     
     private Map<String, Object> getUserRanking(User user) {
-        Map<String, Object> ranking = new HashMap<>();
-        
-        // Get all approved students for ranking
-        List<User> allStudents = userService.getApprovedStudents();
-        
-        // Sort by total solved (descending), then by total submissions (ascending)
-        allStudents.sort((a, b) -> {
-            int solvedComparison = Integer.compare(b.getTotalSolved(), a.getTotalSolved());
-            if (solvedComparison != 0) return solvedComparison;
-            return Integer.compare(a.getTotalSubmissions(), b.getTotalSubmissions());
-        });
-        
-        // Find user's rank
-        int userRank = -1;
-        for (int i = 0; i < allStudents.size(); i++) {
-            if (allStudents.get(i).getId().equals(user.getId())) {
-                userRank = i + 1;
-                break;
-            }
-        }
-        
-        ranking.put("globalRank", userRank);
-        ranking.put("totalUsers", allStudents.size());
-        ranking.put("percentile", userRank > 0 ? 
-            Math.round((1.0 - (double) userRank / allStudents.size()) * 10000.0) / 100.0 : 0.0);
-        
-        return ranking;
+        // Rank among approved students, from the in-memory leaderboard
+        return leaderboardService.ranking(user.getId());
     }
     
     private List<Map<String, Object>> getSolvedProblemsDetails(User user, List<Problem> allProblems) {
@@ -862,59 +844,6 @@ public class ProfileController {
         return Math.round((double) solved / total * 10000.0) / 100.0;
     }
     
-    private long calculateMaxStreak(List<Submission> submissions) {
-        if (submissions.isEmpty()) return 0;
-        
-        Set<String> submissionDates = submissions.stream()
-            .map(s -> s.getSubmittedAt().toLocalDate().toString())
-            .collect(Collectors.toSet());
-        
-        List<String> sortedDates = submissionDates.stream()
-            .sorted()
-            .collect(Collectors.toList());
-        
-        long maxStreak = 1;
-        long currentStreak = 1;
-        
-        for (int i = 1; i < sortedDates.size(); i++) {
-            // Check if dates are consecutive
-            if (isConsecutiveDay(sortedDates.get(i-1), sortedDates.get(i))) {
-                currentStreak++;
-                maxStreak = Math.max(maxStreak, currentStreak);
-            } else {
-                currentStreak = 1;
-            }
-        }
-        
-        return maxStreak;
-    }
-    
-    private long calculateCurrentStreak(List<Submission> submissions) {
-        if (submissions.isEmpty()) return 0;
-        
-        Set<String> submissionDates = submissions.stream()
-            .map(s -> s.getSubmittedAt().toLocalDate().toString())
-            .collect(Collectors.toSet());
-        
-        String today = LocalDateTime.now().toLocalDate().toString();
-        String yesterday = LocalDateTime.now().minusDays(1).toLocalDate().toString();
-        
-        if (!submissionDates.contains(today) && !submissionDates.contains(yesterday)) {
-            return 0;
-        }
-        
-        // Calculate streak from today backwards
-        long streak = 0;
-        LocalDateTime currentDate = LocalDateTime.now().toLocalDate().atStartOfDay();
-        
-        while (submissionDates.contains(currentDate.toLocalDate().toString())) {
-            streak++;
-            currentDate = currentDate.minusDays(1);
-        }
-        
-        return streak;
-    }
-    
     private boolean isConsecutiveDay(String date1, String date2) {
         try {
             LocalDateTime d1 = LocalDateTime.parse(date1 + "T00:00:00");
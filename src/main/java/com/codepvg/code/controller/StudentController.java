@@ -5,8 +5,12 @@ import com.codepvg.code.model.Problem;
 import com.codepvg.code.model.Submission;
 import com.codepvg.code.model.User;
 import com.codepvg.code.service.CodeWrapperService;
+import com.codepvg.code.service.JudgeRouter;
+import com.codepvg.code.service.LeaderboardService;
 import com.codepvg.code.service.ProblemService;
+import com.codepvg.code.service.ProblemStatsAggregator;
 import com.codepvg.code.service.SubmissionService;
+import com.codepvg.code.service.SyntaxCheckService;
 import com.codepvg.code.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,6 +34,8 @@ import java.util.Set;
 @CrossOrigin(origins = "http://localhost:3000")
 public class StudentController {
 
+    private static final int MAX_LEADERBOARD_PAGE = 100;
+
     @Autowired
     private ProblemService problemService;
 
@@ -42,6 +48,18 @@ public class StudentController {
     @Autowired
     private CodeWrapperService codeWrapperService;
 
+    @Autowired
+    private ProblemStatsAggregator problemStatsAggregator;
+
+    @Autowired
+    private SyntaxCheckService syntaxCheckService;
+
+    @Autowired
+    private JudgeRouter judgeRouter;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
     // Dashboard API
     @GetMapping("/dashboard")
     public ResponseEntity<?> getDashboard(Authentication auth) {
@@ -59,25 +77,8 @@ public class StudentController {
             User user = userOpt.get();
             List<Submission> userSubmissions = submissionService.getUserSubmissions(user.getId());
             
-            // Compute rank among approved students (by totalSolved desc, then totalSubmissions asc)
-            List<User> allStudents = userService.getApprovedStudents();
-            allStudents.sort((a, b) -> {
-                int solvedComparison = Integer.compare(b.getTotalSolved(), a.getTotalSolved());
-                if (solvedComparison != 0) return solvedComparison;
-                return Integer.compare(a.getTotalSubmissions(), b.getTotalSubmissions());
-            });
-            int userRank = -1;
-            for (int i = 0; i < allStudents.size(); i++) {
-                if (allStudents.get(i).getId().equals(user.getId())) {
-                    userRank = i + 1;
-                    break;
-                }
-            }
-            Map<String, Object> rank = new HashMap<>();
-            rank.put("globalRank", userRank);
-            rank.put("totalUsers", allStudents.size());
-            rank.put("percentile", userRank > 0 ?
-                Math.round((1.0 - (double) userRank / Math.max(1, allStudents.size())) * 10000.0) / 100.0 : 0.0);
+            // Rank among approved students (by totalSolved desc, then totalSubmissions asc)
+            Map<String, Object> rank = leaderboardService.ranking(user.getId());
 
             // Compute badges
             List<Map<String, Object>> badges = new java.util.ArrayList<>();
@@ -185,8 +186,8 @@ public class StudentController {
         List<Map<String, Object>> result = new ArrayList<>();
         int number = 1;
         for (Problem p : problems) {
-            int submissions = p.getTotalSubmissions();
-            int solved = p.getTotalSolved();
+            int submissions = p.getTotalSubmissions() + problemStatsAggregator.pendingSubmissions(p.getId());
+            int solved = p.getTotalSolved() + problemStatsAggregator.pendingSolved(p.getId());
             double percentage = submissions > 0 ? (solved * 100.0) / submissions : 0.0;
 
             Map<String, Object> item = new HashMap<>();
@@ -270,8 +271,8 @@ public class StudentController {
         problem.put("createdAt", p.getCreatedAt());
         problem.put("updatedAt", p.getUpdatedAt());
         problem.put("createdBy", p.getCreatedBy());
-        problem.put("totalSubmissions", p.getTotalSubmissions());
-        problem.put("totalSolved", p.getTotalSolved());
+        problem.put("totalSubmissions", p.getTotalSubmissions() + problemStatsAggregator.pendingSubmissions(problemId));
+        problem.put("totalSolved", p.getTotalSolved() + problemStatsAggregator.pendingSolved(problemId));
         problem.put("targetYears", p.getTargetYears());
         problem.put("codeTemplates", p.getCodeTemplates());
         problem.put("allSubmission", allSubmission);
@@ -377,8 +378,7 @@ public class StudentController {
             String wrappedCode = codeWrapperService.wrapCodeForProblem(
                 submissionDto.getSourceCode(),
                 submissionDto.getLanguage(),
-                problem.getTitle(),
-                ""
+                problem
             );
             debugInfo.put("wrappedCode", wrappedCode);
             
@@ -391,6 +391,40 @@ public class StudentController {
         }
     }
 
+    // Compile-only check for the editor: no Judge0 run and nothing stored
+    @PostMapping("/submissions/check")
+    public ResponseEntity<?> checkCode(@Valid @RequestBody SubmissionDto submissionDto) {
+        try {
+            Optional<Problem> problemOpt = problemService.getProblemById(submissionDto.getProblemId());
+            if (!problemOpt.isPresent()) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Problem not found");
+                return ResponseEntity.badRequest().body(error);
+            }
+
+            // Checked the way it will be judged, so signature problems see the driver's imports
+            String wrappedCode = codeWrapperService.wrapCodeForProblem(
+                submissionDto.getSourceCode(),
+                submissionDto.getLanguage(),
+                problemOpt.get()
+            );
+            Map<String, Object> result = syntaxCheckService.check(
+                submissionDto.getSourceCode(), wrappedCode, submissionDto.getLanguageId(),
+                !judgeRouter.useLocal(submissionDto.getLanguageId(), problemOpt.get()));
+            if (result == null) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Syntax check is not available for language " + submissionDto.getLanguageId());
+                return ResponseEntity.badRequest().body(error);
+            }
+            return ResponseEntity.ok(result);
+
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to check code: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
     @PostMapping("/submissions/run")
     public ResponseEntity<?> runCode(@Valid @RequestBody SubmissionDto submissionDto, 
                                    Authentication auth) {
@@ -569,6 +603,42 @@ public class StudentController {
         }
     }
 
+    // Withdraws a submission that is still judging, e.g. after spotting a bug and resubmitting
+    @DeleteMapping("/submissions/{submissionId}")
+    public ResponseEntity<?> cancelSubmission(@PathVariable String submissionId,
+                                              Authentication auth) {
+        try {
+            Optional<Submission> submissionOpt = submissionService.getSubmissionById(submissionId);
+            if (!submissionOpt.isPresent()) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Submission not found");
+                return ResponseEntity.badRequest().body(error);
+            }
+
+            // Access check: only the owner can cancel (email-based subject)
+            String email = auth.getName();
+            Optional<User> userOpt = userService.findByEmail(email);
+            if (!userOpt.isPresent() || !submissionOpt.get().getUserId().equals(userOpt.get().getId())) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Access denied");
+                return ResponseEntity.badRequest().body(error);
+            }
+
+            Optional<Submission> cancelled = submissionService.cancelSubmission(submissionId, "Cancelled by user");
+            if (!cancelled.isPresent()) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Submission has already been judged");
+                return ResponseEntity.badRequest().body(error);
+            }
+
+            return ResponseEntity.ok(cancelled.get());
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to cancel submission: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
     @GetMapping("/submissions/{submissionId}/code")
     public ResponseEntity<?> getSubmissionCode(@PathVariable String submissionId,
                                                Authentication auth) {
@@ -606,24 +676,61 @@ public class StudentController {
         }
     }
 
-    // Leaderboard API
+    // Leaderboard API: a page of leaderboard fields only, continued with nextCursor
     @GetMapping("/leaderboard")
-    public ResponseEntity<List<User>> getLeaderboard() {
-        List<User> leaderboard = userService.getLeaderboard();
-        return ResponseEntity.ok(leaderboard);
+    public ResponseEntity<?> getLeaderboard(@RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            LeaderboardService.Window page = leaderboardService.page(cursor, clampLeaderboardLimit(limit));
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("entries", page.rows());
+            response.put("nextCursor", page.getNextCursor());
+            response.put("totalUsers", page.getTotalUsers());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to load leaderboard: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // The current user with up to radius students above and below
+    @GetMapping("/leaderboard/around-me")
+    public ResponseEntity<?> getLeaderboardAroundMe(Authentication auth,
+                                                    @RequestParam(defaultValue = "5") int radius) {
+        try {
+            Optional<User> userOpt = userService.findByEmail(auth.getName());
+            if (!userOpt.isPresent()) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "User not found");
+                return ResponseEntity.badRequest().body(error);
+            }
+
+            String userId = userOpt.get().getId();
+            LeaderboardService.Window window = leaderboardService.around(userId,
+                    Math.max(0, Math.min(radius, MAX_LEADERBOARD_PAGE / 2)));
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("yourRank", leaderboardService.rank(userId));
+            response.put("entries", window.rows());
+            response.put("totalUsers", window.getTotalUsers());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to load leaderboard: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
     }
 
     @GetMapping("/leaderboard/summary")
-    public ResponseEntity<?> getLeaderboardSummary(Authentication auth) {
+    public ResponseEntity<?> getLeaderboardSummary(Authentication auth,
+                                                   @RequestParam(required = false) String cursor,
+                                                   @RequestParam(defaultValue = "50") int limit) {
         try {
-            // Fetch approved students and sort by totalSolved desc, then totalSubmissions asc
-            List<User> allStudents = userService.getApprovedStudents();
-            int totalUsers = allStudents.size();
-            allStudents.sort((a, b) -> {
-                int solvedComparison = Integer.compare(b.getTotalSolved(), a.getTotalSolved());
-                if (solvedComparison != 0) return solvedComparison;
-                return Integer.compare(a.getTotalSubmissions(), b.getTotalSubmissions());
-            });
+            // One page of approved students by totalSolved desc, then totalSubmissions asc
+            LeaderboardService.Window page = leaderboardService.page(cursor, clampLeaderboardLimit(limit));
+            int totalUsers = page.getTotalUsers();
 
             // Resolve current user
             String email = auth != null ? auth.getName() : null;
@@ -631,37 +738,10 @@ public class StudentController {
             User me = meOpt.orElse(null);
 
             // Compute current user's rank
-            int yourRank = -1;
-            if (me != null) {
-                for (int i = 0; i < allStudents.size(); i++) {
-                    if (allStudents.get(i).getId().equals(me.getId())) {
-                        yourRank = i + 1;
-                        break;
-                    }
-                }
-            }
-
-            // Compute current user's streak
-            int currentStreak = 0;
-            if (me != null) {
-                List<Submission> mySubs = submissionService.getUserSubmissions(me.getId());
-                currentStreak = computeCurrentStreak(mySubs);
-            }
+            int yourRank = me != null ? leaderboardService.rank(me.getId()) : -1;
 
-            // Build performers for ALL users (sorted already)
-            List<Map<String, Object>> performers = new ArrayList<>();
-            for (User u : allStudents) {
-                List<Submission> subs = submissionService.getUserSubmissions(u.getId());
-                int streak = computeCurrentStreak(subs);
-                Map<String, Object> row = new HashMap<>();
-                row.put("userId", u.getId());
-                row.put("fullName", u.getFullName());
-                row.put("branch", u.getBranch());
-                row.put("year", u.getYear());
-                row.put("solved", u.getTotalSolved());
-                row.put("streak", streak);
-                performers.add(row);
-            }
+            // Current user's streak, maintained as verdicts are recorded
+            int currentStreak = me != null ? UserService.currentStreak(me.getCurrentStreak(), me.getLastAcceptedDay()) : 0;
 
             Map<String, Object> header = new HashMap<>();
             header.put("yourRank", yourRank);
@@ -688,7 +768,8 @@ public class StudentController {
             Map<String, Object> response = new HashMap<>();
             response.put("summary", header);
             response.put("activity", activity);
-            response.put("performers", performers);
+            response.put("performers", page.rows());
+            response.put("nextCursor", page.getNextCursor());
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -698,25 +779,8 @@ public class StudentController {
         }
     }
 
-    // Compute the current streak in days based on ACCEPTED submissions.
-    // Streak counts consecutive days ending today with at least one accepted submission per day.
-    private int computeCurrentStreak(List<Submission> submissions) {
-        if (submissions == null || submissions.isEmpty()) return 0;
-        // Collect unique dates with ACCEPTED submissions
-        Set<java.time.LocalDate> days = new HashSet<>();
-        for (Submission s : submissions) {
-            if (s.getStatus() == Submission.SubmissionStatus.ACCEPTED && s.getSubmittedAt() != null) {
-                days.add(s.getSubmittedAt().toLocalDate());
-            }
-        }
-        if (days.isEmpty()) return 0;
-        int streak = 0;
-        java.time.LocalDate d = java.time.LocalDate.now();
-        while (days.contains(d)) {
-            streak++;
-            d = d.minusDays(1);
-        }
-        return streak;
+    private static int clampLeaderboardLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LEADERBOARD_PAGE));
     }
 
     // Compute daily counts of ACCEPTED submissions between [start, end]
@@ -31,6 +31,10 @@ public class ProblemCreateDto {
     private List<String> targetYears;  // ["first", "second", "third", "final"]
     
     private CodeTemplatesDto codeTemplates;  // Code templates for different languages
+    
+    private Problem.FunctionSignature functionSignature;  // Optional typed method students implement
+
+    private Problem.Checker checker;  // Optional special judge for problems with several valid outputs
 
     public static class ExampleDto {
         private String input;
@@ -142,4 +146,10 @@ public class ProblemCreateDto {
 
     public CodeTemplatesDto getCodeTemplates() { return codeTemplates; }
     public void setCodeTemplates(CodeTemplatesDto codeTemplates) { this.codeTemplates = codeTemplates; }
+
+    public Problem.FunctionSignature getFunctionSignature() { return functionSignature; }
+    public void setFunctionSignature(Problem.FunctionSignature functionSignature) { this.functionSignature = functionSignature; }
+
+    public Problem.Checker getChecker() { return checker; }
+    public void setChecker(Problem.Checker checker) { this.checker = checker; }
 }
\ No newline at end of file
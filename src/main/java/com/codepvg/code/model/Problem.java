@@ -30,6 +30,9 @@ public class Problem {
     private int totalSolved;
     private List<String> targetYears; // ["first", "second", "third", "final"]
     private CodeTemplates codeTemplates; // Code templates for different languages
+    private FunctionSignature functionSignature; // Optional: students submit only the Solution method
+    private long version; // Bumped whenever judging-relevant content changes; keys generated drivers
+    private Checker checker; // Optional: accepts any valid output instead of requiring the expected one
 
     public enum Difficulty {
         EASY, MEDIUM, HARD
@@ -64,6 +67,73 @@ public class Problem {
         public void setJavaTemplate(String javaTemplate) { this.javaTemplate = javaTemplate; }
     }
 
+    // Typed signature of the method students implement, e.g. int[] twoSum(int[] nums, int target).
+    // Supported types: int, long, double, boolean, string, int[], long[], double[], string[],
+    // int[][], char[][], ListNode (and void as a return type).
+    public static class FunctionSignature {
+        private String methodName;
+        private String returnType;
+        private List<Parameter> parameters;
+
+        public FunctionSignature() {}
+
+        public FunctionSignature(String methodName, String returnType, List<Parameter> parameters) {
+            this.methodName = methodName;
+            this.returnType = returnType;
+            this.parameters = parameters;
+        }
+
+        // Getters and Setters
+        public String getMethodName() { return methodName; }
+        public void setMethodName(String methodName) { this.methodName = methodName; }
+
+        public String getReturnType() { return returnType; }
+        public void setReturnType(String returnType) { this.returnType = returnType; }
+
+        public List<Parameter> getParameters() { return parameters; }
+        public void setParameters(List<Parameter> parameters) { this.parameters = parameters; }
+    }
+
+    // Special judge for problems with more than one correct output. The source defines a Java class
+    // Checker with public static boolean check(String input, String expectedOutput, String actualOutput).
+    public static class Checker {
+        private String language;
+        private String sourceCode;
+
+        public Checker() {}
+
+        public Checker(String language, String sourceCode) {
+            this.language = language;
+            this.sourceCode = sourceCode;
+        }
+
+        // Getters and Setters
+        public String getLanguage() { return language; }
+        public void setLanguage(String language) { this.language = language; }
+
+        public String getSourceCode() { return sourceCode; }
+        public void setSourceCode(String sourceCode) { this.sourceCode = sourceCode; }
+    }
+
+    public static class Parameter {
+        private String name;
+        private String type;
+
+        public Parameter() {}
+
+        public Parameter(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        // Getters and Setters
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+    }
+
     public static class Example {
         private String input;
         private String output;
@@ -171,4 +241,13 @@ public class Problem {
 
     public CodeTemplates getCodeTemplates() { return codeTemplates; }
     public void setCodeTemplates(CodeTemplates codeTemplates) { this.codeTemplates = codeTemplates; }
+
+    public FunctionSignature getFunctionSignature() { return functionSignature; }
+    public void setFunctionSignature(FunctionSignature functionSignature) { this.functionSignature = functionSignature; }
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    public Checker getChecker() { return checker; }
+    public void setChecker(Checker checker) { this.checker = checker; }
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package com.codepvg.code.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Outcome of re-judging a submission on a second engine (see ShadowJudgeService). Never shown to
+// students; used to compare engines before moving traffic between them.
+@Document(collection = "judge_shadow_results")
+public class ShadowResult {
+    @Id
+    private String id;
+
+    private String submissionId;
+    private String problemId;
+    private String language;
+    private int languageId;
+    private String primaryEngine;
+    private String shadowEngine;
+    private String primaryVerdict; // Per-case classification of the primary engine's first failing case
+    private String shadowVerdict;
+    private boolean match;
+    private List<Integer> mismatchedCases; // Indexes whose classification differs between engines
+    private int casesCompared;
+    private long primaryMillis;
+    private long shadowMillis;
+    private String shadowError; // Set when the shadow engine couldn't judge at all
+    private LocalDateTime createdAt;
+
+    public ShadowResult() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getSubmissionId() { return submissionId; }
+    public void setSubmissionId(String submissionId) { this.submissionId = submissionId; }
+
+    public String getProblemId() { return problemId; }
+    public void setProblemId(String problemId) { this.problemId = problemId; }
+
+    public String getLanguage() { return language; }
+    public void setLanguage(String language) { this.language = language; }
+
+    public int getLanguageId() { return languageId; }
+    public void setLanguageId(int languageId) { this.languageId = languageId; }
+
+    public String getPrimaryEngine() { return primaryEngine; }
+    public void setPrimaryEngine(String primaryEngine) { this.primaryEngine = primaryEngine; }
+
+    public String getShadowEngine() { return shadowEngine; }
+    public void setShadowEngine(String shadowEngine) { this.shadowEngine = shadowEngine; }
+
+    public String getPrimaryVerdict() { return primaryVerdict; }
+    public void setPrimaryVerdict(String primaryVerdict) { this.primaryVerdict = primaryVerdict; }
+
+    public String getShadowVerdict() { return shadowVerdict; }
+    public void setShadowVerdict(String shadowVerdict) { this.shadowVerdict = shadowVerdict; }
+
+    public boolean isMatch() { return match; }
+    public void setMatch(boolean match) { this.match = match; }
+
+    public List<Integer> getMismatchedCases() { return mismatchedCases; }
+    public void setMismatchedCases(List<Integer> mismatchedCases) { this.mismatchedCases = mismatchedCases; }
+
+    public int getCasesCompared() { return casesCompared; }
+    public void setCasesCompared(int casesCompared) { this.casesCompared = casesCompared; }
+
+    public long getPrimaryMillis() { return primaryMillis; }
+    public void setPrimaryMillis(long primaryMillis) { this.primaryMillis = primaryMillis; }
+
+    public long getShadowMillis() { return shadowMillis; }
+    public void setShadowMillis(long shadowMillis) { this.shadowMillis = shadowMillis; }
+
+    public String getShadowError() { return shadowError; }
+    public void setShadowError(String shadowError) { this.shadowError = shadowError; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
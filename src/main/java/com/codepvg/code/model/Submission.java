@@ -4,6 +4,8 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 @Document(collection = "submissions")
 public class Submission {
@@ -22,12 +24,51 @@ public class Submission {
     private Integer memoryUsage;
     private LocalDateTime submittedAt;
     private String judge0Token;
+    private String harnessToken; // Judge0 token of the single multi-test-case harness run, if used
+    private String harnessNonce; // Marks that run's case boundaries in its output
     private int testCasesPassed;
     private int totalTestCases;
+    private List<TestCaseRun> testCaseRuns; // Per-test-case judge progress, persisted as it happens
+    private LocalDateTime judgeLeaseUntil; // Judging is owned by whoever last renewed this lease
 
     public enum SubmissionStatus {
         PENDING, ACCEPTED, WRONG_ANSWER, TIME_LIMIT_EXCEEDED, 
-        MEMORY_LIMIT_EXCEEDED, RUNTIME_ERROR, COMPILATION_ERROR, INTERNAL_ERROR
+        MEMORY_LIMIT_EXCEEDED, RUNTIME_ERROR, COMPILATION_ERROR, INTERNAL_ERROR,
+        CANCELLED // Withdrawn (or superseded) before a verdict; never counted in stats
+    }
+
+    public static class TestCaseRun {
+        private int index;
+        private String token;
+        private LocalDateTime dispatchedAt;
+        private LocalDateTime completedAt;
+        private String engine; // "local" or "judge0": where this case actually ran
+        private Map<String, Object> result; // Status, time, memory, "passed" and output previews, not the raw output
+
+        public TestCaseRun() {}
+
+        public TestCaseRun(int index) {
+            this.index = index;
+        }
+
+        // Getters and Setters
+        public int getIndex() { return index; }
+        public void setIndex(int index) { this.index = index; }
+
+        public String getToken() { return token; }
+        public void setToken(String token) { this.token = token; }
+
+        public LocalDateTime getDispatchedAt() { return dispatchedAt; }
+        public void setDispatchedAt(LocalDateTime dispatchedAt) { this.dispatchedAt = dispatchedAt; }
+
+        public LocalDateTime getCompletedAt() { return completedAt; }
+        public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+
+        public String getEngine() { return engine; }
+        public void setEngine(String engine) { this.engine = engine; }
+
+        public Map<String, Object> getResult() { return result; }
+        public void setResult(Map<String, Object> result) { this.result = result; }
     }
 
     // Constructors
@@ -76,9 +117,21 @@ public class Submission {
     public String getJudge0Token() { return judge0Token; }
     public void setJudge0Token(String judge0Token) { this.judge0Token = judge0Token; }
 
+    public String getHarnessToken() { return harnessToken; }
+    public void setHarnessToken(String harnessToken) { this.harnessToken = harnessToken; }
+
+    public String getHarnessNonce() { return harnessNonce; }
+    public void setHarnessNonce(String harnessNonce) { this.harnessNonce = harnessNonce; }
+
     public int getTestCasesPassed() { return testCasesPassed; }
     public void setTestCasesPassed(int testCasesPassed) { this.testCasesPassed = testCasesPassed; }
 
     public int getTotalTestCases() { return totalTestCases; }
     public void setTotalTestCases(int totalTestCases) { this.totalTestCases = totalTestCases; }
+
+    public List<TestCaseRun> getTestCaseRuns() { return testCaseRuns; }
+    public void setTestCaseRuns(List<TestCaseRun> testCaseRuns) { this.testCaseRuns = testCaseRuns; }
+
+    public LocalDateTime getJudgeLeaseUntil() { return judgeLeaseUntil; }
+    public void setJudgeLeaseUntil(LocalDateTime judgeLeaseUntil) { this.judgeLeaseUntil = judgeLeaseUntil; }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.index.Indexed;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -34,6 +35,10 @@ public class User {
     private int totalSolved;
     private int totalSubmissions;
     private List<String> solvedProblems; // List of problem IDs that user has solved
+    // Streak of days with an accepted submission, maintained as verdicts are recorded
+    private int currentStreak;          // Consecutive days ending on lastAcceptedDay
+    private int maxStreak;
+    private LocalDate lastAcceptedDay;
     // Profile fields
     private String bio;           // User's bio/description
     private String headline;      // Professional headline
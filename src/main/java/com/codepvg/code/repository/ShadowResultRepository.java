@@ -0,0 +1,15 @@
+package com.codepvg.code.repository;
+
+import com.codepvg.code.model.ShadowResult;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ShadowResultRepository extends MongoRepository<ShadowResult, String> {
+
+    List<ShadowResult> findBySubmissionId(String submissionId);
+
+    List<ShadowResult> findByMatchFalse();
+}
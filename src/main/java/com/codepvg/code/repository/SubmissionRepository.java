@@ -5,6 +5,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -18,6 +19,8 @@ public interface SubmissionRepository extends MongoRepository<Submission, String
     
     List<Submission> findByStatus(Submission.SubmissionStatus status);
     
+    List<Submission> findByUserIdAndProblemIdAndStatus(String userId, String problemId, Submission.SubmissionStatus status);
+    
     @Query(value = "{ 'userId': ?0 }", sort = "{ 'submittedAt': -1 }")
     List<Submission> findByUserIdOrderBySubmittedAtDesc(String userId);
     
@@ -26,4 +29,7 @@ public interface SubmissionRepository extends MongoRepository<Submission, String
     
     @Query("{ 'userId': ?0, 'status': 'ACCEPTED' }")
     List<Submission> findAcceptedSubmissionsByUserId(String userId);
+    
+    @Query("{ 'status': 'PENDING', $or: [ { 'judgeLeaseUntil': null }, { 'judgeLeaseUntil': { $lt: ?0 } } ] }")
+    List<Submission> findPendingWithExpiredLease(LocalDateTime now);
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.codepvg.code.service;
+
+import com.codepvg.code.model.Submission;
+
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+// Per-case verdict rules, shared by SubmissionService.executeSubmission and the shadow judge so both
+// engines' results are always judged the same way
+final class CaseVerdict {
+
+    static final int MEMORY_LIMIT_KB = 256000;
+
+    private CaseVerdict() {
+    }
+
+    // outputAccepted is only asked for runs Judge0 (or the local engine) reports as Accepted
+    static Submission.SubmissionStatus classify(Map<String, Object> result, double timeLimit,
+                                                BooleanSupplier outputAccepted) {
+        Double executionTime = (Double) result.get("executionTime");
+        Integer memoryUsage = (Integer) result.get("memoryUsage");
+        Integer statusId = (Integer) result.get("statusId");
+        if (executionTime != null && executionTime > timeLimit) {
+            return Submission.SubmissionStatus.TIME_LIMIT_EXCEEDED;
+        }
+        if (Boolean.TRUE.equals(result.get("memoryLimitExceeded"))
+                || (memoryUsage != null && memoryUsage > MEMORY_LIMIT_KB)) {
+            return Submission.SubmissionStatus.MEMORY_LIMIT_EXCEEDED;
+        }
+        if (statusId == null) return Submission.SubmissionStatus.INTERNAL_ERROR;
+        switch (statusId) {
+            case 3:
+                return outputAccepted.getAsBoolean()
+                        ? Submission.SubmissionStatus.ACCEPTED : Submission.SubmissionStatus.WRONG_ANSWER;
+            case 4:
+                return Submission.SubmissionStatus.WRONG_ANSWER;
+            case 5:
+                return Submission.SubmissionStatus.TIME_LIMIT_EXCEEDED;
+            case 6:
+                return Submission.SubmissionStatus.COMPILATION_ERROR;
+            case 7: case 8: case 9: case 10: case 11: case 12:
+                return Submission.SubmissionStatus.RUNTIME_ERROR;
+            default:
+                return Submission.SubmissionStatus.INTERNAL_ERROR;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.codepvg.code.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// One transient cgroup v2 per local run, so limits and accounting cover the program and everything it
+// spawns: cpu.max caps it to judge.local.cgroup.cpus, memory.max and pids.max bound it, and the
+// verdict uses cpu.stat (usage_usec) and memory.peak instead of wall time. Only active on Linux hosts
+// with the unified hierarchy and write access to judge.local.cgroup.root (root, or a delegated
+// subtree); everywhere else create() returns null and runs are measured as before.
+@Service
+public class CgroupSandbox {
+
+    private static final long CPU_PERIOD_MICROS = 100_000;
+
+    @Value("${judge.engine:judge0}")
+    private String engine;
+
+    @Value("${judge.local.cgroup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${judge.local.cgroup.root:/sys/fs/cgroup/codepvg-judge}")
+    private String root;
+
+    @Value("${judge.local.cgroup.cpus:1}")
+    private double cpus;
+
+    @Value("${judge.local.cgroup.memory-max-mb:512}")
+    private long memoryMaxMb;
+
+    @Value("${judge.local.cgroup.pids-max:128}")
+    private int pidsMax;
+
+    private Path rootDir;
+    private volatile boolean available;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public static class Slice {
+        private final Path directory;
+
+        Slice(Path directory) {
+            this.directory = directory;
+        }
+
+        public Path getDirectory() { return directory; }
+
+        // File a process writes its own pid to in order to join the slice
+        public Path getProcsFile() { return directory.resolve("cgroup.procs"); }
+
+        // Moves the shell into the slice before exec, so the program never runs outside it
+        public List<String> wrap(List<String> command) {
+            List<String> wrapped = new ArrayList<>(Arrays.asList(
+                    "/bin/sh", "-c", "echo $$ > \"$0\" && exec \"$@\"", getProcsFile().toString()));
+            wrapped.addAll(command);
+            return wrapped;
+        }
+
+        // Seconds of CPU used by every process that ran in the slice, or null if unreadable
+        public Double cpuTime() {
+            String stat = read("cpu.stat");
+            if (stat == null) return null;
+            for (String line : stat.split("\n")) {
+                if (line.startsWith("usage_usec ")) {
+                    return Long.parseLong(line.substring("usage_usec ".length()).trim()) / 1_000_000.0;
+                }
+            }
+            return null;
+        }
+
+        // Peak memory in KB (memory.peak needs Linux 5.19+), or null if unavailable
+        public Integer peakMemoryKb() {
+            String peak = read("memory.peak");
+            return peak != null ? (int) (Long.parseLong(peak.trim()) / 1024) : null;
+        }
+
+        // Whether the kernel killed a process of the slice for exceeding memory.max
+        public boolean oomKilled() {
+            String events = read("memory.events");
+            if (events == null) return false;
+            for (String line : events.split("\n")) {
+                if (line.startsWith("oom_kill ")) {
+                    return Long.parseLong(line.substring("oom_kill ".length()).trim()) > 0;
+                }
+            }
+            return false;
+        }
+
+        // Kills everything in the slice, including processes that escaped the original process tree
+        public void kill() {
+            Path killFile = directory.resolve("cgroup.kill");
+            try {
+                if (Files.exists(killFile)) {
+                    Files.write(killFile, "1".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                for (String pid : Files.readAllLines(getProcsFile())) {
+                    if (!pid.isBlank()) {
+                        ProcessHandle.of(Long.parseLong(pid.trim())).ifPresent(ProcessHandle::destroyForcibly);
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Failed to kill cgroup " + directory + ": " + e.getMessage());
+            }
+        }
+
+        // Removes the cgroup; it can only go once its last process has exited
+        public void destroy() {
+            for (int attempt = 0; attempt < 50; attempt++) {
+                try {
+                    Files.deleteIfExists(directory);
+                    return;
+                } catch (IOException e) {
+                    if (attempt == 0) kill();
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            System.err.println("Failed to remove cgroup " + directory);
+        }
+
+        private String read(String file) {
+            try {
+                return new String(Files.readAllBytes(directory.resolve(file)), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if ("judge0".equalsIgnoreCase(engine) || !enabled) return;
+
+        rootDir = Paths.get(root);
+        Path parent = rootDir.getParent();
+        try {
+            String controllers = new String(Files.readAllBytes(parent.resolve("cgroup.controllers")), StandardCharsets.UTF_8);
+            List<String> present = Arrays.asList(controllers.trim().split("\\s+"));
+            if (!present.containsAll(Arrays.asList("cpu", "memory", "pids"))) {
+                System.err.println("cgroup v2 cpu/memory/pids controllers not available under " + parent);
+                return;
+            }
+            Files.createDirectories(rootDir);
+            // Leftovers of instances that are gone; other instances sharing the root keep theirs
+            try (Stream<Path> entries = Files.list(rootDir)) {
+                entries.filter(Files::isDirectory).filter(CgroupSandbox::isOrphaned)
+                        .forEach(entry -> new Slice(entry).destroy());
+            }
+            // Slices are created below the root, which therefore must hold no processes itself
+            Files.write(rootDir.resolve("cgroup.subtree_control"), "+cpu +memory +pids".getBytes(StandardCharsets.UTF_8));
+            available = true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("cgroup v2 accounting disabled: " + e.getMessage());
+        }
+    }
+
+    // Slices are named run-<pid of the creating server>-<sequence>
+    private static boolean isOrphaned(Path slice) {
+        String[] parts = slice.getFileName().toString().split("-");
+        if (parts.length != 3 || !parts[0].equals("run")) return false;
+        try {
+            long pid = Long.parseLong(parts[1]);
+            return pid != ProcessHandle.current().pid() && ProcessHandle.of(pid).isEmpty();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    // Parent of every slice, or null when cgroups are unavailable
+    public Path getRootDirectory() {
+        return available ? rootDir : null;
+    }
+
+    // A fresh, limited cgroup for one run, or null when cgroups are unavailable
+    public Slice create() {
+        if (!available) return null;
+        Slice slice = new Slice(rootDir.resolve("run-" + ProcessHandle.current().pid() + "-" + sequence.incrementAndGet()));
+        try {
+            Files.createDirectory(slice.getDirectory());
+            write(slice, "cpu.max", (long) (cpus * CPU_PERIOD_MICROS) + " " + CPU_PERIOD_MICROS);
+            write(slice, "memory.max", String.valueOf(memoryMaxMb * 1024 * 1024));
+            write(slice, "pids.max", String.valueOf(pidsMax));
+            Path swap = slice.getDirectory().resolve("memory.swap.max");
+            if (Files.exists(swap)) {
+                write(slice, "memory.swap.max", "0");
+            }
+            return slice;
+        } catch (IOException e) {
+            System.err.println("Failed to create cgroup " + slice.getDirectory() + ": " + e.getMessage());
+            slice.destroy();
+            return null;
+        }
+    }
+
+    private void write(Slice slice, String file, String value) throws IOException {
+        Files.write(slice.getDirectory().resolve(file), value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,232 @@
+package com.codepvg.code.service;
+
+import com.codepvg.code.model.Problem;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Special judges: a problem's checker is compiled in memory once per problem version, loaded in its own
+// class loader and called in-process for every test case, so judging a problem with many valid answers
+// costs a method call rather than another judge run. Checkers are written by admins, not students.
+// Each call runs on a thread of its own, at most judge.checker.threads at a time. A call that times out
+// gives its slot back and its thread is abandoned (interruption can't stop a CPU-bound loop); while as
+// many abandoned threads as slots are still running, further calls fail fast instead of piling up more.
+@Service
+public class CheckerService {
+
+    private static final String CLASS_NAME = "Checker";
+
+    @Value("${judge.checker.threads:2}")
+    private int threads;
+
+    @Value("${judge.checker.timeout-ms:5000}")
+    private long timeoutMillis;
+
+    private JavaCompiler javaCompiler;
+    private Semaphore slots;
+    private final AtomicInteger abandoned = new AtomicInteger();
+    private final AtomicInteger sequence = new AtomicInteger();
+    // Latest compiled checker per problem id
+    private final Map<String, LoadedChecker> checkers = new ConcurrentHashMap<>();
+
+    private static final class LoadedChecker {
+        private final long version;
+        private final Method check;
+
+        private LoadedChecker(long version, Method check) {
+            this.version = version;
+            this.check = check;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        javaCompiler = ToolProvider.getSystemJavaCompiler();
+        slots = new Semaphore(threads);
+    }
+
+    // Throws with the compiler's messages if the checker can't be used; called when a problem is saved
+    public void validate(Problem.Checker checker) {
+        if (checker == null) return;
+        load(checker);
+    }
+
+    // Whether an accepted run's output is correct: decided by the problem's checker if it has one,
+    // otherwise the output must equal the expected output ignoring surrounding whitespace
+    public boolean outputAccepted(Problem problem, String input, String expectedOutput, Map<String, Object> result) {
+        // Stored results were judged against the whole output before it was cut down to a preview
+        Boolean passed = (Boolean) result.get("passed");
+        if (passed != null) return passed;
+        String output = (String) result.get("output");
+        if (problem.getChecker() != null) {
+            return accepts(problem, input, expectedOutput, output);
+        }
+        // Local runs compare against the expected output file and keep only a preview
+        Boolean matchesExpected = (Boolean) result.get("matchesExpected");
+        if (matchesExpected != null) return matchesExpected;
+        String actualOutput = output != null ? output.trim() : "";
+        return actualOutput.equals(expectedOutput != null ? expectedOutput.trim() : "");
+    }
+
+    // Whether actualOutput is a correct answer for this test case according to the problem's checker
+    public boolean accepts(Problem problem, String input, String expectedOutput, String actualOutput) {
+        LoadedChecker checker = loaded(problem);
+        if (abandoned.get() >= threads) {
+            throw new RuntimeException("Checkers are stuck on earlier calls, try again later");
+        }
+
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Checker interrupted", e);
+        }
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(checker.check.invoke(null,
+                        input != null ? input : "", expectedOutput != null ? expectedOutput : "",
+                        actualOutput != null ? actualOutput : ""));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }, "checker-" + sequence.incrementAndGet());
+        thread.setDaemon(true);
+        try {
+            thread.start();
+            return Boolean.TRUE.equals(future.get(timeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            abandon(thread, future);
+            throw new RuntimeException("Checker timed out after " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof InvocationTargetException ? e.getCause().getCause() : e.getCause();
+            throw new RuntimeException("Checker failed: " + cause, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(thread, future);
+            throw new RuntimeException("Checker interrupted", e);
+        } finally {
+            // A timed-out call's slot is replaced straight away; its thread no longer counts against it
+            slots.release();
+        }
+    }
+
+    // Counted as stuck until it finishes, if it ever does
+    private void abandon(Thread thread, CompletableFuture<Object> future) {
+        thread.interrupt();
+        thread.setPriority(Thread.MIN_PRIORITY);
+        abandoned.incrementAndGet();
+        future.whenComplete((value, failure) -> abandoned.decrementAndGet());
+    }
+
+    // Compiles outside the map's lock, so one slow compile doesn't block other problems' checkers. Two
+    // threads may compile the same version at once; the first to finish is kept.
+    private LoadedChecker loaded(Problem problem) {
+        LoadedChecker cached = checkers.get(problem.getId());
+        if (cached != null && cached.version == problem.getVersion()) return cached;
+        LoadedChecker compiled = new LoadedChecker(problem.getVersion(), load(problem.getChecker()));
+        return checkers.merge(problem.getId(), compiled,
+                (current, fresh) -> current.version == fresh.version ? current : fresh);
+    }
+
+    private Method load(Problem.Checker checker) {
+        if (checker.getLanguage() != null && !"java".equalsIgnoreCase(checker.getLanguage())) {
+            throw new RuntimeException("Unsupported checker language: " + checker.getLanguage() + " (only java)");
+        }
+        if (checker.getSourceCode() == null || checker.getSourceCode().isBlank()) {
+            throw new RuntimeException("Checker source code is empty");
+        }
+        if (javaCompiler == null) {
+            throw new RuntimeException("javac is not available in this runtime");
+        }
+
+        Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        JavaFileObject source = new SimpleJavaFileObject(URI.create("string:///" + CLASS_NAME + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return checker.getSourceCode();
+            }
+        };
+        try (StandardJavaFileManager standard = javaCompiler.getStandardFileManager(collector, Locale.ROOT, StandardCharsets.UTF_8);
+             JavaFileManager fileManager = new ForwardingJavaFileManager<>(standard) {
+                 @Override
+                 public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                            FileObject sibling) {
+                     return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+                         @Override
+                         public OutputStream openOutputStream() {
+                             return classes.computeIfAbsent(className, name -> new ByteArrayOutputStream());
+                         }
+                     };
+                 }
+             }) {
+            boolean compiled = javaCompiler.getTask(null, fileManager, collector,
+                    Arrays.asList("-proc:none", "-Xlint:none"), null, List.of(source)).call();
+            if (!compiled) {
+                StringBuilder errors = new StringBuilder("Checker does not compile:");
+                for (Diagnostic<? extends JavaFileObject> diagnostic : collector.getDiagnostics()) {
+                    if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                        errors.append("\nline ").append(diagnostic.getLineNumber()).append(": ")
+                                .append(diagnostic.getMessage(Locale.ROOT));
+                    }
+                }
+                throw new RuntimeException(errors.toString());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to compile checker: " + e.getMessage(), e);
+        }
+
+        // Own loader per version, parented to the platform loader: no access to application classes
+        ClassLoader loader = new ClassLoader(ClassLoader.getPlatformClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                ByteArrayOutputStream bytes = classes.get(name);
+                if (bytes == null) throw new ClassNotFoundException(name);
+                byte[] code = bytes.toByteArray();
+                return defineClass(name, code, 0, code.length);
+            }
+        };
+        try {
+            Method check = loader.loadClass(CLASS_NAME).getMethod("check", String.class, String.class, String.class);
+            if (!Modifier.isStatic(check.getModifiers()) || check.getReturnType() != boolean.class) {
+                throw new NoSuchMethodException();
+            }
+            return check;
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new RuntimeException("Checker must declare public class " + CLASS_NAME
+                    + " with public static boolean check(String input, String expectedOutput, String actualOutput)");
+        }
+    }
+}
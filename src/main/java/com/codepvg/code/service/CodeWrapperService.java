@@ -1,520 +1,1582 @@
 package com.codepvg.code.service;
 
+import com.codepvg.code.model.Problem;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 @Service
 public class CodeWrapperService {
 
+    // Harness protocol: stdin is "@@HARNESS <n> <nonce>\n" followed by n frames of "<byte length>\n<bytes>".
+    // The driver runs the program once per frame and brackets each run's stdout with these markers plus
+    // the nonce. The nonce is fresh per run and read by the driver before the program starts, so a
+    // program can't print a marker that passes for the end of its case.
+    private static final String HARNESS_HEADER = "@@HARNESS ";
+    private static final String HARNESS_CASE_BEGIN = "@@HARNESS_CASE_BEGIN ";
+    private static final String HARNESS_CASE_END = "@@HARNESS_CASE_END ";
+    private static final SecureRandom NONCE_RANDOM = new SecureRandom();
+
+    // Declared FunctionSignature types and their Java/C++ equivalents and generated reader methods
+    private static final Map<String, SignatureType> SIGNATURE_TYPES = new HashMap<>();
+
+    static {
+        SIGNATURE_TYPES.put("int", new SignatureType("int", "int", "readInt"));
+        SIGNATURE_TYPES.put("long", new SignatureType("long", "long long", "readLong"));
+        SIGNATURE_TYPES.put("double", new SignatureType("double", "double", "readDouble"));
+        SIGNATURE_TYPES.put("boolean", new SignatureType("boolean", "bool", "readBoolean"));
+        SIGNATURE_TYPES.put("string", new SignatureType("String", "std::string", "readString"));
+        SIGNATURE_TYPES.put("int[]", new SignatureType("int[]", "std::vector<int>", "readIntArray"));
+        SIGNATURE_TYPES.put("long[]", new SignatureType("long[]", "std::vector<long long>", "readLongArray"));
+        SIGNATURE_TYPES.put("double[]", new SignatureType("double[]", "std::vector<double>", "readDoubleArray"));
+        SIGNATURE_TYPES.put("string[]", new SignatureType("String[]", "std::vector<std::string>", "readStringArray"));
+        SIGNATURE_TYPES.put("int[][]", new SignatureType("int[][]", "std::vector<std::vector<int>>", "readIntMatrix"));
+        SIGNATURE_TYPES.put("char[][]", new SignatureType("char[][]", "std::vector<std::vector<char>>", "readCharMatrix"));
+        SIGNATURE_TYPES.put("listnode", new SignatureType("ListNode", "ListNode*", "readList"));
+    }
+
+    private static final Pattern LIST_NODE_DEFINED = Pattern.compile("(?m)^\\s*(?:public\\s+|static\\s+)*(?:class|struct)\\s+ListNode\\b");
+
+    @Value("${judge.harness.enabled:false}")
+    private boolean harnessEnabled;
+
+    // Generated signature drivers keyed by "<problemId>:<language>"
+    private final Map<String, DriverTemplate> driverTemplates = new ConcurrentHashMap<>();
+
     public String wrapCode(String userCode, String language, int languageId, String problemType) {
         // Wrapping disabled: client sends full runnable programs.
         // Always return the user code unchanged so Judge0 compiles/runs exactly what was submitted.
         return userCode;
     }
 
-    private String wrapJavaCode(String userCode, String problemType) {
-        StringBuilder wrapper = new StringBuilder();
-        
-        wrapper.append("import java.util.*;\n");
-        wrapper.append("import java.io.*;\n\n");
-        
-        // Add user's solution class
-        wrapper.append(userCode).append("\n\n");
-        
-        // Add main class with input/output handling
-        wrapper.append("public class Main {\n");
-        wrapper.append("    public static void main(String[] args) {\n");
-        wrapper.append("        Scanner scanner = new Scanner(System.in);\n");
-        wrapper.append("        Solution solution = new Solution();\n\n");
-        
-        // Add problem-specific input/output handling
-        wrapper.append("        try {\n");
-        wrapper.append("            // Read input based on problem type\n");
-        wrapper.append("            String line = scanner.nextLine().trim();\n");
-        wrapper.append("            \n");
-        wrapper.append("            // Parse array input like [2,7,11,15]\n");
-        wrapper.append("            if (line.startsWith(\"[\") && line.endsWith(\"]\")) {\n");
-        wrapper.append("                line = line.substring(1, line.length() - 1);\n");
-        wrapper.append("                String[] parts = line.split(\",\");\n");
-        wrapper.append("                int[] nums = new int[parts.length];\n");
-        wrapper.append("                for (int i = 0; i < parts.length; i++) {\n");
-        wrapper.append("                    nums[i] = Integer.parseInt(parts[i].trim());\n");
-        wrapper.append("                }\n");
-        wrapper.append("                \n");
-        wrapper.append("                // Read target if available\n");
-        wrapper.append("                int target = 0;\n");
-        wrapper.append("                if (scanner.hasNextLine()) {\n");
-        wrapper.append("                    target = Integer.parseInt(scanner.nextLine().trim());\n");
-        wrapper.append("                }\n");
-        wrapper.append("                \n");
-        wrapper.append("                // Call solution method (assuming twoSum for now)\n");
-        wrapper.append("                int[] result = solution.twoSum(nums, target);\n");
-        wrapper.append("                \n");
-        wrapper.append("                // Print result in array format\n");
-        wrapper.append("                System.out.print(\"[\");\n");
-        wrapper.append("                for (int i = 0; i < result.length; i++) {\n");
-        wrapper.append("                    System.out.print(result[i]);\n");
-        wrapper.append("                    if (i < result.length - 1) System.out.print(\",\");\n");
-        wrapper.append("                }\n");
-        wrapper.append("                System.out.println(\"]\");\n");
-        wrapper.append("            } else {\n");
-        wrapper.append("                // Handle other input formats\n");
-        wrapper.append("                System.out.println(\"Unsupported input format\");\n");
-        wrapper.append("            }\n");
-        wrapper.append("            \n");
-        wrapper.append("        } catch (Exception e) {\n");
-        wrapper.append("            System.err.println(\"Error: \" + e.getMessage());\n");
-        wrapper.append("            e.printStackTrace();\n");
-        wrapper.append("        } finally {\n");
-        wrapper.append("            scanner.close();\n");
-        wrapper.append("        }\n");
-        wrapper.append("    }\n");
-        wrapper.append("}\n");
-        
-        return wrapper.toString();
+    public boolean isHarnessEnabled() {
+        return harnessEnabled;
     }
 
-    private String wrapPythonCode(String userCode, String problemType) {
-        StringBuilder wrapper = new StringBuilder();
-        
-        wrapper.append("import sys\n");
-        wrapper.append("import json\n");
-        wrapper.append("from typing import List, Optional\n\n");
-        
-        // Add user's solution class
-        wrapper.append(userCode).append("\n\n");
-        
-        // Add main function with input/output handling
-        wrapper.append("def main():\n");
-        wrapper.append("    try:\n");
-        wrapper.append("        solution = Solution()\n");
-        wrapper.append("        \n");
-        wrapper.append("        # Read input\n");
-        wrapper.append("        line = input().strip()\n");
-        wrapper.append("        \n");
-        wrapper.append("        # Parse array input like [2,7,11,15]\n");
-        wrapper.append("        if line.startswith('[') and line.endswith(']'):\n");
-        wrapper.append("            nums_str = line[1:-1]\n");
-        wrapper.append("            nums = [int(x.strip()) for x in nums_str.split(',') if x.strip()]\n");
-        wrapper.append("            \n");
-        wrapper.append("            # Read target if available\n");
-        wrapper.append("            try:\n");
-        wrapper.append("                target = int(input().strip())\n");
-        wrapper.append("            except:\n");
-        wrapper.append("                target = 0\n");
-        wrapper.append("            \n");
-        wrapper.append("            # Call solution method (assuming twoSum for now)\n");
-        wrapper.append("            result = solution.twoSum(nums, target)\n");
-        wrapper.append("            \n");
-        wrapper.append("            # Print result in array format\n");
-        wrapper.append("            print(f'[{\",\".join(map(str, result))}]')\n");
-        wrapper.append("        else:\n");
-        wrapper.append("            print('Unsupported input format')\n");
-        wrapper.append("            \n");
-        wrapper.append("    except Exception as e:\n");
-        wrapper.append("        print(f'Error: {str(e)}', file=sys.stderr)\n");
-        wrapper.append("        import traceback\n");
-        wrapper.append("        traceback.print_exc()\n");
-        wrapper.append("\n");
-        wrapper.append("if __name__ == '__main__':\n");
-        wrapper.append("    main()\n");
-        
-        return wrapper.toString();
+    public boolean supportsHarness(String language) {
+        return harnessLanguage(language) != null;
     }
 
-    private String wrapCppCode(String userCode, String problemType) {
-        StringBuilder wrapper = new StringBuilder();
-        
-        wrapper.append("#include <iostream>\n");
-        wrapper.append("#include <vector>\n");
-        wrapper.append("#include <string>\n");
-        wrapper.append("#include <sstream>\n");
-        wrapper.append("#include <algorithm>\n");
-        wrapper.append("using namespace std;\n\n");
-        
-        // Add user's solution class
-        wrapper.append(userCode).append("\n\n");
-        
-        // Add main function with input/output handling
-        wrapper.append("int main() {\n");
-        wrapper.append("    try {\n");
-        wrapper.append("        Solution solution;\n");
-        wrapper.append("        \n");
-        wrapper.append("        string line;\n");
-        wrapper.append("        getline(cin, line);\n");
-        wrapper.append("        \n");
-        wrapper.append("        // Parse array input like [2,7,11,15]\n");
-        wrapper.append("        if (line.front() == '[' && line.back() == ']') {\n");
-        wrapper.append("            line = line.substr(1, line.length() - 2);\n");
-        wrapper.append("            \n");
-        wrapper.append("            vector<int> nums;\n");
-        wrapper.append("            stringstream ss(line);\n");
-        wrapper.append("            string num;\n");
-        wrapper.append("            \n");
-        wrapper.append("            while (getline(ss, num, ',')) {\n");
-        wrapper.append("                nums.push_back(stoi(num));\n");
-        wrapper.append("            }\n");
-        wrapper.append("            \n");
-        wrapper.append("            // Read target if available\n");
-        wrapper.append("            int target = 0;\n");
-        wrapper.append("            if (getline(cin, line)) {\n");
-        wrapper.append("                target = stoi(line);\n");
-        wrapper.append("            }\n");
-        wrapper.append("            \n");
-        wrapper.append("            // Call solution method (assuming twoSum for now)\n");
-        wrapper.append("            vector<int> result = solution.twoSum(nums, target);\n");
-        wrapper.append("            \n");
-        wrapper.append("            // Print result in array format\n");
-        wrapper.append("            cout << \"[\";\n");
-        wrapper.append("            for (int i = 0; i < result.size(); i++) {\n");
-        wrapper.append("                cout << result[i];\n");
-        wrapper.append("                if (i < result.size() - 1) cout << \",\";\n");
-        wrapper.append("            }\n");
-        wrapper.append("            cout << \"]\" << endl;\n");
-        wrapper.append("        } else {\n");
-        wrapper.append("            cout << \"Unsupported input format\" << endl;\n");
-        wrapper.append("        }\n");
-        wrapper.append("        \n");
-        wrapper.append("    } catch (const exception& e) {\n");
-        wrapper.append("        cerr << \"Error: \" << e.what() << endl;\n");
-        wrapper.append("        return 1;\n");
-        wrapper.append("    }\n");
-        wrapper.append("    \n");
-        wrapper.append("    return 0;\n");
-        wrapper.append("}\n");
-        
-        return wrapper.toString();
+    // Wraps a full user program in a driver that runs it once per framed test input, so all test
+    // cases share one compile and one process start. Returns null if the language is unsupported.
+    public String wrapCodeInHarness(String userCode, String language) {
+        String lang = harnessLanguage(language);
+        if (lang == null) return null;
+        switch (lang) {
+            case "java":
+                return wrapJavaHarness(userCode);
+            case "python":
+                return wrapPythonHarness(userCode);
+            default:
+                return wrapNativeHarness(userCode);
+        }
     }
 
-    // Method to create dynamic wrapper based on problem's method signature
-    public String wrapCodeForProblem(String userCode, String language, String problemTitle, String methodSignature) {
-        // Dynamic wrapping disabled: platform validates code against problem id
-        // and provides a full program. Return as-is.
-        return userCode;
+    public String newHarnessNonce() {
+        byte[] nonce = new byte[16];
+        NONCE_RANDOM.nextBytes(nonce);
+        return HexFormat.of().formatHex(nonce);
+    }
+
+    public String harnessHeader(int count, String nonce) {
+        return HARNESS_HEADER + count + " " + nonce + "\n";
+    }
+
+    public String buildHarnessInput(List<String> inputs, String nonce) {
+        StringBuilder stdin = new StringBuilder();
+        stdin.append(harnessHeader(inputs.size(), nonce));
+        for (String input : inputs) {
+            String value = input != null ? input : "";
+            stdin.append(value.getBytes(StandardCharsets.UTF_8).length).append("\n").append(value);
+        }
+        return stdin.toString();
+    }
+
+    // The frames of buildHarnessInput without the header, streamed from files so large inputs never reach
+    // the heap. Reusable across runs: each run puts its own harnessHeader in front.
+    public void writeHarnessFrames(List<Path> inputFiles, Path target) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Path inputFile : inputFiles) {
+                try (FileChannel in = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+                    long size = in.size();
+                    writeFully(out, size + "\n");
+                    for (long position = 0; position < size; ) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+        }
     }
 
-    private String wrapJavaCodeDynamic(String userCode, String problemTitle, String methodSignature) {
+    private void writeFully(FileChannel channel, String text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Splits harness stdout into per-case results shaped like Judge0Service.getSubmissionResult.
+    // Only cases that ran to completion without error are returned; callers re-run the rest on their own.
+    // Markers without the run's nonce are ordinary program output.
+    public Map<Integer, Map<String, Object>> parseHarnessOutput(String stdout, Integer overallMemoryUsage, String nonce) {
+        Map<Integer, Map<String, Object>> results = new HashMap<>();
+        if (stdout == null) return results;
+
+        String quotedNonce = Pattern.quote(nonce);
+        Matcher matcher = Pattern.compile("@@HARNESS_CASE_BEGIN " + quotedNonce + " (\\d+)@@\n(.*?)\n@@HARNESS_CASE_END "
+                + quotedNonce + " \\1 (\\d+) (-?\\d+)( ERROR)?@@", Pattern.DOTALL).matcher(stdout);
+        while (matcher.find()) {
+            if (matcher.group(5) != null) continue; // Case raised an error
+
+            int index = Integer.parseInt(matcher.group(1));
+            long elapsedNanos = Long.parseLong(matcher.group(3));
+            int memoryKb = Integer.parseInt(matcher.group(4));
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("status", "Accepted");
+            result.put("statusId", 3);
+            result.put("output", matcher.group(2));
+            result.put("executionTime", elapsedNanos / 1_000_000_000.0);
+            if (memoryKb >= 0) {
+                result.put("memoryUsage", memoryKb);
+            } else if (overallMemoryUsage != null) {
+                result.put("memoryUsage", overallMemoryUsage);
+            }
+            results.put(index, result);
+        }
+        return results;
+    }
+
+    private String harnessLanguage(String language) {
+        String lang = language != null ? language.toLowerCase() : "";
+        if (lang.contains("java") && !lang.contains("javascript")) return "java";
+        if (lang.contains("python")) return "python";
+        if (lang.contains("cpp") || lang.contains("c++") || lang.equals("c")) return "native";
+        return null;
+    }
+
+    private String wrapJavaHarness(String userCode) {
+        // Judge0 compiles Main.java, so the driver owns the public Main class
+        String code = userCode;
+        if (Pattern.compile("\\bclass\\s+Main\\b").matcher(code).find()) {
+            code = code.replaceAll("\\bMain\\b", "UserMain");
+        }
+        code = code.replaceFirst("public\\s+((?:final\\s+)?class\\s+)", "$1");
+        String entryClass = findJavaEntryClass(code);
+
         StringBuilder wrapper = new StringBuilder();
-        
-        wrapper.append("import java.util.*;\n");
-        wrapper.append("import java.io.*;\n\n");
-        
-        // Add user's solution class
-        wrapper.append(userCode).append("\n\n");
-        
+        wrapper.append(code).append("\n\n");
         wrapper.append("public class Main {\n");
-        wrapper.append("    public static void main(String[] args) {\n");
-        wrapper.append("        Scanner scanner = new Scanner(System.in);\n");
-        wrapper.append("        Solution solution = new Solution();\n\n");
-        
+        wrapper.append("    public static void main(String[] args) throws Exception {\n");
+        wrapper.append("        byte[] data = System.in.readAllBytes();\n");
+        wrapper.append("        int headerEnd = indexOf(data, 0);\n");
+        wrapper.append("        String[] header = new String(data, 0, headerEnd, java.nio.charset.StandardCharsets.US_ASCII).trim().split(\" \");\n");
+        wrapper.append("        int count = Integer.parseInt(header[1]);\n");
+        wrapper.append("        String nonce = header[2];\n");
+        wrapper.append("        int pos = headerEnd + 1;\n");
+        wrapper.append("        java.io.PrintStream out = System.out;\n");
+        wrapper.append("        java.net.URL location = null;\n");
         wrapper.append("        try {\n");
-        
-        // Dynamic input parsing based on problem type
-        if (problemTitle.toLowerCase().contains("two") && problemTitle.toLowerCase().contains("sum") || 
-            problemTitle.toLowerCase().contains("twosum")) {
-            wrapper.append("            // Two Sum problem input parsing\n");
-            wrapper.append("            String line = scanner.nextLine().trim();\n");
-            wrapper.append("            System.err.println(\"Debug: Input line = \" + line);\n");
-            wrapper.append("            int[] nums = parseIntArray(line);\n");
-            wrapper.append("            System.err.println(\"Debug: Parsed nums = \" + java.util.Arrays.toString(nums));\n");
-            wrapper.append("            \n");
-            wrapper.append("            int target = 0;\n");
-            wrapper.append("            if (scanner.hasNextLine()) {\n");
-            wrapper.append("                String targetLine = scanner.nextLine().trim();\n");
-            wrapper.append("                System.err.println(\"Debug: Target line = \" + targetLine);\n");
-            wrapper.append("                target = Integer.parseInt(targetLine);\n");
-            wrapper.append("            }\n");
-            wrapper.append("            System.err.println(\"Debug: Target = \" + target);\n");
-            wrapper.append("            \n");
-            wrapper.append("            int[] result = solution.twoSum(nums, target);\n");
-            wrapper.append("            System.err.println(\"Debug: Result = \" + java.util.Arrays.toString(result));\n");
-            wrapper.append("            printIntArray(result);\n");
-        } else if (problemTitle.toLowerCase().contains("reverse") && 
-                   problemTitle.toLowerCase().contains("linked")) {
-            wrapper.append("            // Reverse Linked List problem\n");
-            wrapper.append("            String line = scanner.nextLine().trim();\n");
-            wrapper.append("            ListNode head = parseLinkedList(line);\n");
-            wrapper.append("            \n");
-            wrapper.append("            ListNode result = solution.reverseList(head);\n");
-            wrapper.append("            printLinkedList(result);\n");
-        } else {
-            // Generic array problem
-            wrapper.append("            // Generic array problem\n");
-            wrapper.append("            String line = scanner.nextLine().trim();\n");
-            wrapper.append("            int[] nums = parseIntArray(line);\n");
-            wrapper.append("            \n");
-            wrapper.append("            // Try to call the first method in Solution class\n");
-            wrapper.append("            // This is a generic approach - may need customization\n");
-            wrapper.append("            System.out.println(\"Generic input processed\");\n");
-        }
-        
-        wrapper.append("            \n");
-        wrapper.append("        } catch (Exception e) {\n");
-        wrapper.append("            System.err.println(\"Error: \" + e.getMessage());\n");
-        wrapper.append("            e.printStackTrace();\n");
-        wrapper.append("        } finally {\n");
-        wrapper.append("            scanner.close();\n");
+        wrapper.append("            location = Main.class.getProtectionDomain().getCodeSource().getLocation();\n");
+        wrapper.append("        } catch (Exception ignored) {\n");
         wrapper.append("        }\n");
-        wrapper.append("    }\n");
-        
-        // Add utility methods
-        wrapper.append("    \n");
-        wrapper.append("    private static int[] parseIntArray(String line) {\n");
-        wrapper.append("        if (line.startsWith(\"[\") && line.endsWith(\"]\")) {\n");
-        wrapper.append("            line = line.substring(1, line.length() - 1);\n");
-        wrapper.append("        }\n");
-        wrapper.append("        if (line.trim().isEmpty()) return new int[0];\n");
-        wrapper.append("        \n");
-        wrapper.append("        String[] parts = line.split(\",\");\n");
-        wrapper.append("        int[] result = new int[parts.length];\n");
-        wrapper.append("        for (int i = 0; i < parts.length; i++) {\n");
-        wrapper.append("            result[i] = Integer.parseInt(parts[i].trim());\n");
-        wrapper.append("        }\n");
-        wrapper.append("        return result;\n");
-        wrapper.append("    }\n");
-        wrapper.append("    \n");
-        wrapper.append("    private static void printIntArray(int[] arr) {\n");
-        wrapper.append("        System.out.print(\"[\");\n");
-        wrapper.append("        for (int i = 0; i < arr.length; i++) {\n");
-        wrapper.append("            System.out.print(arr[i]);\n");
-        wrapper.append("            if (i < arr.length - 1) System.out.print(\",\");\n");
+        wrapper.append("        for (int i = 0; i < count; i++) {\n");
+        wrapper.append("            int lineEnd = indexOf(data, pos);\n");
+        wrapper.append("            int length = Integer.parseInt(new String(data, pos, lineEnd - pos, java.nio.charset.StandardCharsets.US_ASCII).trim());\n");
+        wrapper.append("            pos = lineEnd + 1;\n");
+        wrapper.append("            byte[] input = java.util.Arrays.copyOfRange(data, pos, pos + length);\n");
+        wrapper.append("            pos += length;\n");
+        wrapper.append("            \n");
+        wrapper.append("            out.print(\"" + HARNESS_CASE_BEGIN + "\" + nonce + \" \" + i + \"@@\\n\");\n");
+        wrapper.append("            out.flush();\n");
+        wrapper.append("            System.setIn(new java.io.ByteArrayInputStream(input));\n");
+        wrapper.append("            boolean failed = false;\n");
+        wrapper.append("            long start = System.nanoTime();\n");
+        wrapper.append("            try {\n");
+        wrapper.append("                // A fresh class loader per case so static state never leaks between test cases\n");
+        wrapper.append("                java.lang.reflect.Method entry = loadEntry(location);\n");
+        wrapper.append("                start = System.nanoTime();\n");
+        wrapper.append("                entry.invoke(null, (Object) new String[0]);\n");
+        wrapper.append("            } catch (java.lang.reflect.InvocationTargetException e) {\n");
+        wrapper.append("                failed = true;\n");
+        wrapper.append("                e.getCause().printStackTrace();\n");
+        wrapper.append("            } catch (Throwable t) {\n");
+        wrapper.append("                failed = true;\n");
+        wrapper.append("                t.printStackTrace();\n");
+        wrapper.append("            }\n");
+        wrapper.append("            long elapsed = System.nanoTime() - start;\n");
+        wrapper.append("            System.out.flush();\n");
+        wrapper.append("            System.setOut(out);\n");
+        wrapper.append("            out.print(\"\\n" + HARNESS_CASE_END + "\" + nonce + \" \" + i + \" \" + elapsed + \" -1\" + (failed ? \" ERROR\" : \"\") + \"@@\\n\");\n");
+        wrapper.append("            out.flush();\n");
         wrapper.append("        }\n");
-        wrapper.append("        System.out.println(\"]\");\n");
-        wrapper.append("    }\n");
-        
-        // Add ListNode class and methods if needed
-        wrapper.append("    \n");
-        wrapper.append("    static class ListNode {\n");
-        wrapper.append("        int val;\n");
-        wrapper.append("        ListNode next;\n");
-        wrapper.append("        ListNode() {}\n");
-        wrapper.append("        ListNode(int val) { this.val = val; }\n");
-        wrapper.append("        ListNode(int val, ListNode next) { this.val = val; this.next = next; }\n");
         wrapper.append("    }\n");
         wrapper.append("    \n");
-        wrapper.append("    private static ListNode parseLinkedList(String line) {\n");
-        wrapper.append("        int[] values = parseIntArray(line);\n");
-        wrapper.append("        if (values.length == 0) return null;\n");
-        wrapper.append("        \n");
-        wrapper.append("        ListNode head = new ListNode(values[0]);\n");
-        wrapper.append("        ListNode current = head;\n");
-        wrapper.append("        for (int i = 1; i < values.length; i++) {\n");
-        wrapper.append("            current.next = new ListNode(values[i]);\n");
-        wrapper.append("            current = current.next;\n");
+        wrapper.append("    private static java.lang.reflect.Method loadEntry(java.net.URL location) throws Exception {\n");
+        wrapper.append("        Class<?> type = ").append(entryClass).append(".class;\n");
+        wrapper.append("        if (location != null) {\n");
+        wrapper.append("            ClassLoader loader = new java.net.URLClassLoader(new java.net.URL[]{location}, ClassLoader.getPlatformClassLoader());\n");
+        wrapper.append("            type = Class.forName(\"").append(entryClass).append("\", true, loader);\n");
         wrapper.append("        }\n");
-        wrapper.append("        return head;\n");
+        wrapper.append("        java.lang.reflect.Method entry = type.getDeclaredMethod(\"main\", String[].class);\n");
+        wrapper.append("        entry.setAccessible(true);\n");
+        wrapper.append("        return entry;\n");
         wrapper.append("    }\n");
         wrapper.append("    \n");
-        wrapper.append("    private static void printLinkedList(ListNode head) {\n");
-        wrapper.append("        System.out.print(\"[\");\n");
-        wrapper.append("        ListNode current = head;\n");
-        wrapper.append("        boolean first = true;\n");
-        wrapper.append("        while (current != null) {\n");
-        wrapper.append("            if (!first) System.out.print(\",\");\n");
-        wrapper.append("            System.out.print(current.val);\n");
-        wrapper.append("            first = false;\n");
-        wrapper.append("            current = current.next;\n");
+        wrapper.append("    private static int indexOf(byte[] data, int from) {\n");
+        wrapper.append("        for (int i = from; i < data.length; i++) {\n");
+        wrapper.append("            if (data[i] == '\\n') return i;\n");
         wrapper.append("        }\n");
-        wrapper.append("        System.out.println(\"]\");\n");
+        wrapper.append("        return data.length;\n");
         wrapper.append("    }\n");
-        
         wrapper.append("}\n");
-        
+
         return wrapper.toString();
     }
 
-    private String wrapPythonCodeDynamic(String userCode, String problemTitle, String methodSignature) {
-        StringBuilder wrapper = new StringBuilder();
-        
-        wrapper.append("import sys\n");
-        wrapper.append("import json\n");
-        wrapper.append("from typing import List, Optional\n\n");
-        
-        // Add ListNode class for linked list problems
-        wrapper.append("class ListNode:\n");
-        wrapper.append("    def __init__(self, val=0, next=None):\n");
-        wrapper.append("        self.val = val\n");
-        wrapper.append("        self.next = next\n\n");
-        
-        // Add user's solution class
-        wrapper.append(userCode).append("\n\n");
-        
-        wrapper.append("def parse_int_array(line):\n");
-        wrapper.append("    if line.startswith('[') and line.endswith(']'):\n");
-        wrapper.append("        line = line[1:-1]\n");
-        wrapper.append("    if not line.strip():\n");
-        wrapper.append("        return []\n");
-        wrapper.append("    return [int(x.strip()) for x in line.split(',')]\n\n");
-        
-        wrapper.append("def print_int_array(arr):\n");
-        wrapper.append("    print(f'[{\",\".join(map(str, arr))}]')\n\n");
-        
-        wrapper.append("def parse_linked_list(line):\n");
-        wrapper.append("    values = parse_int_array(line)\n");
-        wrapper.append("    if not values:\n");
-        wrapper.append("        return None\n");
-        wrapper.append("    \n");
-        wrapper.append("    head = ListNode(values[0])\n");
-        wrapper.append("    current = head\n");
-        wrapper.append("    for val in values[1:]:\n");
-        wrapper.append("        current.next = ListNode(val)\n");
-        wrapper.append("        current = current.next\n");
-        wrapper.append("    return head\n\n");
-        
-        wrapper.append("def print_linked_list(head):\n");
-        wrapper.append("    result = []\n");
-        wrapper.append("    current = head\n");
-        wrapper.append("    while current:\n");
-        wrapper.append("        result.append(current.val)\n");
-        wrapper.append("        current = current.next\n");
-        wrapper.append("    print_int_array(result)\n\n");
-        
-        wrapper.append("def main():\n");
-        wrapper.append("    try:\n");
-        wrapper.append("        solution = Solution()\n");
-        wrapper.append("        line = input().strip()\n");
-        wrapper.append("        \n");
-        
-        // Dynamic problem handling
-        if (problemTitle.toLowerCase().contains("two sum")) {
-            wrapper.append("        # Two Sum problem\n");
-            wrapper.append("        nums = parse_int_array(line)\n");
-            wrapper.append("        target = int(input().strip())\n");
-            wrapper.append("        result = solution.twoSum(nums, target)\n");
-            wrapper.append("        print_int_array(result)\n");
-        } else if (problemTitle.toLowerCase().contains("reverse") && 
-                   problemTitle.toLowerCase().contains("linked")) {
-            wrapper.append("        # Reverse Linked List problem\n");
-            wrapper.append("        head = parse_linked_list(line)\n");
-            wrapper.append("        result = solution.reverseList(head)\n");
-            wrapper.append("        print_linked_list(result)\n");
-        } else {
-            wrapper.append("        # Generic array problem\n");
-            wrapper.append("        nums = parse_int_array(line)\n");
-            wrapper.append("        print('Generic input processed')\n");
+    // The class whose body declares main() - the nearest class declaration before it
+    private String findJavaEntryClass(String code) {
+        Matcher mainMatcher = Pattern.compile("static\\s+void\\s+main\\s*\\(").matcher(code);
+        int mainIndex = mainMatcher.find() ? mainMatcher.start() : code.length();
+        Matcher classMatcher = Pattern.compile("\\bclass\\s+([A-Za-z_][A-Za-z0-9_]*)").matcher(code);
+        String entryClass = "Solution";
+        while (classMatcher.find() && classMatcher.start() < mainIndex) {
+            entryClass = classMatcher.group(1);
         }
-        
-        wrapper.append("        \n");
-        wrapper.append("    except Exception as e:\n");
-        wrapper.append("        print(f'Error: {str(e)}', file=sys.stderr)\n");
-        wrapper.append("        import traceback\n");
-        wrapper.append("        traceback.print_exc()\n");
-        wrapper.append("\n");
-        wrapper.append("if __name__ == '__main__':\n");
-        wrapper.append("    main()\n");
-        
+        return entryClass;
+    }
+
+    private String wrapPythonHarness(String userCode) {
+        String encoded = Base64.getEncoder().encodeToString(userCode.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder wrapper = new StringBuilder();
+        wrapper.append("import sys as _harness_sys\n");
+        wrapper.append("import io as _harness_io\n");
+        wrapper.append("import time as _harness_time\n");
+        wrapper.append("import base64 as _harness_base64\n");
+        wrapper.append("import traceback as _harness_traceback\n\n");
+        wrapper.append("_harness_code = compile(_harness_base64.b64decode('").append(encoded)
+                .append("').decode('utf-8'), 'solution.py', 'exec')\n\n");
+        wrapper.append("def _harness_main():\n");
+        wrapper.append("    data = _harness_sys.stdin.buffer.read()\n");
+        wrapper.append("    header_end = data.index(b'\\n')\n");
+        wrapper.append("    header = data[:header_end].split()\n");
+        wrapper.append("    count = int(header[1])\n");
+        wrapper.append("    nonce = header[2].decode('ascii')\n");
+        wrapper.append("    pos = header_end + 1\n");
+        wrapper.append("    out = _harness_sys.stdout\n");
+        wrapper.append("    for index in range(count):\n");
+        wrapper.append("        line_end = data.index(b'\\n', pos)\n");
+        wrapper.append("        length = int(data[pos:line_end])\n");
+        wrapper.append("        pos = line_end + 1\n");
+        wrapper.append("        case = data[pos:pos + length]\n");
+        wrapper.append("        pos += length\n");
+        wrapper.append("        out.write('" + HARNESS_CASE_BEGIN + "%s %d@@\\n' % (nonce, index))\n");
+        wrapper.append("        out.flush()\n");
+        wrapper.append("        _harness_sys.stdin = _harness_io.TextIOWrapper(_harness_io.BytesIO(case), encoding='utf-8')\n");
+        wrapper.append("        failed = False\n");
+        wrapper.append("        start = _harness_time.perf_counter_ns()\n");
+        wrapper.append("        try:\n");
+        wrapper.append("            # Fresh globals per case, exactly as if the script were started again\n");
+        wrapper.append("            exec(_harness_code, {'__name__': '__main__', '__builtins__': __builtins__})\n");
+        wrapper.append("        except SystemExit as exit_request:\n");
+        wrapper.append("            failed = exit_request.code not in (None, 0)\n");
+        wrapper.append("        except BaseException:\n");
+        wrapper.append("            failed = True\n");
+        wrapper.append("            _harness_traceback.print_exc()\n");
+        wrapper.append("        elapsed = _harness_time.perf_counter_ns() - start\n");
+        wrapper.append("        _harness_sys.stdout.flush()\n");
+        wrapper.append("        _harness_sys.stdout = out\n");
+        wrapper.append("        out.write('\\n" + HARNESS_CASE_END + "%s %d %d -1%s@@\\n' % (nonce, index, elapsed, ' ERROR' if failed else ''))\n");
+        wrapper.append("        out.flush()\n\n");
+        wrapper.append("_harness_main()\n");
+
         return wrapper.toString();
     }
 
-    private String wrapCppCodeDynamic(String userCode, String problemTitle, String methodSignature) {
+    // C and C++: a constructor runs before the user's main, reads every case and forks a child per
+    // case. The child returns into normal startup, so the untouched user main runs against that case
+    // with pristine globals, while the parent reports each child's CPU time and peak memory.
+    private String wrapNativeHarness(String userCode) {
         StringBuilder wrapper = new StringBuilder();
-        
-        wrapper.append("#include <iostream>\n");
-        wrapper.append("#include <vector>\n");
-        wrapper.append("#include <string>\n");
-        wrapper.append("#include <sstream>\n");
-        wrapper.append("#include <algorithm>\n");
-        wrapper.append("using namespace std;\n\n");
-        
-        // Add ListNode struct for linked list problems
-        wrapper.append("struct ListNode {\n");
-        wrapper.append("    int val;\n");
-        wrapper.append("    ListNode *next;\n");
-        wrapper.append("    ListNode() : val(0), next(nullptr) {}\n");
-        wrapper.append("    ListNode(int x) : val(x), next(nullptr) {}\n");
-        wrapper.append("    ListNode(int x, ListNode *next) : val(x), next(next) {}\n");
-        wrapper.append("};\n\n");
-        
-        // Add user's solution class
         wrapper.append(userCode).append("\n\n");
-        
-        // Add utility functions
-        wrapper.append("vector<int> parseIntArray(string line) {\n");
-        wrapper.append("    if (line.front() == '[' && line.back() == ']') {\n");
-        wrapper.append("        line = line.substr(1, line.length() - 2);\n");
-        wrapper.append("    }\n");
-        wrapper.append("    \n");
-        wrapper.append("    vector<int> result;\n");
-        wrapper.append("    if (line.empty()) return result;\n");
-        wrapper.append("    \n");
-        wrapper.append("    stringstream ss(line);\n");
-        wrapper.append("    string num;\n");
-        wrapper.append("    while (getline(ss, num, ',')) {\n");
-        wrapper.append("        result.push_back(stoi(num));\n");
-        wrapper.append("    }\n");
-        wrapper.append("    return result;\n");
-        wrapper.append("}\n\n");
-        
-        wrapper.append("void printIntArray(const vector<int>& arr) {\n");
-        wrapper.append("    cout << \"[\";\n");
-        wrapper.append("    for (int i = 0; i < arr.size(); i++) {\n");
-        wrapper.append("        cout << arr[i];\n");
-        wrapper.append("        if (i < arr.size() - 1) cout << \",\";\n");
-        wrapper.append("    }\n");
-        wrapper.append("    cout << \"]\" << endl;\n");
-        wrapper.append("}\n\n");
-        
-        wrapper.append("ListNode* parseLinkedList(string line) {\n");
-        wrapper.append("    vector<int> values = parseIntArray(line);\n");
-        wrapper.append("    if (values.empty()) return nullptr;\n");
-        wrapper.append("    \n");
-        wrapper.append("    ListNode* head = new ListNode(values[0]);\n");
-        wrapper.append("    ListNode* current = head;\n");
-        wrapper.append("    for (int i = 1; i < values.size(); i++) {\n");
-        wrapper.append("        current->next = new ListNode(values[i]);\n");
-        wrapper.append("        current = current->next;\n");
-        wrapper.append("    }\n");
-        wrapper.append("    return head;\n");
-        wrapper.append("}\n\n");
-        
-        wrapper.append("void printLinkedList(ListNode* head) {\n");
-        wrapper.append("    cout << \"[\";\n");
-        wrapper.append("    ListNode* current = head;\n");
-        wrapper.append("    bool first = true;\n");
-        wrapper.append("    while (current) {\n");
-        wrapper.append("        if (!first) cout << \",\";\n");
-        wrapper.append("        cout << current->val;\n");
-        wrapper.append("        first = false;\n");
-        wrapper.append("        current = current->next;\n");
+        wrapper.append("#include <stdio.h>\n");
+        wrapper.append("#include <stdlib.h>\n");
+        wrapper.append("#include <string.h>\n");
+        wrapper.append("#include <unistd.h>\n");
+        wrapper.append("#include <sys/types.h>\n");
+        wrapper.append("#include <sys/wait.h>\n");
+        wrapper.append("#include <sys/time.h>\n");
+        wrapper.append("#include <sys/resource.h>\n\n");
+        wrapper.append("static char *harness_read_all(size_t *size) {\n");
+        wrapper.append("    size_t capacity = 1 << 16, length = 0, n;\n");
+        wrapper.append("    char *buffer = (char *) malloc(capacity + 1);\n");
+        wrapper.append("    // read(2) rather than stdio, so no stdin buffer holding the header outlives this function\n");
+        wrapper.append("    while ((n = (size_t) read(STDIN_FILENO, buffer + length, capacity - length)) > 0 && n != (size_t) -1) {\n");
+        wrapper.append("        length += n;\n");
+        wrapper.append("        if (length == capacity) {\n");
+        wrapper.append("            capacity *= 2;\n");
+        wrapper.append("            buffer = (char *) realloc(buffer, capacity + 1);\n");
+        wrapper.append("        }\n");
         wrapper.append("    }\n");
-        wrapper.append("    cout << \"]\" << endl;\n");
+        wrapper.append("    buffer[length] = '\\0';\n");
+        wrapper.append("    *size = length;\n");
+        wrapper.append("    return buffer;\n");
         wrapper.append("}\n\n");
-        
-        wrapper.append("int main() {\n");
-        wrapper.append("    try {\n");
-        wrapper.append("        Solution solution;\n");
-        wrapper.append("        string line;\n");
-        wrapper.append("        getline(cin, line);\n");
-        wrapper.append("        \n");
-        
-        // Dynamic problem handling
-        if (problemTitle.toLowerCase().contains("two sum")) {
-            wrapper.append("        // Two Sum problem\n");
-            wrapper.append("        vector<int> nums = parseIntArray(line);\n");
-            wrapper.append("        getline(cin, line);\n");
-            wrapper.append("        int target = stoi(line);\n");
-            wrapper.append("        vector<int> result = solution.twoSum(nums, target);\n");
-            wrapper.append("        printIntArray(result);\n");
-        } else if (problemTitle.toLowerCase().contains("reverse") && 
-                   problemTitle.toLowerCase().contains("linked")) {
-            wrapper.append("        // Reverse Linked List problem\n");
-            wrapper.append("        ListNode* head = parseLinkedList(line);\n");
-            wrapper.append("        ListNode* result = solution.reverseList(head);\n");
-            wrapper.append("        printLinkedList(result);\n");
-        } else {
-            wrapper.append("        // Generic array problem\n");
-            wrapper.append("        vector<int> nums = parseIntArray(line);\n");
-            wrapper.append("        cout << \"Generic input processed\" << endl;\n");
-        }
-        
+        wrapper.append("__attribute__((constructor(101))) static void harness_run_cases(void) {\n");
+        wrapper.append("    size_t size;\n");
+        wrapper.append("    char *data = harness_read_all(&size);\n");
+        wrapper.append("    char *cursor = strchr(data, ' ');\n");
+        wrapper.append("    if (cursor == NULL) _exit(1);\n");
+        wrapper.append("    int count = (int) strtol(cursor + 1, &cursor, 10);\n");
+        wrapper.append("    char *nonceEnd = strchr(cursor, '\\n');\n");
+        wrapper.append("    if (nonceEnd == NULL) _exit(1);\n");
+        wrapper.append("    while (*cursor == ' ') cursor++;\n");
+        wrapper.append("    char nonce[64];\n");
+        wrapper.append("    snprintf(nonce, sizeof(nonce), \"%.*s\", (int) (nonceEnd - cursor), cursor);\n");
+        wrapper.append("    cursor = nonceEnd + 1;\n");
+        wrapper.append("    for (int i = 0; i < count; i++) {\n");
+        wrapper.append("        long length = strtol(cursor, &cursor, 10);\n");
+        wrapper.append("        cursor++;\n");
+        wrapper.append("        FILE *input = fopen(\"harness_case.in\", \"wb\");\n");
+        wrapper.append("        fwrite(cursor, 1, (size_t) length, input);\n");
+        wrapper.append("        fclose(input);\n");
+        wrapper.append("        cursor += length;\n");
         wrapper.append("        \n");
-        wrapper.append("    } catch (const exception& e) {\n");
-        wrapper.append("        cerr << \"Error: \" << e.what() << endl;\n");
-        wrapper.append("        return 1;\n");
+        wrapper.append("        printf(\"" + HARNESS_CASE_BEGIN + "%s %d@@\\n\", nonce, i);\n");
+        wrapper.append("        fflush(stdout);\n");
+        wrapper.append("        struct timeval started, finished;\n");
+        wrapper.append("        gettimeofday(&started, NULL);\n");
+        wrapper.append("        pid_t child = fork();\n");
+        wrapper.append("        if (child == 0) {\n");
+        wrapper.append("            // Continue into the program's own main() with this case on stdin\n");
+        wrapper.append("            if (!freopen(\"harness_case.in\", \"r\", stdin)) _exit(127);\n");
+        wrapper.append("            memset(nonce, 0, sizeof(nonce));\n");
+        wrapper.append("            memset(data, 0, size);\n");
+        wrapper.append("            free(data);\n");
+        wrapper.append("            return;\n");
+        wrapper.append("        }\n");
+        wrapper.append("        int status = 0;\n");
+        wrapper.append("        struct rusage usage;\n");
+        wrapper.append("        memset(&usage, 0, sizeof(usage));\n");
+        wrapper.append("        int failed = child < 0 || wait4(child, &status, 0, &usage) < 0\n");
+        wrapper.append("                || !WIFEXITED(status) || WEXITSTATUS(status) != 0;\n");
+        wrapper.append("        gettimeofday(&finished, NULL);\n");
+        wrapper.append("        long long cpu = (usage.ru_utime.tv_sec + usage.ru_stime.tv_sec) * 1000000000LL\n");
+        wrapper.append("                + (usage.ru_utime.tv_usec + usage.ru_stime.tv_usec) * 1000LL;\n");
+        wrapper.append("        if (cpu == 0) {\n");
+        wrapper.append("            cpu = (finished.tv_sec - started.tv_sec) * 1000000000LL + (finished.tv_usec - started.tv_usec) * 1000LL;\n");
+        wrapper.append("        }\n");
+        wrapper.append("        printf(\"\\n" + HARNESS_CASE_END + "%s %d %lld %ld%s@@\\n\", nonce, i, cpu, (long) usage.ru_maxrss, failed ? \" ERROR\" : \"\");\n");
+        wrapper.append("        fflush(stdout);\n");
         wrapper.append("    }\n");
-        wrapper.append("    \n");
-        wrapper.append("    return 0;\n");
+        wrapper.append("    _exit(0);\n");
         wrapper.append("}\n");
-        
+
         return wrapper.toString();
     }
-}
\ No newline at end of file
+
+    // Wraps a function-only submission (a Solution class) in the problem's generated driver. Full
+    // programs, and problems without a declared FunctionSignature, are returned unchanged.
+    public String wrapCodeForProblem(String userCode, String language, Problem problem) {
+        if (!usesSignatureDriver(userCode, language, problem)) {
+            return userCode;
+        }
+        return driverTemplate(problem, driverLanguage(language)).wrap(userCode);
+    }
+
+    // Harness variant of wrapCodeForProblem: signature drivers already understand the harness
+    // protocol, anything else gets the generic per-program harness.
+    public String wrapCodeInHarness(String userCode, String language, Problem problem) {
+        if (usesSignatureDriver(userCode, language, problem)) {
+            return driverTemplate(problem, driverLanguage(language)).wrap(userCode);
+        }
+        return wrapCodeInHarness(userCode, language);
+    }
+
+    public boolean isSupportedSignatureType(String type, boolean returnType) {
+        String normalized = normalizeSignatureType(type);
+        return SIGNATURE_TYPES.containsKey(normalized) || (returnType && normalized.equals("void"));
+    }
+
+    // Splits an example such as "nums = [2,7,11,15], target = 9" into the driver's input format
+    // (one value per line, in parameter order). Returns null if the example doesn't name every parameter.
+    public String exampleInputForSignature(String exampleInput, Problem.FunctionSignature signature) {
+        if (exampleInput == null || signature == null || signature.getParameters() == null) return null;
+
+        Map<String, String> values = new HashMap<>();
+        int depth = 0;
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i <= exampleInput.length(); i++) {
+            char c = i < exampleInput.length() ? exampleInput.charAt(i) : ',';
+            if (quoted) {
+                if (c == '\\') i++;
+                else if (c == '"') quoted = false;
+                continue;
+            }
+            if (c == '"') quoted = true;
+            else if (c == '[' || c == '{') depth++;
+            else if (c == ']' || c == '}') depth--;
+            else if ((c == ',' || c == '\n') && depth == 0) {
+                String part = exampleInput.substring(start, i);
+                int eq = part.indexOf('=');
+                if (eq > 0) values.put(part.substring(0, eq).trim(), part.substring(eq + 1).trim());
+                start = i + 1;
+            }
+        }
+
+        StringBuilder input = new StringBuilder();
+        for (Problem.Parameter parameter : signature.getParameters()) {
+            String value = values.get(parameter.getName());
+            if (value == null) return null;
+            input.append(value).append("\n");
+        }
+        return input.toString();
+    }
+
+    // Everything in a generated driver except the submission itself depends only on the problem's
+    // signature, so it is built once per (problem version, language) and wrapping is a concatenation.
+    private static final class DriverTemplate {
+        private final long version;
+        private final String language;
+        private final String prefix;
+        private final String listNodeDefinition;
+        private final String suffix;
+
+        private DriverTemplate(long version, String language, String prefix, String listNodeDefinition, String suffix) {
+            this.version = version;
+            this.language = language;
+            this.prefix = prefix;
+            this.listNodeDefinition = listNodeDefinition;
+            this.suffix = suffix;
+        }
+
+        private String wrap(String userCode) {
+            String code = userCode;
+            if (language.equals("java")) {
+                // Judge0 compiles Main.java, so the driver owns the only public class
+                code = code.replaceFirst("public\\s+((?:final\\s+)?class\\s+)", "$1");
+            }
+            String listNode = LIST_NODE_DEFINED.matcher(code).find() ? "" : listNodeDefinition;
+
+            StringBuilder wrapped = new StringBuilder(prefix.length() + listNode.length() + code.length() + suffix.length() + 2);
+            wrapped.append(prefix);
+            if (language.equals("java")) {
+                // Java imports must precede every type declaration, so helpers go after the user's code
+                wrapped.append(code).append("\n\n").append(listNode);
+            } else {
+                wrapped.append(listNode).append(code).append("\n\n");
+            }
+            return wrapped.append(suffix).toString();
+        }
+    }
+
+    private static final class SignatureType {
+        private final String javaType;
+        private final String cppType;
+        private final String reader;
+
+        private SignatureType(String javaType, String cppType, String reader) {
+            this.javaType = javaType;
+            this.cppType = cppType;
+            this.reader = reader;
+        }
+    }
+
+    private DriverTemplate driverTemplate(Problem problem, String lang) {
+        if (problem.getId() == null) {
+            return buildDriverTemplate(problem, lang);
+        }
+        String key = problem.getId() + ":" + lang;
+        DriverTemplate cached = driverTemplates.get(key);
+        if (cached != null && cached.version == problem.getVersion()) {
+            return cached;
+        }
+        DriverTemplate template = buildDriverTemplate(problem, lang);
+        driverTemplates.put(key, template);
+        return template;
+    }
+
+    private DriverTemplate buildDriverTemplate(Problem problem, String lang) {
+        Problem.FunctionSignature signature = problem.getFunctionSignature();
+        boolean usesList = usesListNode(signature);
+        switch (lang) {
+            case "java":
+                return new DriverTemplate(problem.getVersion(), lang,
+                        "import java.util.*;\nimport java.io.*;\n\n",
+                        usesList ? javaListNodeDefinition() : "",
+                        javaDriverSuffix(signature, usesList));
+            case "python":
+                return new DriverTemplate(problem.getVersion(), lang,
+                        "import os\nimport sys\nimport json\nimport time\nimport traceback\nfrom typing import *\n\n",
+                        usesList ? pythonListNodeDefinition() : "",
+                        pythonDriverSuffix(signature, usesList));
+            default:
+                return new DriverTemplate(problem.getVersion(), lang,
+                        "#include <bits/stdc++.h>\nusing namespace std;\n\n",
+                        usesList ? cppListNodeDefinition() : "",
+                        cppDriverSuffix(signature, usesList));
+        }
+    }
+
+    // Signature drivers exist for Java, Python and C++ (Solution is a class, so not for C)
+    private String driverLanguage(String language) {
+        String lang = harnessLanguage(language);
+        if ("native".equals(lang)) {
+            return language.toLowerCase().equals("c") ? null : "cpp";
+        }
+        return lang;
+    }
+
+    private boolean usesSignatureDriver(String userCode, String language, Problem problem) {
+        String lang = driverLanguage(language);
+        return lang != null && problem != null && problem.getFunctionSignature() != null
+                && !definesEntryPoint(userCode, lang);
+    }
+
+    private boolean definesEntryPoint(String userCode, String lang) {
+        if (userCode == null) return false;
+        switch (lang) {
+            case "java":
+                return Pattern.compile("static\\s+void\\s+main\\s*\\(").matcher(userCode).find();
+            case "python":
+                return Pattern.compile("(?m)^if\\s+__name__\\s*==").matcher(userCode).find();
+            default:
+                return Pattern.compile("\\bint\\s+main\\s*\\(").matcher(userCode).find();
+        }
+    }
+
+    private boolean usesListNode(Problem.FunctionSignature signature) {
+        if (normalizeSignatureType(signature.getReturnType()).equals("listnode")) return true;
+        for (Problem.Parameter parameter : parameters(signature)) {
+            if (normalizeSignatureType(parameter.getType()).equals("listnode")) return true;
+        }
+        return false;
+    }
+
+    private List<Problem.Parameter> parameters(Problem.FunctionSignature signature) {
+        return signature.getParameters() != null ? signature.getParameters() : new ArrayList<>();
+    }
+
+    private String normalizeSignatureType(String type) {
+        return type != null ? type.replaceAll("\\s+", "").toLowerCase() : "void";
+    }
+
+    private SignatureType signatureType(String type) {
+        SignatureType mapped = SIGNATURE_TYPES.get(normalizeSignatureType(type));
+        if (mapped == null) {
+            throw new RuntimeException("Unsupported signature type: " + type);
+        }
+        return mapped;
+    }
+
+    private String javaListNodeDefinition() {
+        StringBuilder driver = new StringBuilder();
+        driver.append("class ListNode {\n");
+        driver.append("    int val;\n");
+        driver.append("    ListNode next;\n");
+        driver.append("    ListNode() {}\n");
+        driver.append("    ListNode(int val) { this.val = val; }\n");
+        driver.append("    ListNode(int val, ListNode next) { this.val = val; this.next = next; }\n");
+        driver.append("}\n\n");
+        return driver.toString();
+    }
+
+    private String javaDriverSuffix(Problem.FunctionSignature signature, boolean usesList) {
+        StringBuilder driver = new StringBuilder();
+        driver.append("final class HarnessInput {\n");
+        driver.append("    private final byte[] data;\n");
+        driver.append("    private final int end;\n");
+        driver.append("    private int pos;\n");
+        driver.append("\n");
+        driver.append("    HarnessInput(byte[] data, int offset, int length) {\n");
+        driver.append("        this.data = data;\n");
+        driver.append("        this.pos = offset;\n");
+        driver.append("        this.end = offset + length;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    private static boolean isSeparator(byte c) {\n");
+        driver.append("        return c == ' ' || c == ',' || c == '\\n' || c == '\\r' || c == '\\t';\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    private void skipSeparators() {\n");
+        driver.append("        while (pos < end && isSeparator(data[pos])) pos++;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    private boolean atValueEnd() {\n");
+        driver.append("        return pos >= end || isSeparator(data[pos]) || data[pos] == ']';\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    private String token() {\n");
+        driver.append("        skipSeparators();\n");
+        driver.append("        int start = pos;\n");
+        driver.append("        while (!atValueEnd()) pos++;\n");
+        driver.append("        if (start == pos) throw new IllegalArgumentException(\"Missing value at offset \" + pos);\n");
+        driver.append("        return new String(data, start, pos - start, java.nio.charset.StandardCharsets.UTF_8);\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    private void open() {\n");
+        driver.append("        skipSeparators();\n");
+        driver.append("        if (pos >= end || data[pos] != '[') throw new IllegalArgumentException(\"Expected '[' at offset \" + pos);\n");
+        driver.append("        pos++;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    private boolean closed() {\n");
+        driver.append("        skipSeparators();\n");
+        driver.append("        if (pos >= end) throw new IllegalArgumentException(\"Unterminated array\");\n");
+        driver.append("        if (data[pos] != ']') return false;\n");
+        driver.append("        pos++;\n");
+        driver.append("        return true;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    long readLong() {\n");
+        driver.append("        skipSeparators();\n");
+        driver.append("        int start = pos;\n");
+        driver.append("        boolean negative = pos < end && data[pos] == '-';\n");
+        driver.append("        if (negative || (pos < end && data[pos] == '+')) pos++;\n");
+        driver.append("        int digits = pos;\n");
+        driver.append("        long value = 0;\n");
+        driver.append("        while (pos < end && data[pos] >= '0' && data[pos] <= '9') value = value * 10 + (data[pos++] - '0');\n");
+        driver.append("        if (pos == digits || !atValueEnd()) throw new NumberFormatException(\"Invalid integer at offset \" + start);\n");
+        driver.append("        return negative ? -value : value;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    int readInt() {\n");
+        driver.append("        long value = readLong();\n");
+        driver.append("        if (value != (int) value) throw new NumberFormatException(\"Integer out of range: \" + value);\n");
+        driver.append("        return (int) value;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    double readDouble() { return Double.parseDouble(token()); }\n");
+        driver.append("\n");
+        driver.append("    boolean readBoolean() {\n");
+        driver.append("        String value = token();\n");
+        driver.append("        return value.equals(\"true\") || value.equals(\"1\");\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    String readString() {\n");
+        driver.append("        skipSeparators();\n");
+        driver.append("        if (pos >= end || data[pos] != '\"') return token();\n");
+        driver.append("        int start = ++pos;\n");
+        driver.append("        boolean escaped = false;\n");
+        driver.append("        while (pos < end && data[pos] != '\"') {\n");
+        driver.append("            if (data[pos] == '\\\\') {\n");
+        driver.append("                escaped = true;\n");
+        driver.append("                pos++;\n");
+        driver.append("            }\n");
+        driver.append("            pos++;\n");
+        driver.append("        }\n");
+        driver.append("        String raw = new String(data, start, Math.min(pos, end) - start, java.nio.charset.StandardCharsets.UTF_8);\n");
+        driver.append("        pos++;\n");
+        driver.append("        return escaped ? unescape(raw) : raw;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    private static String unescape(String raw) {\n");
+        driver.append("        StringBuilder value = new StringBuilder(raw.length());\n");
+        driver.append("        for (int i = 0; i < raw.length(); i++) {\n");
+        driver.append("            char c = raw.charAt(i);\n");
+        driver.append("            if (c != '\\\\' || i + 1 >= raw.length()) {\n");
+        driver.append("                value.append(c);\n");
+        driver.append("                continue;\n");
+        driver.append("            }\n");
+        driver.append("            char escaped = raw.charAt(++i);\n");
+        driver.append("            switch (escaped) {\n");
+        driver.append("                case 'n': value.append('\\n'); break;\n");
+        driver.append("                case 't': value.append('\\t'); break;\n");
+        driver.append("                case 'r': value.append('\\r'); break;\n");
+        driver.append("                case 'b': value.append('\\b'); break;\n");
+        driver.append("                case 'f': value.append('\\f'); break;\n");
+        driver.append("                case 'u': value.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16)); i += 4; break;\n");
+        driver.append("                default: value.append(escaped);\n");
+        driver.append("            }\n");
+        driver.append("        }\n");
+        driver.append("        return value.toString();\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    int[] readIntArray() {\n");
+        driver.append("        open();\n");
+        driver.append("        int[] values = new int[16];\n");
+        driver.append("        int size = 0;\n");
+        driver.append("        while (!closed()) {\n");
+        driver.append("            if (size == values.length) values = java.util.Arrays.copyOf(values, size * 2);\n");
+        driver.append("            values[size++] = readInt();\n");
+        driver.append("        }\n");
+        driver.append("        return java.util.Arrays.copyOf(values, size);\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    long[] readLongArray() {\n");
+        driver.append("        open();\n");
+        driver.append("        long[] values = new long[16];\n");
+        driver.append("        int size = 0;\n");
+        driver.append("        while (!closed()) {\n");
+        driver.append("            if (size == values.length) values = java.util.Arrays.copyOf(values, size * 2);\n");
+        driver.append("            values[size++] = readLong();\n");
+        driver.append("        }\n");
+        driver.append("        return java.util.Arrays.copyOf(values, size);\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    double[] readDoubleArray() {\n");
+        driver.append("        open();\n");
+        driver.append("        double[] values = new double[16];\n");
+        driver.append("        int size = 0;\n");
+        driver.append("        while (!closed()) {\n");
+        driver.append("            if (size == values.length) values = java.util.Arrays.copyOf(values, size * 2);\n");
+        driver.append("            values[size++] = readDouble();\n");
+        driver.append("        }\n");
+        driver.append("        return java.util.Arrays.copyOf(values, size);\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    String[] readStringArray() {\n");
+        driver.append("        open();\n");
+        driver.append("        java.util.List<String> values = new java.util.ArrayList<>();\n");
+        driver.append("        while (!closed()) values.add(readString());\n");
+        driver.append("        return values.toArray(new String[0]);\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    int[][] readIntMatrix() {\n");
+        driver.append("        open();\n");
+        driver.append("        java.util.List<int[]> rows = new java.util.ArrayList<>();\n");
+        driver.append("        while (!closed()) rows.add(readIntArray());\n");
+        driver.append("        return rows.toArray(new int[0][]);\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    char[][] readCharMatrix() {\n");
+        driver.append("        open();\n");
+        driver.append("        java.util.List<char[]> rows = new java.util.ArrayList<>();\n");
+        driver.append("        while (!closed()) {\n");
+        driver.append("            String[] cells = readStringArray();\n");
+        driver.append("            char[] row = new char[cells.length];\n");
+        driver.append("            for (int i = 0; i < cells.length; i++) row[i] = cells[i].isEmpty() ? ' ' : cells[i].charAt(0);\n");
+        driver.append("            rows.add(row);\n");
+        driver.append("        }\n");
+        driver.append("        return rows.toArray(new char[0][]);\n");
+        driver.append("    }\n");
+        if (usesList) {
+        driver.append("\n");
+        driver.append("    ListNode readList() {\n");
+        driver.append("        ListNode dummy = new ListNode(0);\n");
+        driver.append("        ListNode tail = dummy;\n");
+        driver.append("        for (int value : readIntArray()) {\n");
+        driver.append("            tail.next = new ListNode(value);\n");
+        driver.append("            tail = tail.next;\n");
+        driver.append("        }\n");
+        driver.append("        return dummy.next;\n");
+        driver.append("    }\n");
+        }
+        driver.append("}\n\n");
+        driver.append("final class HarnessOutput {\n");
+        driver.append("    private byte[] buffer = new byte[1 << 16];\n");
+        driver.append("    private int size;\n");
+        driver.append("\n");
+        driver.append("    private void ensure(int extra) {\n");
+        driver.append("        if (size + extra > buffer.length) buffer = java.util.Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    private void put(char c) {\n");
+        driver.append("        ensure(1);\n");
+        driver.append("        buffer[size++] = (byte) c;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    HarnessOutput raw(String text) {\n");
+        driver.append("        byte[] bytes = text.getBytes(java.nio.charset.StandardCharsets.UTF_8);\n");
+        driver.append("        ensure(bytes.length);\n");
+        driver.append("        System.arraycopy(bytes, 0, buffer, size, bytes.length);\n");
+        driver.append("        size += bytes.length;\n");
+        driver.append("        return this;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    void flushTo(java.io.OutputStream stream) throws java.io.IOException {\n");
+        driver.append("        stream.write(buffer, 0, size);\n");
+        driver.append("        stream.flush();\n");
+        driver.append("        size = 0;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    void write(long value) {\n");
+        driver.append("        if (value == Long.MIN_VALUE) {\n");
+        driver.append("            raw(\"-9223372036854775808\");\n");
+        driver.append("            return;\n");
+        driver.append("        }\n");
+        driver.append("        ensure(20);\n");
+        driver.append("        if (value < 0) {\n");
+        driver.append("            buffer[size++] = '-';\n");
+        driver.append("            value = -value;\n");
+        driver.append("        }\n");
+        driver.append("        int start = size;\n");
+        driver.append("        do {\n");
+        driver.append("            buffer[size++] = (byte) ('0' + value % 10);\n");
+        driver.append("            value /= 10;\n");
+        driver.append("        } while (value > 0);\n");
+        driver.append("        for (int i = start, j = size - 1; i < j; i++, j--) {\n");
+        driver.append("            byte swap = buffer[i];\n");
+        driver.append("            buffer[i] = buffer[j];\n");
+        driver.append("            buffer[j] = swap;\n");
+        driver.append("        }\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    void write(int value) { write((long) value); }\n");
+        driver.append("\n");
+        driver.append("    void write(double value) { raw(String.format(java.util.Locale.ROOT, \"%.5f\", value)); }\n");
+        driver.append("\n");
+        driver.append("    void write(boolean value) { raw(value ? \"true\" : \"false\"); }\n");
+        driver.append("\n");
+        driver.append("    void write(char value) { write(String.valueOf(value)); }\n");
+        driver.append("\n");
+        driver.append("    void write(String value) {\n");
+        driver.append("        if (value == null) {\n");
+        driver.append("            raw(\"null\");\n");
+        driver.append("            return;\n");
+        driver.append("        }\n");
+        driver.append("        StringBuilder quoted = new StringBuilder(value.length() + 2).append('\"');\n");
+        driver.append("        for (int i = 0; i < value.length(); i++) {\n");
+        driver.append("            char c = value.charAt(i);\n");
+        driver.append("            switch (c) {\n");
+        driver.append("                case '\"': quoted.append(\"\\\\\\\"\"); break;\n");
+        driver.append("                case '\\\\': quoted.append(\"\\\\\\\\\"); break;\n");
+        driver.append("                case '\\n': quoted.append(\"\\\\n\"); break;\n");
+        driver.append("                case '\\t': quoted.append(\"\\\\t\"); break;\n");
+        driver.append("                case '\\r': quoted.append(\"\\\\r\"); break;\n");
+        driver.append("                default: quoted.append(c);\n");
+        driver.append("            }\n");
+        driver.append("        }\n");
+        driver.append("        raw(quoted.append('\"').toString());\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    void write(int[] values) {\n");
+        driver.append("        if (values == null) { raw(\"null\"); return; }\n");
+        driver.append("        put('[');\n");
+        driver.append("        for (int i = 0; i < values.length; i++) {\n");
+        driver.append("            if (i > 0) put(',');\n");
+        driver.append("            write(values[i]);\n");
+        driver.append("        }\n");
+        driver.append("        put(']');\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    void write(long[] values) {\n");
+        driver.append("        if (values == null) { raw(\"null\"); return; }\n");
+        driver.append("        put('[');\n");
+        driver.append("        for (int i = 0; i < values.length; i++) {\n");
+        driver.append("            if (i > 0) put(',');\n");
+        driver.append("            write(values[i]);\n");
+        driver.append("        }\n");
+        driver.append("        put(']');\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    void write(double[] values) {\n");
+        driver.append("        if (values == null) { raw(\"null\"); return; }\n");
+        driver.append("        put('[');\n");
+        driver.append("        for (int i = 0; i < values.length; i++) {\n");
+        driver.append("            if (i > 0) put(',');\n");
+        driver.append("            write(values[i]);\n");
+        driver.append("        }\n");
+        driver.append("        put(']');\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    void write(char[] values) {\n");
+        driver.append("        if (values == null) { raw(\"null\"); return; }\n");
+        driver.append("        put('[');\n");
+        driver.append("        for (int i = 0; i < values.length; i++) {\n");
+        driver.append("            if (i > 0) put(',');\n");
+        driver.append("            write(values[i]);\n");
+        driver.append("        }\n");
+        driver.append("        put(']');\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    void write(String[] values) {\n");
+        driver.append("        if (values == null) { raw(\"null\"); return; }\n");
+        driver.append("        put('[');\n");
+        driver.append("        for (int i = 0; i < values.length; i++) {\n");
+        driver.append("            if (i > 0) put(',');\n");
+        driver.append("            write(values[i]);\n");
+        driver.append("        }\n");
+        driver.append("        put(']');\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    void write(int[][] rows) {\n");
+        driver.append("        if (rows == null) { raw(\"null\"); return; }\n");
+        driver.append("        put('[');\n");
+        driver.append("        for (int i = 0; i < rows.length; i++) {\n");
+        driver.append("            if (i > 0) put(',');\n");
+        driver.append("            write(rows[i]);\n");
+        driver.append("        }\n");
+        driver.append("        put(']');\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    void write(char[][] rows) {\n");
+        driver.append("        if (rows == null) { raw(\"null\"); return; }\n");
+        driver.append("        put('[');\n");
+        driver.append("        for (int i = 0; i < rows.length; i++) {\n");
+        driver.append("            if (i > 0) put(',');\n");
+        driver.append("            write(rows[i]);\n");
+        driver.append("        }\n");
+        driver.append("        put(']');\n");
+        driver.append("    }\n");
+        if (usesList) {
+            driver.append("\n");
+        driver.append("    void write(ListNode head) {\n");
+        driver.append("        put('[');\n");
+        driver.append("        for (ListNode node = head; node != null; node = node.next) {\n");
+        driver.append("            if (node != head) put(',');\n");
+        driver.append("            write(node.val);\n");
+        driver.append("        }\n");
+        driver.append("        put(']');\n");
+        driver.append("    }\n");
+        }
+        driver.append("}\n\n");
+        driver.append("public class Main {\n");
+        driver.append("    public static void main(String[] args) throws Exception {\n");
+        driver.append("        // System.in/System.out rather than the raw descriptors, so a pooled JVM worker can redirect them per run\n");
+        driver.append("        byte[] data = readAll(new java.io.DataInputStream(System.in));\n");
+        driver.append("        java.io.OutputStream stdout = System.out;\n");
+        driver.append("        byte[] header = \"" + HARNESS_HEADER + "\".getBytes(java.nio.charset.StandardCharsets.US_ASCII);\n");
+        driver.append("        if (!startsWith(data, header)) {\n");
+        driver.append("            HarnessOutput out = new HarnessOutput();\n");
+        driver.append("            runCase(new HarnessInput(data, 0, data.length), out);\n");
+        driver.append("            out.flushTo(stdout);\n");
+        driver.append("            return;\n");
+        driver.append("        }\n");
+        driver.append("        int pos = indexOf(data, header.length);\n");
+        driver.append("        String[] counts = new String(data, header.length, pos - header.length, java.nio.charset.StandardCharsets.US_ASCII).trim().split(\" \");\n");
+        driver.append("        int count = Integer.parseInt(counts[0]);\n");
+        driver.append("        String nonce = counts[1];\n");
+        driver.append("        pos++;\n");
+        driver.append("        java.net.URL location = null;\n");
+        driver.append("        try {\n");
+        driver.append("            location = Main.class.getProtectionDomain().getCodeSource().getLocation();\n");
+        driver.append("        } catch (Exception ignored) {\n");
+        driver.append("        }\n");
+        driver.append("        for (int i = 0; i < count; i++) {\n");
+        driver.append("            int lineEnd = indexOf(data, pos);\n");
+        driver.append("            int length = Integer.parseInt(new String(data, pos, lineEnd - pos, java.nio.charset.StandardCharsets.US_ASCII).trim());\n");
+        driver.append("            int start = lineEnd + 1;\n");
+        driver.append("            pos = start + length;\n");
+        driver.append("\n");
+        driver.append("            HarnessOutput out = new HarnessOutput();\n");
+        driver.append("            out.raw(\"" + HARNESS_CASE_BEGIN + "\" + nonce + \" \" + i + \"@@\\n\");\n");
+        driver.append("            java.io.ByteArrayOutputStream result = new java.io.ByteArrayOutputStream();\n");
+        driver.append("            boolean failed = false;\n");
+        driver.append("            long elapsed = 0;\n");
+        driver.append("            try {\n");
+        driver.append("                // A fresh class loader per case so static state on Solution never leaks between test cases\n");
+        driver.append("                elapsed = (Long) loadCaseRunner(location).invoke(null, data, start, length, result);\n");
+        driver.append("            } catch (java.lang.reflect.InvocationTargetException e) {\n");
+        driver.append("                failed = true;\n");
+        driver.append("                e.getCause().printStackTrace();\n");
+        driver.append("            } catch (Throwable t) {\n");
+        driver.append("                failed = true;\n");
+        driver.append("                t.printStackTrace();\n");
+        driver.append("            }\n");
+        driver.append("            out.flushTo(stdout);\n");
+        driver.append("            result.writeTo(stdout);\n");
+        driver.append("            out.raw(\"\\n" + HARNESS_CASE_END + "\" + nonce + \" \" + i + \" \" + elapsed + \" -1\" + (failed ? \" ERROR\" : \"\") + \"@@\\n\");\n");
+        driver.append("            out.flushTo(stdout);\n");
+        driver.append("        }\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    // Called on this class as loaded by loadCaseRunner, so only JDK types cross the loader boundary\n");
+        driver.append("    public static long runIsolatedCase(byte[] data, int start, int length, java.io.OutputStream sink) throws Exception {\n");
+        driver.append("        HarnessOutput out = new HarnessOutput();\n");
+        driver.append("        long elapsed = runCase(new HarnessInput(data, start, length), out);\n");
+        driver.append("        out.flushTo(sink);\n");
+        driver.append("        return elapsed;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    private static java.lang.reflect.Method loadCaseRunner(java.net.URL location) throws Exception {\n");
+        driver.append("        Class<?> type = Main.class;\n");
+        driver.append("        if (location != null) {\n");
+        driver.append("            ClassLoader loader = new java.net.URLClassLoader(new java.net.URL[]{location}, ClassLoader.getPlatformClassLoader());\n");
+        driver.append("            type = Class.forName(\"Main\", true, loader);\n");
+        driver.append("        }\n");
+        driver.append("        return type.getMethod(\"runIsolatedCase\", byte[].class, int.class, int.class, java.io.OutputStream.class);\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    private static byte[] readAll(java.io.DataInputStream in) throws java.io.IOException {\n");
+        driver.append("        byte[] buffer = new byte[1 << 16];\n");
+        driver.append("        int size = 0;\n");
+        driver.append("        int read;\n");
+        driver.append("        while ((read = in.read(buffer, size, buffer.length - size)) > 0) {\n");
+        driver.append("            size += read;\n");
+        driver.append("            if (size == buffer.length) buffer = java.util.Arrays.copyOf(buffer, size * 2);\n");
+        driver.append("        }\n");
+        driver.append("        return java.util.Arrays.copyOf(buffer, size);\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    private static boolean startsWith(byte[] data, byte[] prefix) {\n");
+        driver.append("        if (data.length < prefix.length) return false;\n");
+        driver.append("        for (int i = 0; i < prefix.length; i++) {\n");
+        driver.append("            if (data[i] != prefix[i]) return false;\n");
+        driver.append("        }\n");
+        driver.append("        return true;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    private static int indexOf(byte[] data, int from) {\n");
+        driver.append("        for (int i = from; i < data.length; i++) {\n");
+        driver.append("            if (data[i] == '\\n') return i;\n");
+        driver.append("        }\n");
+        driver.append("        return data.length;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+
+        // The only problem-specific part: parse each parameter, time the call, print the result
+        List<Problem.Parameter> params = parameters(signature);
+        boolean returnsVoid = normalizeSignatureType(signature.getReturnType()).equals("void");
+        driver.append("    private static long runCase(HarnessInput _in, HarnessOutput _out) throws Exception {\n");
+        StringBuilder arguments = new StringBuilder();
+        for (Problem.Parameter parameter : params) {
+            SignatureType type = signatureType(parameter.getType());
+            driver.append("        ").append(type.javaType).append(" ").append(parameter.getName())
+                    .append(" = _in.").append(type.reader).append("();\n");
+            if (arguments.length() > 0) arguments.append(", ");
+            arguments.append(parameter.getName());
+        }
+        driver.append("        Solution _solution = new Solution();\n");
+        driver.append("        long _start = System.nanoTime();\n");
+        String call = "_solution." + signature.getMethodName() + "(" + arguments + ");\n";
+        if (returnsVoid) {
+            driver.append("        ").append(call);
+        } else {
+            driver.append("        ").append(signatureType(signature.getReturnType()).javaType).append(" _result = ").append(call);
+        }
+        driver.append("        long _elapsed = System.nanoTime() - _start;\n");
+        // In-place problems (void return) are judged on their first argument
+        String printed = returnsVoid ? (params.isEmpty() ? null : params.get(0).getName()) : "_result";
+        if (printed != null) {
+            driver.append("        _out.write(").append(printed).append(");\n");
+        }
+        driver.append("        return _elapsed;\n");
+        driver.append("    }\n");
+        driver.append("}\n");
+        return driver.toString();
+    }
+
+    private String pythonListNodeDefinition() {
+        StringBuilder driver = new StringBuilder();
+        driver.append("class ListNode:\n");
+        driver.append("    def __init__(self, val=0, next=None):\n");
+        driver.append("        self.val = val\n");
+        driver.append("        self.next = next\n\n\n");
+        return driver.toString();
+    }
+
+    private String pythonDriverSuffix(Problem.FunctionSignature signature, boolean usesList) {
+        StringBuilder driver = new StringBuilder();
+        driver.append("def _harness_lines(data):\n");
+        driver.append("    # One value per line; a blank line is an empty value (an empty string), not a missing one\n");
+        driver.append("    return [line.strip() for line in data.split(b'\\n')]\n");
+        driver.append("\n");
+        driver.append("\n");
+        driver.append("def _harness_ints(line):\n");
+        driver.append("    # Fast path for the common large input: a flat integer array, parsed without the JSON decoder\n");
+        driver.append("    body = line.strip()[1:-1]\n");
+        driver.append("    return list(map(int, body.split(b','))) if body.strip() else []\n");
+        driver.append("\n");
+        driver.append("\n");
+        driver.append("def _harness_string(line):\n");
+        driver.append("    return json.loads(line) if line.startswith(b'\"') else line.decode('utf-8')\n");
+        driver.append("\n");
+        driver.append("\n");
+        driver.append("def _harness_format(value, kind=None):\n");
+        driver.append("    if value is None:\n");
+        driver.append("        return '[]' if kind == 'listnode' else 'null'\n");
+        driver.append("    if isinstance(value, bool):\n");
+        driver.append("        return 'true' if value else 'false'\n");
+        driver.append("    if kind == 'int' and isinstance(value, list) and (not value or not isinstance(value[0], list)):\n");
+        driver.append("        return '[' + ','.join(map(str, value)) + ']'\n");
+        driver.append("    if kind == 'double' or isinstance(value, float):\n");
+        driver.append("        return '%.5f' % value\n");
+        driver.append("    if isinstance(value, str):\n");
+        driver.append("        return json.dumps(value, ensure_ascii=False)\n");
+        driver.append("    if isinstance(value, (list, tuple)):\n");
+        driver.append("        return '[' + ','.join([_harness_format(item, kind) for item in value]) + ']'\n");
+        driver.append("    return _harness_format_other(value)\n");
+        if (usesList) {
+        driver.append("\n");
+        driver.append("\n");
+        driver.append("def _harness_to_list(values):\n");
+        driver.append("    dummy = ListNode(0)\n");
+        driver.append("    tail = dummy\n");
+        driver.append("    for value in values:\n");
+        driver.append("        tail.next = ListNode(value)\n");
+        driver.append("        tail = tail.next\n");
+        driver.append("    return dummy.next\n");
+        driver.append("\n");
+        driver.append("\n");
+        driver.append("def _harness_format_other(value):\n");
+        driver.append("    if isinstance(value, ListNode):\n");
+        driver.append("        items = []\n");
+        driver.append("        while value is not None:\n");
+        driver.append("            items.append(value.val)\n");
+        driver.append("            value = value.next\n");
+        driver.append("        return _harness_format(items)\n");
+        driver.append("    return str(value)\n");
+        } else {
+        driver.append("\n");
+        driver.append("\n");
+        driver.append("def _harness_format_other(value):\n");
+        driver.append("    return str(value)\n");
+        }
+        driver.append("\n\n");
+
+        List<Problem.Parameter> params = parameters(signature);
+        String returnType = normalizeSignatureType(signature.getReturnType());
+        driver.append("def _harness_run_case(text):\n");
+        driver.append("    _lines = _harness_lines(text)\n");
+        StringBuilder arguments = new StringBuilder();
+        for (int i = 0; i < params.size(); i++) {
+            Problem.Parameter parameter = params.get(i);
+            String line = "_lines[" + i + "]";
+            String type = normalizeSignatureType(parameter.getType());
+            signatureType(type);
+            String value;
+            if (type.equals("string")) {
+                value = "_harness_string(" + line + ")";
+            } else if (type.equals("listnode")) {
+                value = "_harness_to_list(json.loads(" + line + "))";
+            } else if (type.equals("int") || type.equals("long")) {
+                value = "int(" + line + ")";
+            } else if (type.equals("int[]") || type.equals("long[]")) {
+                value = "_harness_ints(" + line + ")";
+            } else if (type.equals("double")) {
+                value = "float(" + line + ")";
+            } else if (type.equals("double[]")) {
+                value = "[float(item) for item in json.loads(" + line + ")]";
+            } else {
+                value = "json.loads(" + line + ")";
+            }
+            driver.append("    ").append(parameter.getName()).append(" = ").append(value).append("\n");
+            if (arguments.length() > 0) arguments.append(", ");
+            arguments.append(parameter.getName());
+        }
+        driver.append("    _solution = Solution()\n");
+        driver.append("    _start = time.perf_counter_ns()\n");
+        driver.append("    _result = _solution.").append(signature.getMethodName()).append("(").append(arguments).append(")\n");
+        driver.append("    _elapsed = time.perf_counter_ns() - _start\n");
+        if (returnType.equals("void")) {
+            driver.append("    _result = ").append(params.isEmpty() ? "None" : params.get(0).getName()).append("\n");
+        } else {
+            signatureType(returnType);
+        }
+        String kind = "None";
+        if (returnType.startsWith("double")) kind = "'double'";
+        else if (returnType.startsWith("int[") || returnType.equals("long[]")) kind = "'int'";
+        else if (returnType.equals("listnode")) kind = "'listnode'";
+        driver.append("    return _harness_format(_result, ").append(kind).append("), _elapsed\n");
+        driver.append("\n");
+        driver.append("\n");
+        driver.append("def _harness_fork_case(case):\n");
+        driver.append("    # A forked child per case, so nothing the solution keeps in module or class state carries over.\n");
+        driver.append("    # The child hands back '<elapsed>\\n<text>'; None if it raised or died.\n");
+        driver.append("    read_end, write_end = os.pipe()\n");
+        driver.append("    sys.stdout.flush()\n");
+        driver.append("    pid = os.fork()\n");
+        driver.append("    if pid == 0:\n");
+        driver.append("        status = 1\n");
+        driver.append("        try:\n");
+        driver.append("            os.close(read_end)\n");
+        driver.append("            try:\n");
+        driver.append("                text, elapsed = _harness_run_case(case)\n");
+        driver.append("                result = ('%d\\n%s' % (elapsed, text)).encode('utf-8')\n");
+        driver.append("                status = 0\n");
+        driver.append("            except BaseException:\n");
+        driver.append("                result = b''\n");
+        driver.append("                traceback.print_exc()\n");
+        driver.append("            sys.stdout.flush()\n");
+        driver.append("            sys.stderr.flush()\n");
+        driver.append("            with os.fdopen(write_end, 'wb') as pipe:\n");
+        driver.append("                pipe.write(result)\n");
+        driver.append("        finally:\n");
+        driver.append("            os._exit(status)\n");
+        driver.append("    os.close(write_end)\n");
+        driver.append("    with os.fdopen(read_end, 'rb') as pipe:\n");
+        driver.append("        result = pipe.read()\n");
+        driver.append("    _, status = os.waitpid(pid, 0)\n");
+        driver.append("    if status != 0:\n");
+        driver.append("        return None\n");
+        driver.append("    elapsed, _, text = result.partition(b'\\n')\n");
+        driver.append("    return text.decode('utf-8'), int(elapsed)\n");
+        driver.append("\n");
+        driver.append("\n");
+        driver.append("def _harness_main():\n");
+        driver.append("    data = sys.stdin.buffer.read()\n");
+        driver.append("    header = b'" + HARNESS_HEADER + "'\n");
+        driver.append("    out = sys.stdout.buffer\n");
+        driver.append("    if not data.startswith(header):\n");
+        driver.append("        text, _ = _harness_run_case(data)\n");
+        driver.append("        sys.stdout.flush()\n");
+        driver.append("        out.write(text.encode('utf-8') + b'\\n')\n");
+        driver.append("        out.flush()\n");
+        driver.append("        return\n");
+        driver.append("    pos = data.index(b'\\n')\n");
+        driver.append("    counts = data[len(header):pos].split()\n");
+        driver.append("    count = int(counts[0])\n");
+        driver.append("    nonce = counts[1].decode('ascii')\n");
+        driver.append("    pos += 1\n");
+        driver.append("    for index in range(count):\n");
+        driver.append("        line_end = data.index(b'\\n', pos)\n");
+        driver.append("        length = int(data[pos:line_end])\n");
+        driver.append("        case = data[line_end + 1:line_end + 1 + length]\n");
+        driver.append("        pos = line_end + 1 + length\n");
+        driver.append("        result = _harness_fork_case(case)\n");
+        driver.append("        failed = result is None\n");
+        driver.append("        text, elapsed = result if result is not None else ('', 0)\n");
+        driver.append("        out.write(('" + HARNESS_CASE_BEGIN + "%s %d@@\\n%s\\n" + HARNESS_CASE_END + "%s %d %d -1%s@@\\n'\n");
+        driver.append("                   % (nonce, index, text, nonce, index, elapsed, ' ERROR' if failed else '')).encode('utf-8'))\n");
+        driver.append("        out.flush()\n");
+        driver.append("\n");
+        driver.append("\n");
+        driver.append("_harness_main()\n");
+        return driver.toString();
+    }
+
+    private String cppListNodeDefinition() {
+        StringBuilder driver = new StringBuilder();
+        driver.append("struct ListNode {\n");
+        driver.append("    int val;\n");
+        driver.append("    ListNode *next;\n");
+        driver.append("    ListNode() : val(0), next(nullptr) {}\n");
+        driver.append("    ListNode(int x) : val(x), next(nullptr) {}\n");
+        driver.append("    ListNode(int x, ListNode *next) : val(x), next(next) {}\n");
+        driver.append("};\n\n");
+        return driver.toString();
+    }
+
+    private String cppDriverSuffix(Problem.FunctionSignature signature, boolean usesList) {
+        StringBuilder driver = new StringBuilder();
+        driver.append("#include <unistd.h>\n");
+        driver.append("#include <sys/types.h>\n");
+        driver.append("#include <sys/wait.h>\n");
+        driver.append("#include <sys/resource.h>\n\n");
+        driver.append("struct HarnessInput {\n");
+        driver.append("    const char *pos;\n");
+        driver.append("    const char *end;\n");
+        driver.append("\n");
+        driver.append("    HarnessInput(const char *data, size_t length) : pos(data), end(data + length) {}\n");
+        driver.append("\n");
+        driver.append("    static bool isSeparator(char c) {\n");
+        driver.append("        return c == ' ' || c == ',' || c == '\\n' || c == '\\r' || c == '\\t';\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    void skipSeparators() {\n");
+        driver.append("        while (pos < end && isSeparator(*pos)) pos++;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    bool atValueEnd() const {\n");
+        driver.append("        return pos >= end || isSeparator(*pos) || *pos == ']';\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    std::string token() {\n");
+        driver.append("        skipSeparators();\n");
+        driver.append("        const char *start = pos;\n");
+        driver.append("        while (!atValueEnd()) pos++;\n");
+        driver.append("        if (start == pos) throw std::runtime_error(\"missing value\");\n");
+        driver.append("        return std::string(start, pos);\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    void open() {\n");
+        driver.append("        skipSeparators();\n");
+        driver.append("        if (pos >= end || *pos != '[') throw std::runtime_error(\"expected '['\");\n");
+        driver.append("        pos++;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    bool closed() {\n");
+        driver.append("        skipSeparators();\n");
+        driver.append("        if (pos >= end) throw std::runtime_error(\"unterminated array\");\n");
+        driver.append("        if (*pos != ']') return false;\n");
+        driver.append("        pos++;\n");
+        driver.append("        return true;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    long long readLong() {\n");
+        driver.append("        skipSeparators();\n");
+        driver.append("        bool negative = pos < end && *pos == '-';\n");
+        driver.append("        if (negative || (pos < end && *pos == '+')) pos++;\n");
+        driver.append("        const char *digits = pos;\n");
+        driver.append("        unsigned long long value = 0;\n");
+        driver.append("        const unsigned long long limit = negative ? 9223372036854775808ULL : 9223372036854775807ULL;\n");
+        driver.append("        while (pos < end && *pos >= '0' && *pos <= '9') {\n");
+        driver.append("            unsigned digit = (unsigned) (*pos++ - '0');\n");
+        driver.append("            if (value > (limit - digit) / 10) throw std::runtime_error(\"integer out of range\");\n");
+        driver.append("            value = value * 10 + digit;\n");
+        driver.append("        }\n");
+        driver.append("        if (pos == digits || !atValueEnd()) throw std::runtime_error(\"invalid integer\");\n");
+        driver.append("        return negative ? (long long) (0 - value) : (long long) value;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    int readInt() {\n");
+        driver.append("        long long value = readLong();\n");
+        driver.append("        if (value < INT_MIN || value > INT_MAX) throw std::runtime_error(\"integer out of range\");\n");
+        driver.append("        return (int) value;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    double readDouble() { return std::strtod(token().c_str(), nullptr); }\n");
+        driver.append("\n");
+        driver.append("    bool readBoolean() {\n");
+        driver.append("        std::string value = token();\n");
+        driver.append("        return value == \"true\" || value == \"1\";\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    std::string readString() {\n");
+        driver.append("        skipSeparators();\n");
+        driver.append("        if (pos >= end || *pos != '\"') return token();\n");
+        driver.append("        std::string value;\n");
+        driver.append("        pos++;\n");
+        driver.append("        while (pos < end && *pos != '\"') {\n");
+        driver.append("            char c = *pos++;\n");
+        driver.append("            if (c != '\\\\' || pos >= end) {\n");
+        driver.append("                value += c;\n");
+        driver.append("                continue;\n");
+        driver.append("            }\n");
+        driver.append("            char escaped = *pos++;\n");
+        driver.append("            if (escaped == 'n') value += '\\n';\n");
+        driver.append("            else if (escaped == 't') value += '\\t';\n");
+        driver.append("            else if (escaped == 'r') value += '\\r';\n");
+        driver.append("            else value += escaped;\n");
+        driver.append("        }\n");
+        driver.append("        pos++;\n");
+        driver.append("        return value;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    template <typename T, typename Reader>\n");
+        driver.append("    std::vector<T> readArray(Reader readOne) {\n");
+        driver.append("        open();\n");
+        driver.append("        std::vector<T> values;\n");
+        driver.append("        while (!closed()) values.push_back(readOne());\n");
+        driver.append("        return values;\n");
+        driver.append("    }\n");
+        driver.append("\n");
+        driver.append("    std::vector<int> readIntArray() { return readArray<int>([this] { return readInt(); }); }\n");
+        driver.append("\n");
+        driver.append("    std::vector<long long> readLongArray() { return readArray<long long>([this] { return readLong(); }); }\n");
+        driver.append("\n");
+        driver.append("    std::vector<double> readDoubleArray() { return readArray<double>([this] { return readDouble(); }); }\n");
+        driver.append("\n");
+        driver.append("    std::vector<std::string> readStringArray() { return readArray<std::string>([this] { return readString(); }); }\n");
+        driver.append("\n");
+        driver.append("    std::vector<std::vector<int>> readIntMatrix() { return readArray<std::vector<int>>([this] { return readIntArray(); }); }\n");
+        driver.append("\n");
+        driver.append("    std::vector<std::vector<char>> readCharMatrix() {\n");
+        driver.append("        return readArray<std::vector<char>>([this] {\n");
+        driver.append("            std::vector<char> row;\n");
+        driver.append("            for (const std::string &cell : readStringArray()) row.push_back(cell.empty() ? ' ' : cell[0]);\n");
+        driver.append("            return row;\n");
+        driver.append("        });\n");
+        driver.append("    }\n");
+        if (usesList) {
+        driver.append("\n");
+        driver.append("    ListNode *readList() {\n");
+        driver.append("        ListNode dummy(0);\n");
+        driver.append("        ListNode *tail = &dummy;\n");
+        driver.append("        for (int value : readIntArray()) {\n");
+        driver.append("            tail->next = new ListNode(value);\n");
+        driver.append("            tail = tail->next;\n");
+        driver.append("        }\n");
+        driver.append("        return dummy.next;\n");
+        driver.append("    }\n");
+        }
+        driver.append("};\n\n");
+        driver.append("static void harnessWrite(std::string &out, long long value) {\n");
+        driver.append("    char digits[24];\n");
+        driver.append("    char *cursor = digits + sizeof(digits);\n");
+        driver.append("    unsigned long long magnitude = value < 0 ? 0 - (unsigned long long) value : (unsigned long long) value;\n");
+        driver.append("    do {\n");
+        driver.append("        *--cursor = (char) ('0' + magnitude % 10);\n");
+        driver.append("        magnitude /= 10;\n");
+        driver.append("    } while (magnitude > 0);\n");
+        driver.append("    if (value < 0) *--cursor = '-';\n");
+        driver.append("    out.append(cursor, digits + sizeof(digits));\n");
+        driver.append("}\n");
+        driver.append("\n");
+        driver.append("static void harnessWrite(std::string &out, int value) { harnessWrite(out, (long long) value); }\n");
+        driver.append("\n");
+        driver.append("static void harnessWrite(std::string &out, double value) {\n");
+        driver.append("    char buffer[64];\n");
+        driver.append("    int length = snprintf(buffer, sizeof(buffer), \"%.5f\", value);\n");
+        driver.append("    out.append(buffer, length);\n");
+        driver.append("}\n");
+        driver.append("\n");
+        driver.append("static void harnessWrite(std::string &out, bool value) { out += value ? \"true\" : \"false\"; }\n");
+        driver.append("\n");
+        driver.append("static void harnessWrite(std::string &out, const std::string &value) {\n");
+        driver.append("    out += '\"';\n");
+        driver.append("    for (char c : value) {\n");
+        driver.append("        if (c == '\"') out += \"\\\\\\\"\";\n");
+        driver.append("        else if (c == '\\\\') out += \"\\\\\\\\\";\n");
+        driver.append("        else if (c == '\\n') out += \"\\\\n\";\n");
+        driver.append("        else if (c == '\\t') out += \"\\\\t\";\n");
+        driver.append("        else if (c == '\\r') out += \"\\\\r\";\n");
+        driver.append("        else out += c;\n");
+        driver.append("    }\n");
+        driver.append("    out += '\"';\n");
+        driver.append("}\n");
+        driver.append("\n");
+        driver.append("static void harnessWrite(std::string &out, char value) { harnessWrite(out, std::string(1, value)); }\n");
+        driver.append("\n");
+        driver.append("template <typename T>\n");
+        driver.append("static void harnessWrite(std::string &out, const std::vector<T> &values) {\n");
+        driver.append("    out += '[';\n");
+        driver.append("    for (size_t i = 0; i < values.size(); i++) {\n");
+        driver.append("        if (i > 0) out += ',';\n");
+        driver.append("        harnessWrite(out, values[i]);\n");
+        driver.append("    }\n");
+        driver.append("    out += ']';\n");
+        driver.append("}\n");
+        if (usesList) {
+        driver.append("\n");
+        driver.append("static void harnessWrite(std::string &out, ListNode *head) {\n");
+        driver.append("    out += '[';\n");
+        driver.append("    for (ListNode *node = head; node != nullptr; node = node->next) {\n");
+        driver.append("        if (node != head) out += ',';\n");
+        driver.append("        harnessWrite(out, node->val);\n");
+        driver.append("    }\n");
+        driver.append("    out += ']';\n");
+        driver.append("}\n");
+        }
+        driver.append("\n");
+
+        List<Problem.Parameter> params = parameters(signature);
+        boolean returnsVoid = normalizeSignatureType(signature.getReturnType()).equals("void");
+        driver.append("static long long harnessRunCase(const char *_data, size_t _length, std::string &_out) {\n");
+        driver.append("    HarnessInput _in(_data, _length);\n");
+        StringBuilder arguments = new StringBuilder();
+        for (Problem.Parameter parameter : params) {
+            SignatureType type = signatureType(parameter.getType());
+            driver.append("    ").append(type.cppType).append(" ").append(parameter.getName())
+                    .append(" = _in.").append(type.reader).append("();\n");
+            if (arguments.length() > 0) arguments.append(", ");
+            arguments.append(parameter.getName());
+        }
+        driver.append("    Solution _solution;\n");
+        driver.append("    auto _start = std::chrono::steady_clock::now();\n");
+        String call = "_solution." + signature.getMethodName() + "(" + arguments + ");\n";
+        if (returnsVoid) {
+            driver.append("    ").append(call);
+        } else {
+            driver.append("    ").append(signatureType(signature.getReturnType()).cppType).append(" _result = ").append(call);
+        }
+        driver.append("    auto _elapsed = std::chrono::steady_clock::now() - _start;\n");
+        String printed = returnsVoid ? (params.isEmpty() ? null : params.get(0).getName()) : "_result";
+        if (printed != null) {
+            driver.append("    harnessWrite(_out, ").append(printed).append(");\n");
+        }
+        driver.append("    return std::chrono::duration_cast<std::chrono::nanoseconds>(_elapsed).count();\n");
+        driver.append("}\n\n");
+        driver.append("static std::string harnessReadAll() {\n");
+        driver.append("    std::string data;\n");
+        driver.append("    char chunk[1 << 16];\n");
+        driver.append("    size_t read;\n");
+        driver.append("    while ((read = fread(chunk, 1, sizeof(chunk), stdin)) > 0) data.append(chunk, read);\n");
+        driver.append("    return data;\n");
+        driver.append("}\n");
+        driver.append("\n");
+        driver.append("// A forked child per case, so static and global state the solution keeps doesn't carry over. The child\n");
+        driver.append("// clears its copy of the header and nonce, runs the case and hands back '<elapsed>\\n<result>' over a\n");
+        driver.append("// pipe; the parent frames it. False if the case threw or the child died.\n");
+        driver.append("static bool harnessForkCase(std::string &data, size_t start, size_t length, std::string &nonce,\n");
+        driver.append("                            std::string &text, long long &elapsed, long &memoryKb) {\n");
+        driver.append("    int fds[2];\n");
+        driver.append("    if (::pipe(fds) != 0) return false;\n");
+        driver.append("    std::cout.flush();\n");
+        driver.append("    fflush(stdout);\n");
+        driver.append("    pid_t child = ::fork();\n");
+        driver.append("    if (child == 0) {\n");
+        driver.append("        ::close(fds[0]);\n");
+        driver.append("        std::fill(data.begin(), data.begin() + data.find('\\n'), '\\0');\n");
+        driver.append("        std::fill(nonce.begin(), nonce.end(), '\\0');\n");
+        driver.append("        std::string result;\n");
+        driver.append("        int status = 1;\n");
+        driver.append("        try {\n");
+        driver.append("            long long caseElapsed = harnessRunCase(data.data() + start, length, result);\n");
+        driver.append("            result = std::to_string(caseElapsed) + \"\\n\" + result;\n");
+        driver.append("            status = 0;\n");
+        driver.append("        } catch (const std::exception &e) {\n");
+        driver.append("            std::cerr << e.what() << std::endl;\n");
+        driver.append("        } catch (...) {\n");
+        driver.append("        }\n");
+        driver.append("        std::cout.flush();\n");
+        driver.append("        fflush(stdout);\n");
+        driver.append("        for (size_t written = 0; status == 0 && written < result.size(); ) {\n");
+        driver.append("            ssize_t n = ::write(fds[1], result.data() + written, result.size() - written);\n");
+        driver.append("            if (n <= 0) status = 1;\n");
+        driver.append("            else written += (size_t) n;\n");
+        driver.append("        }\n");
+        driver.append("        _exit(status);\n");
+        driver.append("    }\n");
+        driver.append("    ::close(fds[1]);\n");
+        driver.append("    std::string result;\n");
+        driver.append("    char chunk[1 << 16];\n");
+        driver.append("    ssize_t n;\n");
+        driver.append("    while ((n = ::read(fds[0], chunk, sizeof(chunk))) > 0) result.append(chunk, (size_t) n);\n");
+        driver.append("    ::close(fds[0]);\n");
+        driver.append("    int status = 0;\n");
+        driver.append("    struct rusage usage;\n");
+        driver.append("    memset(&usage, 0, sizeof(usage));\n");
+        driver.append("    if (child < 0 || wait4(child, &status, 0, &usage) < 0 || !WIFEXITED(status) || WEXITSTATUS(status) != 0) {\n");
+        driver.append("        return false;\n");
+        driver.append("    }\n");
+        driver.append("    size_t split = result.find('\\n');\n");
+        driver.append("    if (split == std::string::npos) return false;\n");
+        driver.append("    elapsed = std::atoll(result.c_str());\n");
+        driver.append("    text = result.substr(split + 1);\n");
+        driver.append("    memoryKb = usage.ru_maxrss;\n");
+        driver.append("    return true;\n");
+        driver.append("}\n");
+        driver.append("\n");
+        driver.append("static void harnessFlush(const std::string &out) {\n");
+        driver.append("    // Anything the solution printed itself must not interleave with the framed result\n");
+        driver.append("    std::cout.flush();\n");
+        driver.append("    fwrite(out.data(), 1, out.size(), stdout);\n");
+        driver.append("    fflush(stdout);\n");
+        driver.append("}\n");
+        driver.append("\n");
+        driver.append("int main() {\n");
+        driver.append("    std::ios::sync_with_stdio(false);\n");
+        driver.append("    std::string data = harnessReadAll();\n");
+        driver.append("    const std::string header = \"" + HARNESS_HEADER + "\";\n");
+        driver.append("    if (data.compare(0, header.size(), header) != 0) {\n");
+        driver.append("        std::string out;\n");
+        driver.append("        harnessRunCase(data.data(), data.size(), out);\n");
+        driver.append("        harnessFlush(out);\n");
+        driver.append("        return 0;\n");
+        driver.append("    }\n");
+        driver.append("    size_t pos = data.find('\\n');\n");
+        driver.append("    int count = std::atoi(data.c_str() + header.size());\n");
+        driver.append("    size_t nonceStart = data.find(' ', header.size()) + 1;\n");
+        driver.append("    std::string nonce = data.substr(nonceStart, pos - nonceStart);\n");
+        driver.append("    pos++;\n");
+        driver.append("    for (int i = 0; i < count; i++) {\n");
+        driver.append("        size_t lineEnd = data.find('\\n', pos);\n");
+        driver.append("        size_t length = std::strtoul(data.c_str() + pos, nullptr, 10);\n");
+        driver.append("        size_t start = lineEnd + 1;\n");
+        driver.append("        pos = start + length;\n");
+        driver.append("\n");
+        driver.append("        std::string text;\n");
+        driver.append("        long long elapsed = 0;\n");
+        driver.append("        long memoryKb = -1;\n");
+        driver.append("        bool failed = !harnessForkCase(data, start, length, nonce, text, elapsed, memoryKb);\n");
+        driver.append("        std::string out = \"" + HARNESS_CASE_BEGIN + "\" + nonce + \" \" + std::to_string(i) + \"@@\\n\" + text\n");
+        driver.append("                + \"\\n" + HARNESS_CASE_END + "\" + nonce + \" \" + std::to_string(i) + \" \" + std::to_string(elapsed)\n");
+        driver.append("                + \" \" + std::to_string(memoryKb) + (failed ? \" ERROR\" : \"\") + \"@@\\n\";\n");
+        driver.append("        harnessFlush(out);\n");
+        driver.append("    }\n");
+        driver.append("    return 0;\n");
+        driver.append("}\n");
+        return driver.toString();
+    }
+}
@@ -0,0 +1,366 @@
+package com.codepvg.code.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Content-addressed cache of compiled programs for the local execution engine. The key is a hash of
+// the (wrapped) source, the compiler's version and the exact compile command, so "Run" followed by
+// "Submit" of the same code, or a resubmission, skips compilation entirely. Artifacts live in one
+// directory each on disk; recently used ones are also kept in memory. Both tiers are LRU-bounded; a
+// directory a run still uses is only evicted once the run releases it.
+@Service
+public class CompiledArtifactCache {
+
+    private static final int LOCK_STRIPES = 64;
+    private static final long COMPILE_TIMEOUT_SECONDS = 30;
+    private static final int MAX_COMPILE_OUTPUT = 64 * 1024;
+
+    @Autowired
+    private LocalSandbox localSandbox;
+
+    @Value("${judge.local.work-dir:${java.io.tmpdir}/codepvg-judge}")
+    private String workDir;
+
+    @Value("${judge.local.artifact-cache.max-disk-mb:512}")
+    private long maxDiskMb;
+
+    @Value("${judge.local.artifact-cache.max-memory-mb:64}")
+    private long maxMemoryMb;
+
+    private Path cacheDir;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Map<LocalLanguage, String> compilerVersions = new ConcurrentHashMap<>();
+
+    // Both maps are access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Long> diskEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Artifact> memoryEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private long memoryBytes;
+    // Runs using each artifact's directory; evictDisk skips these
+    private final Map<String, Integer> inUse = new HashMap<>();
+
+    public CompiledArtifactCache() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public static class Artifact {
+        private final String key;
+        private final Path directory;
+        private final Map<String, byte[]> files;
+        private final String compileError;
+        private final long size;
+
+        Artifact(String key, Path directory, Map<String, byte[]> files, String compileError) {
+            this.key = key;
+            this.directory = directory;
+            this.files = files;
+            this.compileError = compileError;
+            long total = compileError != null ? compileError.length() * 2L : 0;
+            for (byte[] content : files.values()) {
+                total += content.length;
+            }
+            this.size = total;
+        }
+
+        public String getKey() { return key; }
+        // Directory holding the compiled files (null if compilation failed)
+        public Path getDirectory() { return directory; }
+        // Compiled files by name relative to the directory, e.g. "Main.class" or "main"
+        public Map<String, byte[]> getFiles() { return files; }
+        public String getCompileError() { return compileError; }
+        public boolean isCompiled() { return compileError == null; }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        cacheDir = Paths.get(workDir, "artifacts");
+        Files.createDirectories(cacheDir);
+
+        // Re-index what a previous run left behind, oldest first, and drop half-written entries
+        List<Path> existing = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(cacheDir)) {
+            entries.forEach(existing::add);
+        }
+        existing.sort(Comparator.comparingLong(path -> path.toFile().lastModified()));
+        synchronized (this) {
+            for (Path entry : existing) {
+                String name = entry.getFileName().toString();
+                if (name.contains(".tmp-")) {
+                    deleteRecursively(entry);
+                    continue;
+                }
+                long size = directorySize(entry);
+                diskEntries.put(name, size);
+                diskBytes += size;
+            }
+            evictDisk();
+        }
+    }
+
+    // A compiled artifact's directory stays on disk until the caller hands it to release()
+    public Artifact getOrCompile(LocalLanguage language, String source) {
+        String key = keyFor(language, source);
+
+        synchronized (locks[Math.floorMod(key.hashCode(), LOCK_STRIPES)]) {
+            Artifact cached = lookup(key);
+            if (cached != null) {
+                return cached;
+            }
+            Artifact compiled = compile(language, source, key);
+            remember(compiled);
+            return compiled;
+        }
+    }
+
+    public synchronized void release(Artifact artifact) {
+        if (!artifact.isCompiled()) return;
+        Integer runs = inUse.get(artifact.getKey());
+        if (runs == null) return;
+        if (runs > 1) {
+            inUse.put(artifact.getKey(), runs - 1);
+            return;
+        }
+        inUse.remove(artifact.getKey());
+        // Catch up on an eviction skipped while it was in use
+        evictDisk();
+    }
+
+    private synchronized Artifact lookup(String key) {
+        Artifact inMemory = memoryEntries.get(key);
+        Path directory = cacheDir.resolve(key);
+        if (inMemory != null) {
+            acquire(inMemory);
+            if (inMemory.isCompiled() && !Files.isDirectory(directory)) {
+                // Evicted from disk but still hot in memory: put the files back
+                try {
+                    writeFiles(directory, inMemory.getFiles());
+                    trackDisk(key, inMemory.size);
+                } catch (IOException e) {
+                    release(inMemory);
+                    return null;
+                }
+            }
+            diskEntries.get(key); // Keep the disk copy's LRU position in step
+            return inMemory;
+        }
+
+        if (diskEntries.get(key) == null || !Files.isDirectory(directory)) {
+            return null;
+        }
+        try {
+            Artifact fromDisk = new Artifact(key, directory, readFiles(directory), null);
+            Files.setLastModifiedTime(directory, FileTime.fromMillis(System.currentTimeMillis()));
+            acquire(fromDisk);
+            trackMemory(fromDisk);
+            return fromDisk;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void acquire(Artifact artifact) {
+        if (artifact.isCompiled()) {
+            inUse.merge(artifact.getKey(), 1, Integer::sum);
+        }
+    }
+
+    private Artifact compile(LocalLanguage language, String source, String key) {
+        Path staging = cacheDir.resolve(key + ".tmp-" + Thread.currentThread().getId());
+        try {
+            deleteRecursively(staging);
+            Files.createDirectories(staging);
+            Files.write(staging.resolve(language.getSourceFile()), source.getBytes(StandardCharsets.UTF_8));
+
+            File log = staging.resolve("compile.log").toFile();
+            // Sandboxed like a run: diagnostics would otherwise quote any host file the source #includes
+            List<String> command = localSandbox.wrap(language.compileCommand(), staging, List.of(),
+                    (int) COMPILE_TIMEOUT_SECONDS, language != LocalLanguage.JAVA);
+            Process process = new ProcessBuilder(command)
+                    .directory(staging.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(log)
+                    .start();
+            boolean finished = process.waitFor(COMPILE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!finished) {
+                // Not cached: a slow compile is more likely load than the source's fault
+                process.destroyForcibly();
+                throw new RuntimeException("Compilation timed out after " + COMPILE_TIMEOUT_SECONDS + "s");
+            }
+            if (process.exitValue() != 0) {
+                return new Artifact(key, null, new HashMap<>(), readCompileLog(log.toPath(), staging));
+            }
+
+            Files.delete(log.toPath());
+            Files.delete(staging.resolve(language.getSourceFile()));
+            Path directory = cacheDir.resolve(key);
+            try {
+                Files.move(staging, directory, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | AtomicMoveNotSupportedException e) {
+                // Another instance sharing the directory compiled the same key first
+                if (!Files.isDirectory(directory)) throw e;
+            }
+            return new Artifact(key, directory, readFiles(directory), null);
+        } catch (IOException e) {
+            throw new RuntimeException("Local compilation failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Local compilation interrupted", e);
+        } finally {
+            deleteRecursively(staging);
+        }
+    }
+
+    private synchronized void remember(Artifact artifact) {
+        acquire(artifact);
+        trackMemory(artifact);
+        if (artifact.isCompiled()) {
+            trackDisk(artifact.getKey(), artifact.size);
+        }
+    }
+
+    private void trackMemory(Artifact artifact) {
+        Artifact previous = memoryEntries.put(artifact.getKey(), artifact);
+        if (previous != null) memoryBytes -= previous.size;
+        memoryBytes += artifact.size;
+
+        long limit = maxMemoryMb * 1024 * 1024;
+        Iterator<Artifact> eldest = memoryEntries.values().iterator();
+        while (memoryBytes > limit && eldest.hasNext()) {
+            Artifact evicted = eldest.next();
+            if (evicted == artifact) break;
+            memoryBytes -= evicted.size;
+            eldest.remove();
+        }
+    }
+
+    private void trackDisk(String key, long size) {
+        Long previous = diskEntries.put(key, size);
+        if (previous != null) diskBytes -= previous;
+        diskBytes += size;
+        evictDisk();
+    }
+
+    private void evictDisk() {
+        long limit = maxDiskMb * 1024 * 1024;
+        Iterator<Map.Entry<String, Long>> eldest = diskEntries.entrySet().iterator();
+        while (diskBytes > limit && diskEntries.size() > 1 && eldest.hasNext()) {
+            Map.Entry<String, Long> evicted = eldest.next();
+            // A run is reading it (or a worker is loading classes from it); release() evicts it later
+            if (inUse.containsKey(evicted.getKey())) continue;
+            diskBytes -= evicted.getValue();
+            eldest.remove();
+            deleteRecursively(cacheDir.resolve(evicted.getKey()));
+        }
+    }
+
+    private String keyFor(LocalLanguage language, String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(language.name().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(compilerVersion(language).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.join(" ", language.compileCommand()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // An upgraded compiler must not reuse artifacts built by the old one
+    private String compilerVersion(LocalLanguage language) {
+        return compilerVersions.computeIfAbsent(language, lang -> {
+            try {
+                Process process = new ProcessBuilder(lang.versionCommand()).redirectErrorStream(true).start();
+                String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                process.waitFor(10, TimeUnit.SECONDS);
+                return output.split("\n", 2)[0].trim();
+            } catch (IOException e) {
+                throw new RuntimeException(lang.getCompiler() + " is not available: " + e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while checking " + lang.getCompiler(), e);
+            }
+        });
+    }
+
+    private String readCompileLog(Path log, Path staging) throws IOException {
+        byte[] bytes = Files.readAllBytes(log);
+        String output = new String(bytes, 0, Math.min(bytes.length, MAX_COMPILE_OUTPUT), StandardCharsets.UTF_8);
+        // Report paths relative to the submission, not the cache directory
+        return output.replace(staging.toString() + File.separator, "");
+    }
+
+    private Map<String, byte[]> readFiles(Path directory) throws IOException {
+        Map<String, byte[]> files = new HashMap<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isRegularFile(path)) {
+                    files.put(directory.relativize(path).toString(), Files.readAllBytes(path));
+                }
+            }
+        }
+        return files;
+    }
+
+    private void writeFiles(Path directory, Map<String, byte[]> files) throws IOException {
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            Path target = directory.resolve(file.getKey());
+            Files.createDirectories(target.getParent());
+            Files.write(target, file.getValue());
+            if (!file.getKey().contains(".")) {
+                target.toFile().setExecutable(true);
+            }
+        }
+    }
+
+    private long directorySize(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    static void deleteRecursively(Path path) {
+        if (path == null || !Files.exists(path)) return;
+        try (Stream<Path> paths = Files.walk(path)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + path + ": " + e.getMessage());
+        }
+    }
+}
@@ -16,6 +16,9 @@ public class DataInitializationService implements CommandLineRunner {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserService userService;
+
     @Override
     public void run(String... args) throws Exception {
         // Create default admin user if not exists
@@ -33,5 +36,12 @@ public class DataInitializationService implements CommandLineRunner {
             System.out.println("Username: admin");
             System.out.println("Password: admin123");
         }
+
+        // Users from before streaks were stored on the user document
+        try {
+            userService.backfillStreaks();
+        } catch (Exception e) {
+            System.err.println("Streak backfill failed: " + e.getMessage());
+        }
     }
 }
\ No newline at end of file
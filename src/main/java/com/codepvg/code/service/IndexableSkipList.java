@@ -0,0 +1,165 @@
+package com.codepvg.code.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Skip list whose links also record how many elements they skip, so the position of an element and the
+// element at a position are found in O(log n) like lookups (same layout as Redis sorted sets). Elements
+// must be distinct under the comparator. Not thread-safe.
+final class IndexableSkipList<T> {
+
+    private static final int MAX_LEVEL = 32;
+
+    private final Comparator<? super T> comparator;
+    private final Node<T> head = new Node<>(null, MAX_LEVEL);
+    private int level = 1;
+    private int size;
+
+    private static final class Node<T> {
+        private final T value;
+        private final Node<T>[] next;
+        // width[i]: elements passed when following next[i] (to the end of the list if next[i] is null)
+        private final int[] width;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Node(T value, int levels) {
+            this.value = value;
+            this.next = (Node<T>[]) new Node[levels];
+            this.width = new int[levels];
+        }
+    }
+
+    IndexableSkipList(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(T value) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node<T>[] update = (Node<T>[]) new Node[MAX_LEVEL];
+        int[] passed = new int[MAX_LEVEL];
+        Node<T> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            passed[i] = i == level - 1 ? 0 : passed[i + 1];
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) < 0) {
+                passed[i] += node.width[i];
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+
+        int levels = randomLevel();
+        if (levels > level) {
+            for (int i = level; i < levels; i++) {
+                passed[i] = 0;
+                update[i] = head;
+                head.width[i] = size;
+            }
+            level = levels;
+        }
+
+        Node<T> added = new Node<>(value, levels);
+        for (int i = 0; i < levels; i++) {
+            added.next[i] = update[i].next[i];
+            update[i].next[i] = added;
+            added.width[i] = update[i].width[i] - (passed[0] - passed[i]);
+            update[i].width[i] = passed[0] - passed[i] + 1;
+        }
+        for (int i = levels; i < level; i++) {
+            update[i].width[i]++;
+        }
+        size++;
+    }
+
+    boolean remove(T value) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node<T>[] update = (Node<T>[]) new Node[MAX_LEVEL];
+        Node<T> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) < 0) {
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+
+        Node<T> removed = node.next[0];
+        if (removed == null || comparator.compare(removed.value, value) != 0) {
+            return false;
+        }
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == removed) {
+                update[i].width[i] += removed.width[i] - 1;
+                update[i].next[i] = removed.next[i];
+            } else {
+                update[i].width[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    // 1-based position of the value, or -1 if absent
+    int rank(T value) {
+        int rank = 0;
+        Node<T> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) <= 0) {
+                rank += node.width[i];
+                node = node.next[i];
+            }
+            if (node != head && comparator.compare(node.value, value) == 0) {
+                return rank;
+            }
+        }
+        return -1;
+    }
+
+    // Number of values ordered at or before the value, which need not be in the list
+    int countUpTo(T value) {
+        int count = 0;
+        Node<T> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) <= 0) {
+                count += node.width[i];
+                node = node.next[i];
+            }
+        }
+        return count;
+    }
+
+    // Up to count values starting at 1-based position from
+    List<T> range(int from, int count) {
+        List<T> values = new ArrayList<>();
+        if (from < 1 || from > size || count <= 0) {
+            return values;
+        }
+        int passed = 0;
+        Node<T> node = head;
+        for (int i = level - 1; i >= 0 && passed < from; i--) {
+            while (node.next[i] != null && passed + node.width[i] <= from) {
+                passed += node.width[i];
+                node = node.next[i];
+            }
+        }
+        for (; node != null && values.size() < count; node = node.next[0]) {
+            values.add(node.value);
+        }
+        return values;
+    }
+
+    private static int randomLevel() {
+        int levels = 1;
+        while (levels < MAX_LEVEL && ThreadLocalRandom.current().nextInt(4) == 0) {
+            levels++;
+        }
+        return levels;
+    }
+}
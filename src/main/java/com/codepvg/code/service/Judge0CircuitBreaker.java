@@ -0,0 +1,76 @@
+package com.codepvg.code.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Health of the Judge0 API as seen by Judge0Service. After judge0.circuit.failure-threshold failures in
+// a row the circuit opens and Judge0 calls fail immediately for judge0.circuit.open-seconds; then a
+// single probe call is let through, which closes the circuit again if it succeeds.
+@Service
+public class Judge0CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    @Value("${judge0.circuit.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${judge0.circuit.open-seconds:30}")
+    private long openSeconds;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+    private long timesOpened;
+
+    // Whether a Judge0 call may go ahead; in HALF_OPEN only one probe at a time
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openSeconds * 1000) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.CLOSED) return true;
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return true;
+        }
+        return false;
+    }
+
+    // True while calls are being refused; unlike allowRequest() this never claims the probe
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && System.currentTimeMillis() - openedAt < openSeconds * 1000;
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        if (state != State.CLOSED) {
+            System.out.println("Judge0 circuit closed");
+            state = State.CLOSED;
+        }
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        probeInFlight = false;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            System.err.println("Judge0 circuit opened after " + consecutiveFailures + " consecutive failures");
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            timesOpened++;
+        }
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        // An OPEN circuit whose wait is over lets the next call through as a probe
+        status.put("state", state == State.OPEN && !isOpen() ? State.HALF_OPEN.name() : state.name());
+        status.put("consecutiveFailures", consecutiveFailures);
+        status.put("timesOpened", timesOpened);
+        return status;
+    }
+}
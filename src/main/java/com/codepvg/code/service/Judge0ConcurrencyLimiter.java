@@ -0,0 +1,137 @@
+package com.codepvg.code.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Adaptive limit on Judge0 runs in flight, in the style of Netflix's gradient limiter. A long-term
+// average of run latency is compared with the latest ones: while they match, the limit grows by about
+// sqrt(limit); when latency climbs because Judge0 is queueing, the limit shrinks in proportion, and an
+// error cuts it by 10%. Runs beyond the limit wait here instead of piling up in Judge0's queue, and
+// give up after judge0.limit.max-wait-ms with an OverloadedException, which is never a verdict.
+@Service
+public class Judge0ConcurrencyLimiter {
+
+    private static final double SHORT_SMOOTHING = 0.2;
+    private static final double LONG_SMOOTHING = 0.01;
+    private static final double LIMIT_SMOOTHING = 0.2;
+
+    @Value("${judge0.limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${judge0.limit.initial:20}")
+    private int initialLimit;
+
+    @Value("${judge0.limit.min:4}")
+    private int minLimit;
+
+    @Value("${judge0.limit.max:200}")
+    private int maxLimit;
+
+    @Value("${judge0.limit.max-wait-ms:30000}")
+    private long maxWaitMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private double shortRttMs;
+    private double longRttMs;
+    private long rejected;
+
+    @PostConstruct
+    public void init() {
+        limit = initialLimit;
+    }
+
+    // Blocks until a run may be sent to Judge0; every successful acquire() needs a release
+    public void acquire() {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    rejected++;
+                    throw new OverloadedException();
+                }
+                remaining = available.awaitNanos(remaining);
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for Judge0 capacity");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ends a run and feeds its submit-to-result latency (or failure) into the limit
+    public void release(long latencyNanos, boolean failed) {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= limit / 2;
+            inFlight--;
+            if (failed) {
+                limit = Math.max(minLimit, limit * 0.9);
+            } else {
+                double rttMs = latencyNanos / 1_000_000.0;
+                shortRttMs = shortRttMs == 0 ? rttMs : shortRttMs + SHORT_SMOOTHING * (rttMs - shortRttMs);
+                longRttMs = longRttMs == 0 ? rttMs : longRttMs + LONG_SMOOTHING * (rttMs - longRttMs);
+                // Drift the baseline down quickly if latency stays well below it
+                if (longRttMs > 2 * shortRttMs) longRttMs *= 0.95;
+                // Only an app that actually uses its limit learns anything about raising it
+                if (saturated || shortRttMs > longRttMs) {
+                    double gradient = Math.max(0.5, Math.min(1.0, longRttMs / shortRttMs));
+                    double target = limit * gradient + Math.sqrt(limit);
+                    limit = Math.max(minLimit, Math.min(maxLimit, limit + LIMIT_SMOOTHING * (target - limit)));
+                }
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ends a run without a latency sample (e.g. a multi-case harness run)
+    public void release() {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            inFlight--;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // No Judge0 capacity within max-wait-ms; says nothing about the code that was to run
+    public static class OverloadedException extends RuntimeException {
+        public OverloadedException() {
+            super("Judge0 is overloaded, try again shortly");
+        }
+    }
+
+    public Map<String, Object> status() {
+        lock.lock();
+        try {
+            Map<String, Object> status = new HashMap<>();
+            status.put("enabled", enabled);
+            status.put("limit", (int) limit);
+            status.put("inFlight", inFlight);
+            status.put("shortLatencyMs", shortRttMs);
+            status.put("longLatencyMs", longRttMs);
+            status.put("rejected", rejected);
+            return status;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.codepvg.code.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Runs one test case on Judge0 with optional hedging against a stalled node (judge0.hedge.enabled, and
+// only with more than one node in judge0.api.urls). A run still unfinished after the recent p95 latency
+// for its language is sent again to another node, and whichever finishes first is used; the other
+// token is no longer polled. Hedges are paid for from a budget that grows by judge0.hedge.max-percent
+// of a hedge per run, so they never exceed that share of traffic.
+@Service
+public class Judge0HedgedRunner {
+
+    private static final int WINDOW = 256;
+    private static final double MAX_BUDGET = 10.0;
+
+    @Autowired
+    private Judge0Service judge0Service;
+
+    @Autowired
+    private Judge0SubmitBatcher judge0SubmitBatcher;
+
+    @Autowired
+    private Judge0ResultPoller judge0ResultPoller;
+
+    @Autowired
+    private Judge0ConcurrencyLimiter concurrencyLimiter;
+
+    @Value("${judge0.hedge.enabled:false}")
+    private boolean enabled;
+
+    @Value("${judge0.hedge.max-percent:5}")
+    private double maxPercent;
+
+    @Value("${judge0.hedge.min-samples:20}")
+    private int minSamples;
+
+    @Value("${judge0.hedge.min-delay-ms:500}")
+    private long minDelayMs;
+
+    private final Map<Integer, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private double budget;
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    // Last WINDOW submit-to-result latencies of one language
+    private static final class LatencyWindow {
+        private final long[] millis = new long[WINDOW];
+        private int count;
+        private int next;
+
+        synchronized void add(long value) {
+            millis[next] = value;
+            next = (next + 1) % WINDOW;
+            count = Math.min(count + 1, WINDOW);
+        }
+
+        synchronized long p95(int minSamples) {
+            if (count < minSamples) return -1;
+            long[] sorted = Arrays.copyOf(millis, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(count * 0.95) - 1];
+        }
+    }
+
+    // Submits and waits for one run. onDispatch gets the first token as soon as it exists, so the
+    // caller can persist it for recovery.
+    public Map<String, Object> run(String sourceCode, int languageId, String stdin, Consumer<String> onDispatch) {
+        concurrencyLimiter.acquire();
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            Map<String, Object> result = runHedged(sourceCode, languageId, stdin, onDispatch);
+            // Internal Error: Judge0 itself failed the run
+            failed = Integer.valueOf(13).equals(result.get("statusId"));
+            return result;
+        } finally {
+            concurrencyLimiter.release(System.nanoTime() - started, failed);
+        }
+    }
+
+    private Map<String, Object> runHedged(String sourceCode, int languageId, String stdin, Consumer<String> onDispatch) {
+        long started = System.nanoTime();
+        String token = judge0SubmitBatcher.submitCode(sourceCode, languageId, stdin);
+        onDispatch.accept(token);
+        CompletableFuture<Map<String, Object>> primary = judge0ResultPoller.track(token);
+        runs.increment();
+        synchronized (this) {
+            budget = Math.min(MAX_BUDGET, budget + maxPercent / 100.0);
+        }
+
+        long hedgeAfter = hedgeDelay(languageId);
+        if (hedgeAfter < 0) {
+            return record(languageId, started, Judge0ResultPoller.await(primary));
+        }
+        try {
+            return record(languageId, started, primary.get(hedgeAfter, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            // Slower than 95% of recent runs: hedge below if the budget allows
+        } catch (ExecutionException e) {
+            return Judge0ResultPoller.await(primary);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for Judge0 result");
+        }
+        if (!takeFromBudget()) {
+            return record(languageId, started, Judge0ResultPoller.await(primary));
+        }
+
+        String hedgeToken;
+        try {
+            hedgeToken = judge0Service.submitCodeElsewhere(sourceCode, languageId, stdin, token);
+        } catch (RuntimeException e) {
+            return record(languageId, started, Judge0ResultPoller.await(primary));
+        }
+        hedges.increment();
+        CompletableFuture<Map<String, Object>> hedge = judge0ResultPoller.track(hedgeToken);
+
+        // First successful result wins; fails only if both runs fail
+        CompletableFuture<Map<String, Object>> first = new CompletableFuture<>();
+        primary.whenComplete((result, error) -> {
+            if (error == null) first.complete(result);
+            else if (hedge.isCompletedExceptionally()) first.completeExceptionally(error);
+        });
+        hedge.whenComplete((result, error) -> {
+            if (error == null) first.complete(result);
+            else if (primary.isCompletedExceptionally()) first.completeExceptionally(error);
+        });
+
+        Map<String, Object> result = Judge0ResultPoller.await(first);
+        boolean hedgeWon = hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.getNow(null) == result;
+        if (hedgeWon) {
+            hedgeWins.increment();
+        }
+        // Judge0 can't cancel a queued or running submission; just stop polling the loser
+        judge0ResultPoller.forget(hedgeWon ? token : hedgeToken);
+        return record(languageId, started, result);
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled && judge0Service.nodeCount() > 1);
+        status.put("nodes", judge0Service.nodeCount());
+        status.put("runs", runs.sum());
+        status.put("hedges", hedges.sum());
+        status.put("hedgeWins", hedgeWins.sum());
+        Map<Integer, Long> p95 = new HashMap<>();
+        for (Map.Entry<Integer, LatencyWindow> entry : latencies.entrySet()) {
+            p95.put(entry.getKey(), entry.getValue().p95(1));
+        }
+        status.put("p95MillisByLanguageId", p95);
+        return status;
+    }
+
+    // Milliseconds to wait before hedging, or -1 to never hedge this run
+    private long hedgeDelay(int languageId) {
+        if (!enabled || judge0Service.nodeCount() < 2) return -1;
+        LatencyWindow window = latencies.get(languageId);
+        long p95 = window != null ? window.p95(minSamples) : -1;
+        return p95 < 0 ? -1 : Math.max(p95, minDelayMs);
+    }
+
+    private synchronized boolean takeFromBudget() {
+        if (budget < 1.0) return false;
+        budget -= 1.0;
+        return true;
+    }
+
+    private Map<String, Object> record(int languageId, long started, Map<String, Object> result) {
+        latencies.computeIfAbsent(languageId, id -> new LatencyWindow())
+                .add((System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+}
@@ -0,0 +1,216 @@
+package com.codepvg.code.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// One poller for every outstanding Judge0 token in the application. Instead of each judging thread
+// polling its own token, waiters register here and a single loop fetches all pending tokens with
+// GET /submissions/batch (judge0.poll.batch-size per request). The interval adapts between
+// min-interval-ms and max-interval-ms: it shortens while results keep arriving and backs off while
+// everything is still queued.
+@Service
+public class Judge0ResultPoller {
+
+    @Autowired
+    private Judge0Service judge0Service;
+
+    @Autowired
+    private Judge0CircuitBreaker circuitBreaker;
+
+    @Autowired
+    private JudgeSpeedCalibrator speedCalibrator;
+
+    @Value("${judge0.poll.timeout-ms:60000}")
+    private long pollTimeoutMs;
+
+    @Value("${judge0.poll.batch-size:20}")
+    private int batchSize;
+
+    @Value("${judge0.poll.min-interval-ms:200}")
+    private long minIntervalMs;
+
+    @Value("${judge0.poll.max-interval-ms:2000}")
+    private long maxIntervalMs;
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private volatile long intervalMs;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    private static final class Pending {
+        private final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        private final long deadline;
+
+        private Pending(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        intervalMs = minIntervalMs;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "judge0-result-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.schedule(this::pollAndReschedule, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Blocks until Judge0 has finished with the token (status ids 1 and 2 are "In Queue" / "Processing")
+    public Map<String, Object> waitForResult(String token) {
+        return await(track(token));
+    }
+
+    // Completes with the token's result once Judge0 has finished with it
+    public CompletableFuture<Map<String, Object>> track(String token) {
+        return pending.computeIfAbsent(token,
+                key -> new Pending(System.currentTimeMillis() + pollTimeoutMs)).future;
+    }
+
+    // Stops polling a token nobody is waiting for any more
+    public void forget(String token) {
+        Pending entry = pending.remove(token);
+        if (entry != null) {
+            entry.future.cancel(false);
+        }
+    }
+
+    // Stops polling a token and fails whoever waits for it
+    public void cancel(String token) {
+        fail(token, new RuntimeException("Submission cancelled"));
+    }
+
+    public static Map<String, Object> await(CompletableFuture<Map<String, Object>> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException
+                    ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for Judge0 result");
+        }
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("pendingTokens", pending.size());
+        status.put("intervalMs", intervalMs);
+        status.put("batchRequests", requests.sum());
+        status.put("resultsDelivered", completed.sum());
+        return status;
+    }
+
+    private void pollAndReschedule() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            System.err.println("Judge0 result poll failed: " + e.getMessage());
+        } finally {
+            if (!scheduler.isShutdown()) {
+                scheduler.schedule(this::pollAndReschedule, intervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void poll() {
+        if (pending.isEmpty()) {
+            // Poll a newly submitted token soon rather than after a long back-off
+            intervalMs = minIntervalMs;
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        // A batch request only covers tokens of the node that issued them
+        Map<Integer, List<String>> tokensByNode = new HashMap<>();
+        boolean expired = false;
+        for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+            if (now > entry.getValue().deadline) {
+                expired = true;
+                fail(entry.getKey(), new RuntimeException("Timed out waiting for Judge0 result"));
+            } else {
+                tokensByNode.computeIfAbsent(judge0Service.nodeOf(entry.getKey()), node -> new ArrayList<>())
+                        .add(entry.getKey());
+            }
+        }
+        if (expired) {
+            // Judge0 answers but never finishes: one failure per cycle, since a backlog of queued runs
+            // expiring together is one symptom, not one failure per token
+            circuitBreaker.recordFailure();
+        }
+
+        int finished = 0;
+        for (Map.Entry<Integer, List<String>> entry : tokensByNode.entrySet()) {
+            finished += pollNode(entry.getKey(), entry.getValue());
+        }
+
+        intervalMs = finished > 0
+                ? Math.max(minIntervalMs, intervalMs / 2)
+                : Math.min(maxIntervalMs, intervalMs * 3 / 2);
+    }
+
+    private int pollNode(int node, List<String> tokens) {
+        int finished = 0;
+        for (int from = 0; from < tokens.size(); from += batchSize) {
+            List<String> chunk = tokens.subList(from, Math.min(from + batchSize, tokens.size()));
+            Map<String, Map<String, Object>> results;
+            try {
+                requests.increment();
+                results = judge0Service.getSubmissionResults(chunk);
+            } catch (RuntimeException e) {
+                // Same as a failed poll before batching: the waiter decides whether to re-dispatch
+                for (String token : chunk) {
+                    fail(token, e);
+                }
+                continue;
+            }
+            for (String token : chunk) {
+                Map<String, Object> result = results.get(token);
+                if (result == null) {
+                    fail(token, new RuntimeException("Error getting submission result: unknown token " + token));
+                    continue;
+                }
+                Integer statusId = (Integer) result.get("statusId");
+                if (statusId != null && statusId > 2) {
+                    Pending entry = pending.remove(token);
+                    if (entry != null) {
+                        // Times in reference seconds, whichever node ran it
+                        entry.future.complete(speedCalibrator.normalize(result, JudgeSpeedCalibrator.judge0(node)));
+                        completed.increment();
+                        finished++;
+                    }
+                }
+            }
+        }
+        return finished;
+    }
+
+    private void fail(String token, RuntimeException e) {
+        Pending entry = pending.remove(token);
+        if (entry != null) {
+            entry.future.completeExceptionally(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
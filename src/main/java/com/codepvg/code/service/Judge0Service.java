@@ -2,31 +2,101 @@ package com.codepvg.code.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class Judge0Service {
 
+    @Autowired
+    private Judge0CircuitBreaker circuitBreaker;
+
     @Value("${judge0.api.url}")
     private String judge0ApiUrl;
 
+    // Optional comma-separated list of Judge0 nodes; defaults to judge0.api.url alone
+    @Value("${judge0.api.urls:}")
+    private String judge0ApiUrls;
+
+    // Sent as X-Auth-User where Judge0 requires authorization (e.g. for DELETE)
+    @Value("${judge0.authz-token:}")
+    private String authzToken;
+
+    // The node's MAX_CPU_TIME_LIMIT and MAX_WALL_TIME_LIMIT; Judge0 rejects runs asking for more
+    @Value("${judge0.max-cpu-time-limit:15}")
+    private double maxCpuTimeLimit;
+
+    @Value("${judge0.max-wall-time-limit:20}")
+    private double maxWallTimeLimit;
+
+    private List<String> nodes;
+    private final AtomicInteger nextNode = new AtomicInteger();
+
     private final RestTemplate restTemplate = new RestTemplate();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @PostConstruct
+    public void init() {
+        nodes = new ArrayList<>();
+        for (String url : judge0ApiUrls.split(",")) {
+            if (!url.isBlank()) nodes.add(url.trim());
+        }
+        if (nodes.isEmpty()) {
+            nodes.add(judge0ApiUrl);
+        }
+    }
+
+    public int nodeCount() {
+        return nodes.size();
+    }
+
+    // Node a token was issued by. With several nodes tokens carry their node as "<index>:<token>";
+    // with one node they are Judge0's tokens unchanged.
+    public int nodeOf(String token) {
+        int separator = token.indexOf(':');
+        if (separator < 0) return 0;
+        int node = Integer.parseInt(token.substring(0, separator));
+        return node < nodes.size() ? node : 0;
+    }
+
     public String submitCode(String sourceCode, int languageId, String stdin) {
+        return submitCode(sourceCode, languageId, stdin, null);
+    }
+
+    // cpuTimeLimit (seconds) overrides Judge0's default per-run limit, e.g. for multi-case harness runs
+    public String submitCode(String sourceCode, int languageId, String stdin, Double cpuTimeLimit) {
+        return submitCode(sourceCode, languageId, stdin, cpuTimeLimit, pickNode(-1));
+    }
+
+    // Same run on a different node than the one that issued otherToken (for hedging)
+    public String submitCodeElsewhere(String sourceCode, int languageId, String stdin, String otherToken) {
+        return submitCode(sourceCode, languageId, stdin, null, pickNode(nodeOf(otherToken)));
+    }
+
+    // Same run on a given node (for calibrating each node's speed)
+    public String submitCodeToNode(String sourceCode, int languageId, String stdin, int node) {
+        return submitCode(sourceCode, languageId, stdin, null, node);
+    }
+
+    private String submitCode(String sourceCode, int languageId, String stdin, Double cpuTimeLimit, int node) {
+        if (!circuitBreaker.allowRequest()) {
+            throw new RuntimeException("Error submitting code: Judge0 is unavailable (circuit open)");
+        }
         try {
-            String url = judge0ApiUrl + "/submissions";
+            String url = nodes.get(node) + "/submissions";
             
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("source_code", sourceCode);
-            requestBody.put("language_id", languageId);
-            requestBody.put("stdin", stdin);
+            Map<String, Object> requestBody = requestBody(sourceCode, languageId, stdin, cpuTimeLimit);
             
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
@@ -37,59 +107,215 @@ public class Judge0Service {
             
             if (response.getStatusCode() == HttpStatus.CREATED) {
                 JsonNode jsonNode = objectMapper.readTree(response.getBody());
-                return jsonNode.get("token").asText();
+                circuitBreaker.recordSuccess();
+                return tag(node, jsonNode.get("token").asText());
             }
             
             throw new RuntimeException("Failed to submit code to Judge0");
             
         } catch (Exception e) {
+            recordOutcome(e);
             throw new RuntimeException("Error submitting code: " + e.getMessage());
         }
     }
 
+    // Several runs in one POST /submissions/batch. Tokens come back in request order; an entry Judge0
+    // rejected is null.
+    public List<String> submitBatch(List<Map<String, Object>> requestBodies) {
+        if (!circuitBreaker.allowRequest()) {
+            throw new RuntimeException("Error submitting code: Judge0 is unavailable (circuit open)");
+        }
+        int node = pickNode(-1);
+        try {
+            String url = nodes.get(node) + "/submissions/batch";
+
+            Map<String, Object> batch = new HashMap<>();
+            batch.put("submissions", requestBodies);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+
+            ResponseEntity<String> response = restTemplate.postForEntity(url, new HttpEntity<>(batch, headers), String.class);
+
+            if (response.getStatusCode() == HttpStatus.CREATED) {
+                JsonNode entries = objectMapper.readTree(response.getBody());
+                List<String> tokens = new ArrayList<>();
+                for (int i = 0; i < requestBodies.size(); i++) {
+                    JsonNode entry = entries.get(i);
+                    if (entry != null && entry.hasNonNull("token")) {
+                        tokens.add(tag(node, entry.get("token").asText()));
+                    } else {
+                        System.err.println("Judge0 rejected batched submission: " + entry);
+                        tokens.add(null);
+                    }
+                }
+                circuitBreaker.recordSuccess();
+                return tokens;
+            }
+
+            throw new RuntimeException("Failed to submit code to Judge0");
+
+        } catch (Exception e) {
+            recordOutcome(e);
+            throw new RuntimeException("Error submitting code: " + e.getMessage());
+        }
+    }
+
+    // cpuTimeLimit (seconds) may be null for Judge0's default; it is capped at the node's maximums
+    Map<String, Object> requestBody(String sourceCode, int languageId, String stdin, Double cpuTimeLimit) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("source_code", sourceCode);
+        requestBody.put("language_id", languageId);
+        requestBody.put("stdin", stdin);
+        if (cpuTimeLimit != null) {
+            requestBody.put("cpu_time_limit", Math.min(cpuTimeLimit, maxCpuTimeLimit));
+            requestBody.put("wall_time_limit", Math.min(cpuTimeLimit * 2, maxWallTimeLimit));
+        }
+        return requestBody;
+    }
+
     public Map<String, Object> getSubmissionResult(String token) {
+        if (!circuitBreaker.allowRequest()) {
+            throw new RuntimeException("Error getting submission result: Judge0 is unavailable (circuit open)");
+        }
         try {
-            String url = judge0ApiUrl + "/submissions/" + token;
+            String url = nodes.get(nodeOf(token)) + "/submissions/" + untag(token);
             
             ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
             
             if (response.getStatusCode() == HttpStatus.OK) {
-                JsonNode jsonNode = objectMapper.readTree(response.getBody());
-                
-                Map<String, Object> result = new HashMap<>();
-                result.put("status", jsonNode.get("status").get("description").asText());
-                result.put("statusId", jsonNode.get("status").get("id").asInt());
-                
-                if (jsonNode.has("stdout") && !jsonNode.get("stdout").isNull()) {
-                    result.put("output", jsonNode.get("stdout").asText());
-                }
-                
-                if (jsonNode.has("stderr") && !jsonNode.get("stderr").isNull()) {
-                    result.put("error", jsonNode.get("stderr").asText());
-                }
-                
-                if (jsonNode.has("compile_output") && !jsonNode.get("compile_output").isNull()) {
-                    result.put("compileError", jsonNode.get("compile_output").asText());
-                }
-                
-                if (jsonNode.has("time") && !jsonNode.get("time").isNull()) {
-                    result.put("executionTime", jsonNode.get("time").asDouble());
-                }
-                
-                if (jsonNode.has("memory") && !jsonNode.get("memory").isNull()) {
-                    result.put("memoryUsage", jsonNode.get("memory").asInt());
-                }
-                
+                Map<String, Object> result = toResult(objectMapper.readTree(response.getBody()));
+                circuitBreaker.recordSuccess();
                 return result;
             }
             
             throw new RuntimeException("Failed to get submission result from Judge0");
             
         } catch (Exception e) {
+            recordOutcome(e);
             throw new RuntimeException("Error getting submission result: " + e.getMessage());
         }
     }
 
+    // Removes a submission from Judge0. Only allowed where the server enables deleting submissions, and
+    // Judge0 refuses ones still queued or running; returns whether it was deleted.
+    public boolean deleteSubmission(String token) {
+        if (!circuitBreaker.allowRequest()) {
+            return false;
+        }
+        try {
+            String url = nodes.get(nodeOf(token)) + "/submissions/" + untag(token) + "?fields=token";
+
+            HttpHeaders headers = new HttpHeaders();
+            if (!authzToken.isBlank()) {
+                headers.set("X-Auth-User", authzToken);
+            }
+
+            restTemplate.exchange(url, HttpMethod.DELETE, new HttpEntity<>(headers), String.class);
+            circuitBreaker.recordSuccess();
+            return true;
+        } catch (Exception e) {
+            recordOutcome(e);
+            return false;
+        }
+    }
+
+    // Results for up to judge0.poll.batch-size tokens of one node in one request; tokens Judge0 doesn't
+    // know map to null
+    public Map<String, Map<String, Object>> getSubmissionResults(List<String> tokens) {
+        if (!circuitBreaker.allowRequest()) {
+            throw new RuntimeException("Error getting submission results: Judge0 is unavailable (circuit open)");
+        }
+        int node = nodeOf(tokens.get(0));
+        try {
+            List<String> judge0Tokens = new ArrayList<>();
+            for (String token : tokens) {
+                judge0Tokens.add(untag(token));
+            }
+            String url = nodes.get(node) + "/submissions/batch?tokens=" + String.join(",", judge0Tokens)
+                    + "&fields=token,status,stdout,stderr,compile_output,time,memory";
+
+            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+
+            if (response.getStatusCode() == HttpStatus.OK) {
+                JsonNode submissions = objectMapper.readTree(response.getBody()).get("submissions");
+                Map<String, Map<String, Object>> results = new HashMap<>();
+                for (String token : tokens) {
+                    results.put(token, null);
+                }
+                if (submissions != null) {
+                    for (JsonNode jsonNode : submissions) {
+                        if (jsonNode != null && !jsonNode.isNull() && jsonNode.hasNonNull("token")) {
+                            results.put(tag(node, jsonNode.get("token").asText()), toResult(jsonNode));
+                        }
+                    }
+                }
+                circuitBreaker.recordSuccess();
+                return results;
+            }
+
+            throw new RuntimeException("Failed to get submission results from Judge0");
+
+        } catch (Exception e) {
+            recordOutcome(e);
+            throw new RuntimeException("Error getting submission results: " + e.getMessage());
+        }
+    }
+
+    // Round robin over the nodes, skipping the excluded one when there is a choice
+    private int pickNode(int excluded) {
+        int node = Math.floorMod(nextNode.getAndIncrement(), nodes.size());
+        if (node == excluded && nodes.size() > 1) {
+            node = (node + 1) % nodes.size();
+        }
+        return node;
+    }
+
+    private String tag(int node, String token) {
+        return nodes.size() > 1 ? node + ":" + token : token;
+    }
+
+    private String untag(String token) {
+        return token.substring(token.indexOf(':') + 1);
+    }
+
+    private Map<String, Object> toResult(JsonNode jsonNode) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("status", jsonNode.get("status").get("description").asText());
+        result.put("statusId", jsonNode.get("status").get("id").asInt());
+
+        if (jsonNode.has("stdout") && !jsonNode.get("stdout").isNull()) {
+            result.put("output", jsonNode.get("stdout").asText());
+        }
+
+        if (jsonNode.has("stderr") && !jsonNode.get("stderr").isNull()) {
+            result.put("error", jsonNode.get("stderr").asText());
+        }
+
+        if (jsonNode.has("compile_output") && !jsonNode.get("compile_output").isNull()) {
+            result.put("compileError", jsonNode.get("compile_output").asText());
+        }
+
+        if (jsonNode.has("time") && !jsonNode.get("time").isNull()) {
+            result.put("executionTime", jsonNode.get("time").asDouble());
+        }
+
+        if (jsonNode.has("memory") && !jsonNode.get("memory").isNull()) {
+            result.put("memoryUsage", jsonNode.get("memory").asInt());
+        }
+
+        return result;
+    }
+
+    // A 4xx (e.g. an expired token) means Judge0 is up; only errors reaching it or 5xx count against it
+    private void recordOutcome(Exception e) {
+        if (e instanceof HttpClientErrorException) {
+            circuitBreaker.recordSuccess();
+        } else {
+            circuitBreaker.recordFailure();
+        }
+    }
+
     public Map<String, Object> getSupportedLanguages() {
         try {
             String url = judge0ApiUrl + "/languages";
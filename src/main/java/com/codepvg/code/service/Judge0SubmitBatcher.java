@@ -0,0 +1,178 @@
+package com.codepvg.code.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Cross-user micro-batching of Judge0 submissions. Runs submitted from any thread within
+// judge0.dispatch.window-ms of each other (up to judge0.dispatch.max-batch) go out as one
+// POST /submissions/batch, and each caller gets its own token back. Under load hundreds of single-run
+// POSTs per second become a handful of batch requests; an idle system adds at most one window of delay.
+@Service
+public class Judge0SubmitBatcher {
+
+    @Autowired
+    private Judge0Service judge0Service;
+
+    @Value("${judge0.dispatch.batching.enabled:true}")
+    private boolean enabled;
+
+    @Value("${judge0.dispatch.window-ms:15}")
+    private long windowMs;
+
+    @Value("${judge0.dispatch.max-batch:20}")
+    private int maxBatch;
+
+    @Value("${judge0.dispatch.senders:4}")
+    private int senders;
+
+    private final BlockingQueue<Item> queue = new LinkedBlockingQueue<>();
+    private Thread collector;
+    private ExecutorService senderPool;
+    private volatile boolean running;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder submissions = new LongAdder();
+
+    private static final class Item {
+        private final Map<String, Object> requestBody;
+        private final CompletableFuture<String> token = new CompletableFuture<>();
+
+        private Item(Map<String, Object> requestBody) {
+            this.requestBody = requestBody;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+        running = true;
+        senderPool = Executors.newFixedThreadPool(senders, runnable -> {
+            Thread thread = new Thread(runnable, "judge0-batch-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        collector = new Thread(this::collect, "judge0-batch-collector");
+        collector.setDaemon(true);
+        collector.start();
+    }
+
+    public String submitCode(String sourceCode, int languageId, String stdin) {
+        return submitCode(sourceCode, languageId, stdin, null);
+    }
+
+    // Same contract as Judge0Service.submitCode: returns the token or throws
+    public String submitCode(String sourceCode, int languageId, String stdin, Double cpuTimeLimit) {
+        if (!running) {
+            return judge0Service.submitCode(sourceCode, languageId, stdin, cpuTimeLimit);
+        }
+        Item item = new Item(judge0Service.requestBody(sourceCode, languageId, stdin, cpuTimeLimit));
+        queue.add(item);
+        try {
+            return item.token.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException
+                    ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while submitting code");
+        }
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", running);
+        status.put("queued", queue.size());
+        status.put("batches", batches.sum());
+        status.put("submissions", submissions.sum());
+        long batchCount = batches.sum();
+        status.put("averageBatchSize", batchCount > 0 ? (double) submissions.sum() / batchCount : 0.0);
+        return status;
+    }
+
+    // Waits for a first run, then gathers whatever else arrives within the window
+    private void collect() {
+        while (running) {
+            try {
+                Item first = queue.take();
+                List<Item> batch = new ArrayList<>();
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Item next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                senderPool.execute(() -> send(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void send(List<Item> batch) {
+        batches.increment();
+        submissions.add(batch.size());
+        if (batch.size() == 1) {
+            // Nothing to batch with; a plain POST is cheaper for Judge0 than a batch of one
+            Item item = batch.get(0);
+            Map<String, Object> body = item.requestBody;
+            try {
+                item.token.complete(judge0Service.submitCode((String) body.get("source_code"),
+                        (Integer) body.get("language_id"), (String) body.get("stdin"), (Double) body.get("cpu_time_limit")));
+            } catch (RuntimeException e) {
+                item.token.completeExceptionally(e);
+            }
+            return;
+        }
+
+        List<Map<String, Object>> bodies = new ArrayList<>();
+        for (Item item : batch) {
+            bodies.add(item.requestBody);
+        }
+        try {
+            List<String> tokens = judge0Service.submitBatch(bodies);
+            for (int i = 0; i < batch.size(); i++) {
+                String token = tokens.get(i);
+                if (token != null) {
+                    batch.get(i).token.complete(token);
+                } else {
+                    batch.get(i).token.completeExceptionally(
+                            new RuntimeException("Error submitting code: rejected by Judge0"));
+                }
+            }
+        } catch (RuntimeException e) {
+            for (Item item : batch) {
+                item.token.completeExceptionally(e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (collector != null) collector.interrupt();
+        if (senderPool != null) senderPool.shutdownNow();
+        RuntimeException stopped = new RuntimeException("Error submitting code: shutting down");
+        for (Item item; (item = queue.poll()) != null; ) {
+            item.token.completeExceptionally(stopped);
+        }
+    }
+}
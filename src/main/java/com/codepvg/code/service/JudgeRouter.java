@@ -0,0 +1,101 @@
+package com.codepvg.code.service;
+
+import com.codepvg.code.model.Problem;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Picks the engine for each run. judge.engine=judge0 and judge.engine=local send everything one way
+// (as before); judge.engine=hybrid routes by language (judge.routing.local-languages), by problem size
+// (problems with a lot of test data run locally instead of shipping it to Judge0 for every case) and
+// by Judge0's health: while its circuit is open, every language the local engine supports runs here.
+@Service
+public class JudgeRouter {
+
+    public static final String LOCAL = "local";
+    public static final String JUDGE0 = "judge0";
+
+    @Autowired
+    private Judge0CircuitBreaker judge0CircuitBreaker;
+
+    @Value("${judge.engine:judge0}")
+    private String engine;
+
+    @Value("${judge.routing.local-languages:java,python}")
+    private String localLanguages;
+
+    @Value("${judge.routing.local-min-test-data-kb:256}")
+    private long localMinTestDataKb;
+
+    @Value("${judge.routing.failover:true}")
+    private boolean failover;
+
+    private Set<String> localLanguageNames;
+    // Test data size per problem version
+    private final Map<String, Long> testDataBytes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        localLanguageNames = Arrays.stream(localLanguages.split(","))
+                .map(name -> name.trim().toLowerCase(Locale.ROOT))
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    // True when this run should use the local engine rather than Judge0; problem may be null
+    public boolean useLocal(Integer languageId, Problem problem) {
+        LocalLanguage language = LocalLanguage.fromLanguageId(languageId);
+        if (language == null) return false;
+        if ("local".equalsIgnoreCase(engine)) return true;
+        if (!isHybrid()) return false;
+
+        if (failover && judge0CircuitBreaker.isOpen()) return true;
+        if (localLanguageNames.contains(language.name().toLowerCase(Locale.ROOT))) return true;
+        return problem != null && testDataBytes(problem) >= localMinTestDataKb * 1024;
+    }
+
+    // Whether a run that failed on Judge0 may be retried on the local engine
+    public boolean canFailOver(Integer languageId) {
+        return isHybrid() && failover && LocalLanguage.fromLanguageId(languageId) != null;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("engine", engine);
+        status.put("localLanguages", localLanguageNames);
+        status.put("localMinTestDataKb", localMinTestDataKb);
+        status.put("failover", failover);
+        status.put("judge0Circuit", judge0CircuitBreaker.status());
+        return status;
+    }
+
+    private boolean isHybrid() {
+        return "hybrid".equalsIgnoreCase(engine);
+    }
+
+    private long testDataBytes(Problem problem) {
+        return testDataBytes.computeIfAbsent(problem.getId() + ":" + problem.getVersion(), key -> {
+            long bytes = 0;
+            if (problem.getTestCases() != null) {
+                for (Problem.TestCase testCase : problem.getTestCases()) {
+                    bytes += length(testCase.getInput()) + length(testCase.getExpectedOutput());
+                }
+            }
+            return bytes;
+        });
+    }
+
+    private static long length(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8).length : 0;
+    }
+}
@@ -0,0 +1,220 @@
+package com.codepvg.code.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Speed factors of the execution engines, so a program's reported time does not depend on the node that
+// ran it. Every judge.calibration.interval-ms the same CPU-bound benchmark runs on each Judge0 node and
+// on the local engine; an engine's factor is its benchmark time over the reference time (the configured
+// reference-seconds, else the first Judge0 node, else the local engine). Reported execution times are
+// divided by the factor and time limits handed to an engine multiplied by it. The factor is applied to
+// every language, so the benchmark is compiled C that times its own CPU use: it measures the hardware,
+// not an interpreter version or the engine's accounting. Nothing runs when there is no second engine (and
+// no reference-seconds) to compare against.
+@Service
+public class JudgeSpeedCalibrator {
+
+    public static final String LOCAL = "local";
+
+    private static final int BENCHMARK_LANGUAGE_ID = 50;
+    // Prints "<checksum> <CPU seconds>"; the checksum keeps the loop from being optimized away
+    private static final String BENCHMARK = "#include <stdio.h>\n"
+            + "#include <time.h>\n"
+            + "\n"
+            + "int main(void) {\n"
+            + "    unsigned long long total = 0;\n"
+            + "    for (unsigned long long i = 0; i < 100000000ULL; i++) {\n"
+            + "        total = (total + i * i) % 1000003ULL;\n"
+            + "    }\n"
+            + "    printf(\"%llu %.6f\\n\", total, (double) clock() / CLOCKS_PER_SEC);\n"
+            + "    return 0;\n"
+            + "}\n";
+    private static final double MIN_FACTOR = 0.25;
+    private static final double MAX_FACTOR = 4.0;
+
+    @Autowired
+    private Judge0Service judge0Service;
+
+    @Autowired
+    private LocalExecutionService localExecutionService;
+
+    @Value("${judge.engine:judge0}")
+    private String engine;
+
+    @Value("${judge.calibration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${judge.calibration.samples:3}")
+    private int samples;
+
+    @Value("${judge.calibration.reference-seconds:0}")
+    private double referenceSeconds;
+
+    @Value("${judge.calibration.timeout-ms:60000}")
+    private long timeoutMs;
+
+    private final Map<String, Double> factors = new ConcurrentHashMap<>();
+    private final Map<String, Double> benchmarkSeconds = new ConcurrentHashMap<>();
+    private volatile long lastCalibrated;
+
+    public static String judge0(int node) {
+        return "judge0-" + node;
+    }
+
+    // Engine key of the Judge0 node that issued a token
+    public String engineOf(String judge0Token) {
+        return judge0(judge0Service.nodeOf(judge0Token));
+    }
+
+    public double factor(String engineKey) {
+        return factors.getOrDefault(engineKey, 1.0);
+    }
+
+    // Rewrites executionTime in reference seconds; the measured time is kept as rawExecutionTime
+    public Map<String, Object> normalize(Map<String, Object> result, String engineKey) {
+        double factor = factor(engineKey);
+        Object time = result.get("executionTime");
+        if (factor != 1.0 && time instanceof Double && !result.containsKey("rawExecutionTime")) {
+            result.put("rawExecutionTime", time);
+            result.put("executionTime", (Double) time / factor);
+        }
+        return result;
+    }
+
+    // A limit in reference seconds, in the engine's own seconds
+    public double scaleLimit(double seconds, String engineKey) {
+        return seconds * factor(engineKey);
+    }
+
+    // For a Judge0 run whose node is not known yet: the slowest node's limit
+    public double scaleJudge0Limit(double seconds) {
+        double slowest = 1.0;
+        for (int node = 0; node < judge0Service.nodeCount(); node++) {
+            slowest = Math.max(slowest, factor(judge0(node)));
+        }
+        return seconds * slowest;
+    }
+
+    @Scheduled(initialDelayString = "${judge.calibration.initial-delay-ms:60000}",
+            fixedDelayString = "${judge.calibration.interval-ms:1800000}")
+    public void calibrate() {
+        if (!enabled) return;
+
+        int judge0Nodes = "local".equalsIgnoreCase(engine) ? 0 : judge0Service.nodeCount();
+        boolean measureLocal = !"judge0".equalsIgnoreCase(engine);
+        if (referenceSeconds <= 0 && judge0Nodes + (measureLocal ? 1 : 0) < 2) return;
+
+        Map<String, Double> measured = new LinkedHashMap<>();
+        if (judge0Nodes > 0) {
+            for (int node = 0; node < judge0Nodes; node++) {
+                Double seconds = benchmarkJudge0(node);
+                if (seconds != null) measured.put(judge0(node), seconds);
+            }
+        }
+        if (measureLocal) {
+            Double seconds = benchmarkLocal();
+            if (seconds != null) measured.put(LOCAL, seconds);
+        }
+
+        Double reference = referenceSeconds > 0 ? Double.valueOf(referenceSeconds)
+                : measured.containsKey(judge0(0)) ? measured.get(judge0(0))
+                : benchmarkSeconds.containsKey(judge0(0)) ? benchmarkSeconds.get(judge0(0))
+                : measured.get(LOCAL);
+        if (reference == null || reference <= 0) return;
+
+        for (Map.Entry<String, Double> entry : measured.entrySet()) {
+            benchmarkSeconds.put(entry.getKey(), entry.getValue());
+            double factor = Math.max(MIN_FACTOR, Math.min(MAX_FACTOR, entry.getValue() / reference));
+            Double previous = factors.put(entry.getKey(), factor);
+            if (previous == null || Math.abs(previous - factor) > 0.05) {
+                System.out.println("Judge speed factor of " + entry.getKey() + ": " + String.format("%.2f", factor));
+            }
+        }
+        lastCalibrated = System.currentTimeMillis();
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("referenceSeconds", referenceSeconds > 0 ? referenceSeconds : null);
+        status.put("factors", new HashMap<>(factors));
+        status.put("benchmarkSeconds", new HashMap<>(benchmarkSeconds));
+        status.put("lastCalibrated", lastCalibrated > 0 ? lastCalibrated : null);
+        return status;
+    }
+
+    // Fastest of the samples: noise from other load only ever makes a run slower
+    private Double benchmarkJudge0(int node) {
+        List<Double> times = new ArrayList<>();
+        try {
+            for (int i = 0; i < samples; i++) {
+                String token = judge0Service.submitCodeToNode(BENCHMARK, BENCHMARK_LANGUAGE_ID, "", node);
+                Double seconds = benchmarkCpuSeconds(awaitJudge0(token));
+                if (seconds != null) times.add(seconds);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Calibration of Judge0 node " + node + " failed: " + e.getMessage());
+        }
+        return times.isEmpty() ? null : Collections.min(times);
+    }
+
+    // Polled directly rather than through Judge0ResultPoller, which reports normalized times
+    private Map<String, Object> awaitJudge0(String token) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            Map<String, Object> result = judge0Service.getSubmissionResults(List.of(token)).get(token);
+            if (result == null) {
+                throw new RuntimeException("unknown token " + token);
+            }
+            Integer statusId = (Integer) result.get("statusId");
+            if (statusId != null && statusId > 2) {
+                return result;
+            }
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted");
+            }
+        }
+        throw new RuntimeException("timed out");
+    }
+
+    private Double benchmarkLocal() {
+        List<Double> times = new ArrayList<>();
+        try {
+            for (int i = 0; i < samples; i++) {
+                Double seconds = benchmarkCpuSeconds(
+                        localExecutionService.execute(BENCHMARK, BENCHMARK_LANGUAGE_ID, "", 10.0));
+                if (seconds != null) times.add(seconds);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Calibration of the local engine failed: " + e.getMessage());
+        }
+        return times.isEmpty() ? null : Collections.min(times);
+    }
+
+    // The CPU time the benchmark measured itself, null if the run failed
+    private static Double benchmarkCpuSeconds(Map<String, Object> result) {
+        if (!Integer.valueOf(3).equals(result.get("statusId")) || !(result.get("output") instanceof String)) {
+            return null;
+        }
+        String[] fields = ((String) result.get("output")).trim().split("\\s+");
+        try {
+            double seconds = fields.length == 2 ? Double.parseDouble(fields[1]) : 0;
+            return seconds > 0 ? seconds : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
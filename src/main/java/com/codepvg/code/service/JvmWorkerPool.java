@@ -0,0 +1,347 @@
+package com.codepvg.code.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Pre-started JVMs for the local engine's Java runs. Starting a JVM and loading the JDK classes a
+// solution needs costs far more than most solutions take to run, so a few workers are kept warm and
+// handed the compiled classes over a socket instead (see resources/judge/JvmWorker.java). A worker only
+// ever runs one program (one artifact): the first run binds it, so nothing one submission leaves in the
+// JVM can reach another's run. judge.local.jvm-pool.size unbound workers are kept in reserve for new
+// programs, and up to as many bound ones stay idle for their program's next test case (the least
+// recently used go first). A worker is also replaced after judge.local.jvm-pool.max-runs runs, after a
+// timeout, when a run leaves threads behind and whenever it exits abnormally.
+@Service
+public class JvmWorkerPool {
+
+    private static final long START_TIMEOUT_SECONDS = 30;
+
+    @Autowired
+    private LocalSandbox localSandbox;
+
+    @Value("${judge.engine:judge0}")
+    private String engine;
+
+    @Value("${judge.local.work-dir:${java.io.tmpdir}/codepvg-judge}")
+    private String workDir;
+
+    @Value("${judge.local.jvm-pool.size:2}")
+    private int size;
+
+    @Value("${judge.local.jvm-pool.max-runs:100}")
+    private int maxRuns;
+
+    @Value("${judge.local.jvm-pool.wait-ms:1000}")
+    private long waitMs;
+
+    private Path workerDir;
+    // Guarded by itself, as is starting; waiters are notified when a worker is returned. Least recently
+    // returned first.
+    private final Deque<Worker> idle = new ArrayDeque<>();
+    // Unbound workers being started
+    private int starting;
+    private final List<Worker> all = new ArrayList<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private ExecutorService starter;
+    private ScheduledExecutorService watchdog;
+    private volatile boolean running;
+
+    private static final class Worker {
+        private Process process;
+        private SocketChannel channel;
+        private DataInputStream in;
+        private DataOutputStream out;
+        private int runs;
+        // Key of the artifact this worker has run, null while fresh
+        private String owner;
+    }
+
+    @PostConstruct
+    public void init() {
+        if ("judge0".equalsIgnoreCase(engine) || size <= 0) return;
+
+        workerDir = Paths.get(workDir, "jvm-worker");
+        starter = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "jvm-worker-starter"));
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "jvm-worker-watchdog"));
+        running = true;
+        // Compiling and starting the workers takes a few seconds; don't hold up application startup
+        starter.execute(() -> {
+            try {
+                compileWorker();
+                ensureReserve();
+            } catch (Exception e) {
+                running = false;
+                System.err.println("JVM worker pool disabled: " + e.getMessage());
+            }
+        });
+    }
+
+    // Runs the compiled Main class on a warm worker. Returns null if no worker is free, in which case
+    // the caller starts a JVM of its own.
+    public WorkerRun run(CompiledArtifactCache.Artifact artifact, Path stdin, Path stdout, Path stderr,
+                         double cpuTimeLimit) throws InterruptedException {
+        if (!running) return null;
+        Worker worker = take(artifact.getKey());
+        if (worker == null) return null;
+        worker.owner = artifact.getKey();
+
+        long timeLimitMillis = (long) (cpuTimeLimit * 2000) + 500;
+        // The worker enforces the limit itself; this only catches a worker that stopped responding
+        ScheduledFuture<?> kill = watchdog.schedule(() -> worker.process.destroyForcibly(),
+                timeLimitMillis + 10_000, TimeUnit.MILLISECONDS);
+        long started = System.nanoTime();
+        boolean healthy = false;
+        try {
+            sendRequest(worker, artifact, stdin, stdout, stderr, timeLimitMillis);
+            int exitCode = worker.in.readInt();
+            boolean timedOut = worker.in.readBoolean();
+            long cpuNanos = worker.in.readLong();
+            long memoryKb = worker.in.readLong();
+            boolean clean = worker.in.readBoolean();
+            worker.runs++;
+            // A failed run may have left the heap or static state of library classes in a bad way, and
+            // a thread still running would carry on into the next run
+            healthy = !timedOut && exitCode == 0 && clean;
+            return new WorkerRun(exitCode, timedOut, cpuNanos / 1_000_000_000.0, (int) memoryKb);
+        } catch (IOException e) {
+            // The program ended the worker (System.exit, a crash, or the watchdog)
+            boolean exited = worker.process.waitFor(5, TimeUnit.SECONDS);
+            int exitCode = exited ? worker.process.exitValue() : 1;
+            double elapsed = (System.nanoTime() - started) / 1_000_000_000.0;
+            return new WorkerRun(exitCode, !exited || kill.isDone(), elapsed, null);
+        } finally {
+            kill.cancel(false);
+            if (healthy && worker.runs < maxRuns) {
+                release(worker);
+            } else {
+                retire(worker);
+            }
+        }
+    }
+
+    // An idle worker already bound to this artifact, else an unbound one from the reserve (which is then
+    // topped up). While a replacement is starting, waits up to wait-ms for it: starting a JVM of our own
+    // would take as long.
+    private Worker take(String key) throws InterruptedException {
+        synchronized (idle) {
+            // Also retries starts that failed earlier
+            ensureReserve();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(starting > 0 ? waitMs : 50);
+            while (true) {
+                Worker fresh = null;
+                for (Worker worker : idle) {
+                    if (key.equals(worker.owner)) {
+                        idle.remove(worker);
+                        return worker;
+                    }
+                    if (worker.owner == null && fresh == null) fresh = worker;
+                }
+                if (fresh != null) {
+                    idle.remove(fresh);
+                    ensureReserve();
+                    return fresh;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return null;
+                TimeUnit.NANOSECONDS.timedWait(idle, remaining);
+            }
+        }
+    }
+
+    private void release(Worker worker) {
+        synchronized (idle) {
+            idle.offer(worker);
+            // Bound workers beyond the pool size go, least recently used first; the reserve is untouched
+            int bound = 0;
+            for (Worker each : idle) {
+                if (each.owner != null) bound++;
+            }
+            for (Iterator<Worker> eldest = idle.iterator(); bound > size && eldest.hasNext(); ) {
+                Worker each = eldest.next();
+                if (each.owner == null) continue;
+                eldest.remove();
+                retire(each);
+                bound--;
+            }
+            idle.notifyAll();
+        }
+    }
+
+    // Starts unbound workers until the idle and starting ones make up the pool size
+    private void ensureReserve() {
+        synchronized (idle) {
+            int fresh = starting;
+            for (Worker worker : idle) {
+                if (worker.owner == null) fresh++;
+            }
+            for (; fresh < size && running; fresh++) {
+                starting++;
+                starter.execute(this::replenish);
+            }
+        }
+    }
+
+    private void sendRequest(Worker worker, CompiledArtifactCache.Artifact artifact, Path stdin, Path stdout,
+                             Path stderr, long timeLimitMillis) throws IOException {
+        DataOutputStream out = worker.out;
+        int classCount = 0;
+        for (String file : artifact.getFiles().keySet()) {
+            if (file.endsWith(".class")) classCount++;
+        }
+        out.writeInt(classCount);
+        for (Map.Entry<String, byte[]> file : artifact.getFiles().entrySet()) {
+            if (!file.getKey().endsWith(".class")) continue;
+            String name = file.getKey().substring(0, file.getKey().length() - ".class".length());
+            out.writeUTF(name.replace('/', '.').replace('\\', '.'));
+            out.writeInt(file.getValue().length);
+            out.write(file.getValue());
+        }
+        out.writeUTF(artifact.getDirectory().toString());
+        out.writeUTF("Main");
+        out.writeUTF(stdin.toString());
+        out.writeUTF(stdout.toString());
+        out.writeUTF(stderr.toString());
+        out.writeLong(timeLimitMillis);
+        out.flush();
+    }
+
+    private void compileWorker() throws IOException, InterruptedException {
+        Files.createDirectories(workerDir);
+        Files.createDirectories(Paths.get(workDir, "runs"));
+        try (InputStream source = getClass().getResourceAsStream("/judge/JvmWorker.java")) {
+            if (source == null) throw new IOException("judge/JvmWorker.java is missing from the classpath");
+            Files.write(workerDir.resolve("JvmWorker.java"), source.readAllBytes());
+        }
+        Process javac = new ProcessBuilder("javac", "-encoding", "UTF-8", "-d", ".", "JvmWorker.java")
+                .directory(workerDir.toFile())
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(javac.getInputStream().readAllBytes());
+        if (!javac.waitFor(60, TimeUnit.SECONDS) || javac.exitValue() != 0) {
+            throw new IOException("could not compile the worker: " + output);
+        }
+    }
+
+    private void replenish() {
+        try {
+            startWorker();
+        } finally {
+            synchronized (idle) {
+                starting--;
+                idle.notifyAll();
+            }
+        }
+    }
+
+    private void startWorker() {
+        if (!running) return;
+        Path socket = workerDir.resolve("worker-" + sequence.incrementAndGet() + ".sock");
+        Worker worker = new Worker();
+        try {
+            Files.deleteIfExists(socket);
+            try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+                server.bind(UnixDomainSocketAddress.of(socket));
+                // Sandboxed with only the runs directory writable: the classes arrive over the socket
+                List<String> command = localSandbox.wrapWorker(List.of("java", "-Xmx256m", "-XX:+UseSerialGC",
+                        "-cp", workerDir.toString(), "JvmWorker", socket.toString()),
+                        workerDir, List.of(Paths.get(workDir, "runs")));
+                worker.process = new ProcessBuilder(command)
+                        .directory(workerDir.toFile())
+                        .redirectInput(ProcessBuilder.Redirect.from(Paths.get("/dev/null").toFile()))
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                // Unblocks accept() if the worker dies or hangs before connecting
+                ScheduledFuture<?> abandon = watchdog.schedule(() -> close(server),
+                        START_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                worker.process.onExit().thenRun(() -> close(server));
+                worker.channel = server.accept();
+                abandon.cancel(false);
+            }
+            worker.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(worker.channel)));
+            worker.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(worker.channel)));
+            if (!"READY".equals(worker.in.readUTF())) {
+                throw new IOException("unexpected handshake");
+            }
+            synchronized (all) {
+                all.add(worker);
+            }
+            release(worker);
+        } catch (IOException e) {
+            System.err.println("Failed to start JVM worker: " + e.getMessage());
+            retire(worker);
+        } finally {
+            try {
+                Files.deleteIfExists(socket);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void retire(Worker worker) {
+        synchronized (all) {
+            all.remove(worker);
+        }
+        if (worker.channel != null) close(worker.channel);
+        if (worker.process != null) worker.process.destroyForcibly();
+    }
+
+    private static void close(java.io.Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (starter == null) return;
+        running = false;
+        starter.shutdownNow();
+        watchdog.shutdownNow();
+        synchronized (all) {
+            for (Worker worker : new ArrayList<>(all)) {
+                retire(worker);
+            }
+        }
+        synchronized (idle) {
+            idle.clear();
+        }
+    }
+}
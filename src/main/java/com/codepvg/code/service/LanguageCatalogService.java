@@ -0,0 +1,156 @@
+package com.codepvg.code.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Language list for the editor, served from memory. It starts from the built-in names and is
+// reconciled in the background (judge0.languages.refresh-ms) with Judge0's GET /languages, so names
+// and versions follow the judge actually deployed. Each snapshot carries an ETag for conditional GETs.
+@Service
+public class LanguageCatalogService {
+
+    @Autowired
+    private Judge0Service judge0Service;
+
+    @Value("${judge.engine:judge0}")
+    private String engine;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile Catalog catalog;
+
+    public static final class Catalog {
+        private final Map<String, Object> body;
+        private final String etag;
+
+        private Catalog(Map<String, Object> body, String etag) {
+            this.body = body;
+            this.etag = etag;
+        }
+
+        public Map<String, Object> getBody() { return body; }
+        public String getEtag() { return etag; }
+    }
+
+    @PostConstruct
+    public void init() {
+        // Usable before (or without) the first successful Judge0 fetch
+        catalog = build(null);
+    }
+
+    public Catalog getCatalog() {
+        return catalog;
+    }
+
+    @Scheduled(initialDelayString = "${judge0.languages.initial-delay-ms:0}",
+            fixedDelayString = "${judge0.languages.refresh-ms:3600000}")
+    public void refresh() {
+        if ("local".equalsIgnoreCase(engine)) return;
+        Map<Integer, String> judge0Names = new HashMap<>();
+        try {
+            JsonNode languages = (JsonNode) judge0Service.getSupportedLanguages().get("languages");
+            for (JsonNode language : languages) {
+                judge0Names.put(language.path("id").asInt(), language.path("name").asText());
+            }
+        } catch (RuntimeException e) {
+            // Keep serving the last catalog
+            System.err.println("Could not refresh Judge0 languages: " + e.getMessage());
+            return;
+        }
+        Catalog updated = build(judge0Names);
+        if (!updated.etag.equals(catalog.etag)) {
+            System.out.println("Language catalog updated from Judge0");
+        }
+        catalog = updated;
+    }
+
+    // judge0Names is null until Judge0 has answered
+    private Catalog build(Map<Integer, String> judge0Names) {
+        List<Map<String, Object>> languages = new ArrayList<>();
+        List<String> supported = new ArrayList<>();
+        for (Language language : Language.values()) {
+            String name = language.fallbackName;
+            if (judge0Names != null) {
+                String judge0Name = judge0Names.get(language.id);
+                if (judge0Name != null) {
+                    name = judge0Name;
+                } else if ("judge0".equalsIgnoreCase(engine)) {
+                    // Judge0 can't run it and nothing else will
+                    System.err.println("Judge0 does not offer language " + language.id + " (" + language.displayName + ")");
+                    continue;
+                }
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", language.id);
+            entry.put("name", name);
+            entry.put("version", version(name));
+            entry.put("language", language.key);
+            entry.put("displayName", language.displayName);
+            entry.put("extension", language.extension);
+            entry.put("template", language.template);
+            languages.add(entry);
+            supported.add(language.displayName);
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("languages", languages);
+        body.put("count", languages.size());
+        body.put("supported", supported);
+        return new Catalog(body, etagOf(body));
+    }
+
+    // "Java (OpenJDK 13.0.1)" -> "OpenJDK 13.0.1"
+    private static String version(String name) {
+        int open = name.indexOf('(');
+        int close = name.lastIndexOf(')');
+        return open >= 0 && close > open ? name.substring(open + 1, close) : null;
+    }
+
+    private String etagOf(Map<String, Object> body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(body));
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (Exception e) {
+            throw new RuntimeException("Error building language catalog: " + e.getMessage());
+        }
+    }
+
+    private enum Language {
+        C(50, "C (GCC 9.2.0)", "c", "C", ".c",
+                "#include <stdio.h>\n\nint main() {\n    // Your code here\n    return 0;\n}"),
+        CPP(54, "C++ (GCC 9.2.0)", "cpp", "C++", ".cpp",
+                "#include <iostream>\n#include <vector>\nusing namespace std;\n\nclass Solution {\npublic:\n    // Your solution here\n};\n\nint main() {\n    Solution solution;\n    return 0;\n}"),
+        JAVA(62, "Java (OpenJDK 13.0.1)", "java", "Java", ".java",
+                "class Solution {\n    // Your solution here\n}"),
+        PYTHON(71, "Python (3.8.1)", "python", "Python", ".py",
+                "class Solution:\n    # Your solution here\n    pass");
+
+        private final int id;
+        private final String fallbackName;
+        private final String key;
+        private final String displayName;
+        private final String extension;
+        private final String template;
+
+        Language(int id, String fallbackName, String key, String displayName, String extension, String template) {
+            this.id = id;
+            this.fallbackName = fallbackName;
+            this.key = key;
+            this.displayName = displayName;
+            this.extension = extension;
+            this.template = template;
+        }
+    }
+}
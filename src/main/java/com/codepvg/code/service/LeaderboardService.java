@@ -0,0 +1,335 @@
+package com.codepvg.code.service;
+
+import com.codepvg.code.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory standings of approved students, ordered by totalSolved desc, then totalSubmissions asc (ties by
+// user id so every student has a distinct rank). An indexable skip list answers rank, percentile and
+// top-K in O(log n) instead of loading and sorting every student per request. Judged submissions, approvals
+// and profile edits update it as they are written; a periodic rebuild from MongoDB picks up changes made
+// by other instances.
+@Service
+public class LeaderboardService {
+
+    private static final Comparator<Standing> ORDER = Comparator
+            .comparingInt((Standing standing) -> -standing.solved)
+            .thenComparingInt(standing -> standing.submissions)
+            .thenComparing(standing -> standing.userId);
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private IndexableSkipList<Standing> standings = new IndexableSkipList<>(ORDER);
+    private Map<String, Standing> byUserId = new HashMap<>();
+    private volatile boolean built;
+    // Users updated while a rebuild reads MongoDB, re-applied on top of what it read
+    private Map<String, User> updatedDuringRebuild;
+
+    // A student's leaderboard fields, as of the last update
+    public static final class Standing {
+        private final String userId;
+        private final String username;
+        private final String fullName;
+        private final String branch;
+        private final String year;
+        private final int solved;
+        private final int submissions;
+        private final int currentStreak;
+        private final LocalDate lastAcceptedDay;
+
+        private Standing(User user) {
+            this.userId = user.getId();
+            this.username = user.getUsername();
+            this.fullName = user.getFullName();
+            this.branch = user.getBranch();
+            this.year = user.getYear();
+            this.solved = user.getTotalSolved();
+            this.submissions = user.getTotalSubmissions();
+            this.currentStreak = user.getCurrentStreak();
+            this.lastAcceptedDay = user.getLastAcceptedDay();
+        }
+
+        // Position on the board only, for looking up a cursor
+        private Standing(String userId, int solved, int submissions) {
+            this.userId = userId;
+            this.username = null;
+            this.fullName = null;
+            this.branch = null;
+            this.year = null;
+            this.solved = solved;
+            this.submissions = submissions;
+            this.currentStreak = 0;
+            this.lastAcceptedDay = null;
+        }
+
+        public String getUserId() { return userId; }
+        public String getUsername() { return username; }
+        public String getFullName() { return fullName; }
+        public String getBranch() { return branch; }
+        public String getYear() { return year; }
+        public int getSolved() { return solved; }
+        public int getSubmissions() { return submissions; }
+        public int getCurrentStreak() { return UserService.currentStreak(currentStreak, lastAcceptedDay); }
+    }
+
+    // Consecutive standings from firstRank, with the board size when they were read
+    public static final class Window {
+        private final int firstRank;
+        private final int totalUsers;
+        private final List<Standing> standings;
+
+        private Window(int firstRank, int totalUsers, List<Standing> standings) {
+            this.firstRank = firstRank;
+            this.totalUsers = totalUsers;
+            this.standings = standings;
+        }
+
+        public int getFirstRank() { return firstRank; }
+        public int getTotalUsers() { return totalUsers; }
+        public List<Standing> getStandings() { return standings; }
+
+        // Cursor continuing after the last standing, or null at the end of the board
+        public String getNextCursor() {
+            if (standings.isEmpty() || firstRank + standings.size() > totalUsers) return null;
+            return cursorOf(standings.get(standings.size() - 1));
+        }
+
+        // Leaderboard fields only, one row per standing
+        public List<Map<String, Object>> rows() {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            int rank = firstRank;
+            for (Standing standing : standings) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("rank", rank++);
+                row.put("userId", standing.getUserId());
+                row.put("username", standing.getUsername());
+                row.put("fullName", standing.getFullName());
+                row.put("branch", standing.getBranch());
+                row.put("year", standing.getYear());
+                row.put("solved", standing.getSolved());
+                row.put("submissions", standing.getSubmissions());
+                row.put("streak", standing.getCurrentStreak());
+                rows.add(row);
+            }
+            return rows;
+        }
+    }
+
+    // Users loaded for the leaderboard carry only these fields (no password, solved list or profile text)
+    public static Query withStandingFields(Query query) {
+        query.fields().include("username", "fullName", "branch", "year", "role", "status",
+                "totalSolved", "totalSubmissions", "currentStreak", "maxStreak", "lastAcceptedDay");
+        return query;
+    }
+
+    @Scheduled(initialDelayString = "${leaderboard.rebuild-initial-delay-ms:0}",
+            fixedDelayString = "${leaderboard.rebuild-interval-ms:600000}")
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            updatedDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<User> students;
+        try {
+            students = mongoOperations.find(withStandingFields(new Query(Criteria
+                .where("status").is(User.UserStatus.APPROVED).and("role").is(User.Role.STUDENT))), User.class);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                updatedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        IndexableSkipList<Standing> rebuilt = new IndexableSkipList<>(ORDER);
+        Map<String, Standing> rebuiltById = new HashMap<>();
+        for (User student : students) {
+            Standing standing = new Standing(student);
+            rebuilt.add(standing);
+            rebuiltById.put(standing.userId, standing);
+        }
+        lock.writeLock().lock();
+        try {
+            standings = rebuilt;
+            byUserId = rebuiltById;
+            for (User user : updatedDuringRebuild.values()) {
+                place(user);
+            }
+            updatedDuringRebuild = null;
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Re-places a user after a write; anyone but an approved student is taken off the board
+    public void update(User user) {
+        if (user == null || user.getId() == null) return;
+        lock.writeLock().lock();
+        try {
+            place(user);
+            if (updatedDuringRebuild != null) {
+                updatedDuringRebuild.put(user.getId(), user);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock
+    private void place(User user) {
+        Standing previous = byUserId.remove(user.getId());
+        if (previous != null) {
+            standings.remove(previous);
+        }
+        if (user.getRole() == User.Role.STUDENT && user.getStatus() == User.UserStatus.APPROVED) {
+            Standing standing = new Standing(user);
+            standings.add(standing);
+            byUserId.put(standing.userId, standing);
+        }
+    }
+
+    public int size() {
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            return standings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 1-based rank of a student, or -1 if not on the board
+    public int rank(String userId) {
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            Standing standing = byUserId.get(userId);
+            return standing != null ? standings.rank(standing) : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Standing standing(String userId) {
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            return byUserId.get(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // globalRank, totalUsers and percentile (share of the cohort ranked below), as shown on profiles
+    public Map<String, Object> ranking(String userId) {
+        int rank;
+        int total;
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            Standing standing = byUserId.get(userId);
+            rank = standing != null ? standings.rank(standing) : -1;
+            total = standings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<String, Object> ranking = new HashMap<>();
+        ranking.put("globalRank", rank);
+        ranking.put("totalUsers", total);
+        ranking.put("percentile", rank > 0 ?
+            Math.round((1.0 - (double) rank / Math.max(1, total)) * 10000.0) / 100.0 : 0.0);
+        return ranking;
+    }
+
+    // Up to count standings starting at 1-based rank from
+    public List<Standing> range(int from, int count) {
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            return standings.range(from, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Standing> top(int count) {
+        return range(1, count);
+    }
+
+    // Up to count standings after the cursor's position (from the top without a cursor). The cursor names a
+    // place in the order rather than a rank, so students moving up or down between pages don't make the
+    // next page repeat or skip anyone who stayed put.
+    public Window page(String cursor, int count) {
+        Standing after = cursor != null && !cursor.isEmpty() ? parseCursor(cursor) : null;
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            int from = after != null ? standings.countUpTo(after) + 1 : 1;
+            return new Window(from, standings.size(), standings.range(from, count));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The student with up to radius standings above and below; empty if the student is not on the board
+    public Window around(String userId, int radius) {
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            Standing standing = byUserId.get(userId);
+            if (standing == null) {
+                return new Window(0, standings.size(), new ArrayList<>());
+            }
+            int rank = standings.rank(standing);
+            int from = Math.max(1, rank - radius);
+            return new Window(from, standings.size(), standings.range(from, rank - from + 1 + radius));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // "solved:submissions:userId", base64url so clients treat it as opaque
+    private static String cursorOf(Standing standing) {
+        String key = standing.solved + ":" + standing.submissions + ":" + standing.userId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Standing parseCursor(String cursor) {
+        try {
+            String[] key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 3);
+            return new Standing(key[2], Integer.parseInt(key[0]), Integer.parseInt(key[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new RuntimeException("Invalid leaderboard cursor");
+        }
+    }
+
+    private void ensureBuilt() {
+        if (!built) {
+            synchronized (this) {
+                if (!built) rebuild();
+            }
+        }
+    }
+}
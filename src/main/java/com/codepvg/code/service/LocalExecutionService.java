@@ -0,0 +1,278 @@
+package com.codepvg.code.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Compiles and runs submissions on this host instead of sending them to Judge0 (judge.engine=local, or
+// per run under judge.engine=hybrid, see JudgeRouter). Results use the same map shape as
+// Judge0Service.getSubmissionResult, so callers can't tell the engines apart.
+@Service
+public class LocalExecutionService {
+
+    private static final int MAX_OUTPUT_BYTES = 64 * 1024 * 1024;
+    // Output kept for display when it was already compared against an expected output file
+    private static final int MAX_PREVIEW_BYTES = 64 * 1024;
+
+    @Autowired
+    private CompiledArtifactCache artifactCache;
+
+    @Autowired
+    private JvmWorkerPool jvmWorkerPool;
+
+    @Autowired
+    private PythonForkServer pythonForkServer;
+
+    @Autowired
+    private CgroupSandbox cgroupSandbox;
+
+    @Autowired
+    private LocalSandbox localSandbox;
+
+    @Value("${judge.local.work-dir:${java.io.tmpdir}/codepvg-judge}")
+    private String workDir;
+
+    private Path runsDir;
+
+    @PostConstruct
+    public void init() throws IOException {
+        runsDir = Paths.get(workDir, "runs");
+        Files.createDirectories(runsDir);
+    }
+
+    public Map<String, Object> execute(String sourceCode, Integer languageId, String stdin, double cpuTimeLimit) {
+        return execute(sourceCode, languageId, null, stdin, null, cpuTimeLimit);
+    }
+
+    // stdin is stdinHeader followed by the contents of stdinFile (for harness runs, whose header is per run)
+    public Map<String, Object> execute(String sourceCode, Integer languageId, String stdinHeader, Path stdinFile,
+                                       Path expectedOutputFile, double cpuTimeLimit) {
+        return execute(sourceCode, languageId, stdinFile, stdinHeader, expectedOutputFile, cpuTimeLimit);
+    }
+
+    // Feeds stdin straight from a file. Given an expected output file, the output is compared on disk
+    // and the result carries "matchesExpected" plus only a preview of the output.
+    public Map<String, Object> execute(String sourceCode, Integer languageId, Path stdinFile, Path expectedOutputFile,
+                                       double cpuTimeLimit) {
+        return execute(sourceCode, languageId, stdinFile, null, expectedOutputFile, cpuTimeLimit);
+    }
+
+    // With both stdinFile and stdin, stdin is written first and the file appended to it
+    private Map<String, Object> execute(String sourceCode, Integer languageId, Path stdinFile, String stdin,
+                                        Path expectedOutputFile, double cpuTimeLimit) {
+        LocalLanguage language = LocalLanguage.fromLanguageId(languageId);
+        if (language == null) {
+            throw new RuntimeException("Language " + languageId + " is not supported by the local engine");
+        }
+
+        CompiledArtifactCache.Artifact artifact = artifactCache.getOrCompile(language, sourceCode);
+        if (!artifact.isCompiled()) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("status", "Compilation Error");
+            result.put("statusId", 6);
+            result.put("compileError", artifact.getCompileError());
+            return result;
+        }
+
+        Path runDir = null;
+        CgroupSandbox.Slice slice = null;
+        try {
+            // Private working directory: programs (and the native harness) may create files
+            runDir = Files.createTempDirectory(runsDir, "run-");
+            Path output = runDir.resolve("stdout");
+            Path errors = runDir.resolve("stderr");
+            // Exist even if a worker dies before opening them
+            Files.createFile(output);
+            Files.createFile(errors);
+            Path input = stdinFile;
+            if (input == null || stdin != null) {
+                input = runDir.resolve("stdin");
+                Files.write(input, (stdin != null ? stdin : "").getBytes(StandardCharsets.UTF_8));
+                if (stdinFile != null) {
+                    appendFile(stdinFile, input);
+                }
+            } else if (localSandbox.isIsolated()) {
+                // Sandboxed workers only see the runs directory, not the test case store
+                input = linkIntoRunDir(stdinFile, runDir.resolve("stdin"));
+            }
+
+            // Own cgroup (where available) for exact CPU and peak memory; JVM workers account for themselves
+            slice = language != LocalLanguage.JAVA ? cgroupSandbox.create() : null;
+
+            // Warm workers where available; they return null when busy or down
+            WorkerRun run = null;
+            if (language == LocalLanguage.JAVA) {
+                run = jvmWorkerPool.run(artifact, input, output, errors, cpuTimeLimit);
+            } else if (language == LocalLanguage.PYTHON) {
+                run = pythonForkServer.run(artifact, input, output, errors, runDir, slice, cpuTimeLimit);
+            }
+            if (run != null) {
+                Map<String, Object> result = collectOutput(output, errors, expectedOutputFile);
+                result.put("executionTime", run.getCpuTime());
+                if (run.getMemoryUsage() != null) {
+                    result.put("memoryUsage", run.getMemoryUsage());
+                }
+                // A worker that died mid-run could only report wall time
+                if (!putAccounting(result, slice) && run.getMemoryUsage() == null) {
+                    result.put("wallClockTime", true);
+                }
+                putStatus(result, run.isTimedOut(), run.getExitCode(), slice != null && slice.oomKilled());
+                return result;
+            }
+            if (slice == null && language == LocalLanguage.JAVA) {
+                slice = cgroupSandbox.create();
+            }
+
+            long started = System.nanoTime();
+            List<String> command = localSandbox.wrap(language.runCommand(artifact.getDirectory()), runDir,
+                    List.of(artifact.getDirectory()), (int) Math.ceil(cpuTimeLimit) + 1,
+                    language != LocalLanguage.JAVA);
+            Process process = new ProcessBuilder(slice != null ? slice.wrap(command) : command)
+                    .directory(runDir.toFile())
+                    .redirectInput(input.toFile())
+                    .redirectOutput(output.toFile())
+                    .redirectError(errors.toFile())
+                    .start();
+            // Wall-clock budget with headroom for process start; exact limits are judged by the caller
+            long budgetMillis = (long) (cpuTimeLimit * 2000) + 1000;
+            boolean finished = process.waitFor(budgetMillis, TimeUnit.MILLISECONDS);
+            double elapsed = (System.nanoTime() - started) / 1_000_000_000.0;
+            if (!finished) {
+                if (slice != null) slice.kill();
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+                process.destroyForcibly();
+                process.waitFor(5, TimeUnit.SECONDS);
+            }
+
+            Map<String, Object> result = collectOutput(output, errors, expectedOutputFile);
+            result.put("executionTime", elapsed);
+            if (!putAccounting(result, slice)) {
+                result.put("wallClockTime", true);
+            }
+            putStatus(result, !finished, finished ? process.exitValue() : 0, slice != null && slice.oomKilled());
+            return result;
+        } catch (IOException e) {
+            throw new RuntimeException("Local execution failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Local execution interrupted", e);
+        } finally {
+            if (slice != null) slice.destroy();
+            CompiledArtifactCache.deleteRecursively(runDir);
+            artifactCache.release(artifact);
+        }
+    }
+
+    // cgroup figures replace wall time and self-reported memory: they cover every process and thread.
+    // Whether executionTime is now the cgroup's CPU time.
+    private boolean putAccounting(Map<String, Object> result, CgroupSandbox.Slice slice) {
+        if (slice == null) return false;
+        Integer peakMemory = slice.peakMemoryKb();
+        if (peakMemory != null) {
+            result.put("memoryUsage", peakMemory);
+        }
+        Double cpuTime = slice.cpuTime();
+        if (cpuTime == null) return false;
+        result.put("executionTime", cpuTime);
+        return true;
+    }
+
+    private Map<String, Object> collectOutput(Path output, Path errors, Path expectedOutput) throws IOException {
+        Map<String, Object> result = new HashMap<>();
+        if (expectedOutput != null) {
+            result.put("matchesExpected", TestCaseFileStore.sameIgnoringOuterWhitespace(output, expectedOutput));
+            result.put("output", readCapped(output, MAX_PREVIEW_BYTES));
+        } else {
+            result.put("output", readCapped(output, MAX_OUTPUT_BYTES));
+        }
+        String stderr = readCapped(errors, MAX_OUTPUT_BYTES);
+        if (!stderr.isEmpty()) {
+            result.put("error", stderr);
+        }
+        return result;
+    }
+
+    // Maps an exit code onto Judge0's status ids (a signal shows up as 128 + signal number). Judge0 has no
+    // memory limit status, so a cgroup OOM kill is flagged with "memoryLimitExceeded" for the verdict.
+    private void putStatus(Map<String, Object> result, boolean timedOut, int exitCode, boolean oomKilled) {
+        if (oomKilled) {
+            result.put("status", "Memory Limit Exceeded");
+            result.put("statusId", 12);
+            result.put("memoryLimitExceeded", true);
+            return;
+        }
+        if (timedOut) {
+            result.put("status", "Time Limit Exceeded");
+            result.put("statusId", 5);
+            return;
+        }
+        switch (exitCode) {
+            case 0:
+                result.put("status", "Accepted");
+                result.put("statusId", 3);
+                break;
+            case 128 + 11:
+                result.put("status", "Runtime Error (SIGSEGV)");
+                result.put("statusId", 7);
+                break;
+            case 128 + 25:
+                result.put("status", "Runtime Error (SIGXFSZ)");
+                result.put("statusId", 8);
+                break;
+            case 128 + 8:
+                result.put("status", "Runtime Error (SIGFPE)");
+                result.put("statusId", 9);
+                break;
+            case 128 + 6:
+                result.put("status", "Runtime Error (SIGABRT)");
+                result.put("statusId", 10);
+                break;
+            default:
+                result.put("status", "Runtime Error (NZEC)");
+                result.put("statusId", 11);
+        }
+    }
+
+    private Path linkIntoRunDir(Path source, Path target) throws IOException {
+        try {
+            return Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            // Different file system
+            return Files.copy(source, target);
+        }
+    }
+
+    private void appendFile(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long size = in.size();
+            for (long position = 0; position < size; ) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private String readCapped(Path file, int maxBytes) throws IOException {
+        long size = Files.size(file);
+        if (size <= maxBytes) {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return new String(in.readNBytes(maxBytes), StandardCharsets.UTF_8);
+        }
+    }
+}
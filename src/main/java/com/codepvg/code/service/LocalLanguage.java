@@ -0,0 +1,67 @@
+package com.codepvg.code.service;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+// Toolchains used by the local execution engine, keyed by the Judge0 language ids the rest of the
+// application already uses.
+public enum LocalLanguage {
+    C(50, "main.c", "gcc"),
+    CPP(54, "main.cpp", "g++"),
+    JAVA(62, "Main.java", "javac"),
+    PYTHON(71, "main.py", "python3");
+
+    private final int languageId;
+    private final String sourceFile;
+    private final String compiler;
+
+    LocalLanguage(int languageId, String sourceFile, String compiler) {
+        this.languageId = languageId;
+        this.sourceFile = sourceFile;
+        this.compiler = compiler;
+    }
+
+    public static LocalLanguage fromLanguageId(Integer languageId) {
+        if (languageId == null) return null;
+        for (LocalLanguage language : values()) {
+            if (language.languageId == languageId) return language;
+        }
+        return null;
+    }
+
+    public int getLanguageId() { return languageId; }
+    public String getSourceFile() { return sourceFile; }
+    public String getCompiler() { return compiler; }
+
+    public List<String> versionCommand() {
+        return Arrays.asList(compiler, this == JAVA ? "-version" : "--version");
+    }
+
+    // Run inside the artifact directory; everything it produces there becomes the cached artifact
+    public List<String> compileCommand() {
+        switch (this) {
+            case C:
+                return Arrays.asList("gcc", "-O2", "-std=gnu11", "-o", "main", "main.c", "-lm");
+            case CPP:
+                return Arrays.asList("g++", "-O2", "-std=gnu++17", "-o", "main", "main.cpp");
+            case JAVA:
+                return Arrays.asList("javac", "-encoding", "UTF-8", "-d", ".", "Main.java");
+            default:
+                return Arrays.asList("python3", "-c",
+                        "import py_compile; py_compile.compile('main.py', cfile='main.pyc', doraise=True)");
+        }
+    }
+
+    public List<String> runCommand(Path artifactDirectory) {
+        switch (this) {
+            case C:
+            case CPP:
+                return Arrays.asList(artifactDirectory.resolve("main").toString());
+            case JAVA:
+                return Arrays.asList("java", "-Xmx256m", "-Xss64m", "-XX:+UseSerialGC", "-cp", artifactDirectory.toString(), "Main");
+            default:
+                return Arrays.asList("python3", artifactDirectory.resolve("main.pyc").toString());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.codepvg.code.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Confines what the local engine runs for a submission (compiles, direct runs and the warm workers) with
+// bubblewrap: no network, a cleared environment, a fresh /proc and /tmp, the system directories read-only
+// and only the directories a run needs bound in, so the server's files, configuration and credentials are
+// out of reach. Submission commands also get the rlimits the Python fork server sets in its children (CPU,
+// address space, file size); process count is bounded by the cgroup's pids.max instead, since RLIMIT_NPROC
+// counts every process of the server's uid. The local engine refuses to start without bwrap unless
+// judge.local.sandbox=none is set explicitly.
+@Service
+public class LocalSandbox {
+
+    public static final long MEMORY_LIMIT_BYTES = 512L * 1024 * 1024;
+    public static final long FILE_SIZE_LIMIT_BYTES = 64L * 1024 * 1024;
+
+    private static final String PRLIMIT = "/usr/bin/prlimit";
+
+    @Value("${judge.engine:judge0}")
+    private String engine;
+
+    @Value("${judge.local.sandbox:bwrap}")
+    private String mode;
+
+    @Value("${judge.local.sandbox.bwrap:bwrap}")
+    private String bwrap;
+
+    @Value("${judge.local.sandbox.read-only-paths:/usr,/bin,/sbin,/lib,/lib32,/lib64,/etc/alternatives,/etc/ld.so.cache,/etc/ld.so.conf,/etc/ld.so.conf.d}")
+    private List<String> readOnlyPaths;
+
+    private boolean isolated;
+    private boolean rlimits;
+
+    @PostConstruct
+    public void init() {
+        if ("judge0".equalsIgnoreCase(engine)) return;
+
+        rlimits = Files.isExecutable(Paths.get(PRLIMIT));
+        if ("none".equalsIgnoreCase(mode)) {
+            System.err.println("WARNING: judge.local.sandbox=none, submissions run unconfined as the server user"
+                    + (rlimits ? "" : " and without rlimits (" + PRLIMIT + " not found)"));
+            return;
+        }
+        if (!"bwrap".equalsIgnoreCase(mode)) {
+            throw new IllegalStateException("Unknown judge.local.sandbox: " + mode);
+        }
+        if (!rlimits) {
+            throw new IllegalStateException(PRLIMIT + " not found; the local engine needs it for submission rlimits");
+        }
+        String problem = probe();
+        if (problem != null) {
+            throw new IllegalStateException("The local engine needs bwrap to isolate submissions (" + problem
+                    + "). Install bubblewrap, use judge.engine=judge0, or set judge.local.sandbox=none to run"
+                    + " submissions unconfined.");
+        }
+        isolated = true;
+    }
+
+    // Whether runs are actually confined; without it, anything a run can reach is the server's
+    public boolean isIsolated() {
+        return isolated;
+    }
+
+    // Wraps a submission command. workDir is bound writable and becomes the working directory, readOnly
+    // directories (the compiled artifact) are bound read-only at the same path. The address space limit
+    // is skipped for JVMs, which reserve far more than they use; their heap is bounded by -Xmx instead.
+    public List<String> wrap(List<String> command, Path workDir, List<Path> readOnly, int cpuSeconds,
+                             boolean limitAddressSpace) {
+        List<String> limited = new ArrayList<>();
+        if (rlimits) {
+            limited.add(PRLIMIT);
+            limited.add("--cpu=" + cpuSeconds + ":" + (cpuSeconds + 1));
+            if (limitAddressSpace) {
+                limited.add("--as=" + MEMORY_LIMIT_BYTES);
+            }
+            limited.add("--fsize=" + FILE_SIZE_LIMIT_BYTES);
+            limited.add("--");
+        }
+        limited.addAll(command);
+        if (!isolated) return limited;
+
+        List<String> wrapped = baseArguments();
+        // Own pid namespace: the program can't see or signal anything else, and dies with bwrap
+        wrapped.add("--unshare-pid");
+        for (Path path : readOnly) {
+            bind(wrapped, "--ro-bind", path);
+        }
+        bind(wrapped, "--bind", workDir);
+        wrapped.add("--chdir");
+        wrapped.add(workDir.toString());
+        wrapped.add("--");
+        wrapped.addAll(limited);
+        return wrapped;
+    }
+
+    // Wraps a long-lived worker that runs submissions itself (JVM worker, Python fork server). Only the
+    // writable directories are bound in. The pid namespace is shared, since the fork server reports its
+    // children's pids to the watchdog here. No CPU or address space limit; the worker sets those per run.
+    public List<String> wrapWorker(List<String> command, Path workDir, List<Path> writable) {
+        List<String> limited = new ArrayList<>();
+        if (rlimits) {
+            limited.add(PRLIMIT);
+            limited.add("--fsize=" + FILE_SIZE_LIMIT_BYTES);
+            limited.add("--");
+        }
+        limited.addAll(command);
+        if (!isolated) return limited;
+
+        List<String> wrapped = baseArguments();
+        bind(wrapped, "--ro-bind", workDir);
+        for (Path path : writable) {
+            bind(wrapped, "--bind", path);
+        }
+        wrapped.add("--chdir");
+        wrapped.add(workDir.toString());
+        wrapped.add("--");
+        wrapped.addAll(limited);
+        return wrapped;
+    }
+
+    private List<String> baseArguments() {
+        String javaHome = System.getProperty("java.home");
+        List<String> arguments = new ArrayList<>(List.of(bwrap,
+                "--die-with-parent", "--new-session",
+                "--unshare-user-try", "--unshare-ipc", "--unshare-net", "--unshare-uts",
+                "--clearenv",
+                "--setenv", "PATH", javaHome + "/bin:/usr/local/bin:/usr/bin:/bin",
+                "--setenv", "HOME", "/tmp",
+                "--setenv", "LANG", "C.UTF-8",
+                "--proc", "/proc",
+                "--dev", "/dev",
+                "--tmpfs", "/tmp"));
+        for (String path : readOnlyPaths) {
+            if (path.isBlank()) continue;
+            arguments.add("--ro-bind-try");
+            arguments.add(path.trim());
+            arguments.add(path.trim());
+        }
+        arguments.add("--ro-bind-try");
+        arguments.add(javaHome);
+        arguments.add(javaHome);
+        return arguments;
+    }
+
+    private static void bind(List<String> arguments, String option, Path path) {
+        arguments.add(option);
+        arguments.add(path.toString());
+        arguments.add(path.toString());
+    }
+
+    // Null if bwrap can build a sandbox here, otherwise why not
+    private String probe() {
+        try {
+            Process process = new ProcessBuilder(bwrap, "--die-with-parent", "--unshare-user-try", "--unshare-net",
+                    "--ro-bind", "/", "/", "--", "true")
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return "bwrap did not finish";
+            }
+            return process.exitValue() == 0 ? null : "bwrap exited with " + process.exitValue();
+        } catch (IOException e) {
+            return bwrap + " is not available: " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+    }
+}
@@ -25,6 +25,12 @@ public class ProblemService {
     @Autowired
     private SequenceService sequenceService;
 
+    @Autowired
+    private CodeWrapperService codeWrapperService;
+
+    @Autowired
+    private CheckerService checkerService;
+
     public List<Problem> getAllProblems() {
         return problemRepository.findAllOrderByCreatedAtDesc();
     }
@@ -34,6 +40,8 @@ public class ProblemService {
     }
 
     public Problem createProblem(Problem problem, String createdBy) {
+        validateFunctionSignature(problem.getFunctionSignature());
+        checkerService.validate(problem.getChecker());
         problem.setCreatedBy(createdBy);
         problem.setCreatedAt(LocalDateTime.now());
         problem.setUpdatedAt(LocalDateTime.now());
@@ -82,6 +90,12 @@ public class ProblemService {
             problem.setDifficulty(problemDetails.getDifficulty());
             problem.setTestCases(problemDetails.getTestCases());
             problem.setTags(problemDetails.getTags());
+            validateFunctionSignature(problemDetails.getFunctionSignature());
+            problem.setFunctionSignature(problemDetails.getFunctionSignature());
+            checkerService.validate(problemDetails.getChecker());
+            problem.setChecker(problemDetails.getChecker());
+            // Invalidates drivers generated for the previous version
+            problem.setVersion(problem.getVersion() + 1);
             problem.setUpdatedAt(LocalDateTime.now());
             return problemRepository.save(problem);
         }
@@ -226,6 +240,11 @@ public class ProblemService {
         // Set target years
         problem.setTargetYears(dto.getTargetYears());
 
+        validateFunctionSignature(dto.getFunctionSignature());
+        problem.setFunctionSignature(dto.getFunctionSignature());
+        checkerService.validate(dto.getChecker());
+        problem.setChecker(dto.getChecker());
+
         // Convert examples
         if (dto.getExamples() != null) {
             List<Problem.Example> examples = new ArrayList<>();
@@ -269,6 +288,28 @@ public class ProblemService {
         return problemRepository.save(problem);
     }
 
+    // Rejects signatures the driver generator can't handle, so a bad problem fails at creation
+    // time instead of on every submission
+    private void validateFunctionSignature(Problem.FunctionSignature signature) {
+        if (signature == null) return;
+        if (signature.getMethodName() == null || !signature.getMethodName().matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            throw new RuntimeException("Function signature needs a valid method name");
+        }
+        if (!codeWrapperService.isSupportedSignatureType(signature.getReturnType(), true)) {
+            throw new RuntimeException("Unsupported return type: " + signature.getReturnType());
+        }
+        if (signature.getParameters() != null) {
+            for (Problem.Parameter parameter : signature.getParameters()) {
+                if (parameter.getName() == null || !parameter.getName().matches("[A-Za-z_][A-Za-z0-9_]*")) {
+                    throw new RuntimeException("Invalid parameter name: " + parameter.getName());
+                }
+                if (!codeWrapperService.isSupportedSignatureType(parameter.getType(), false)) {
+                    throw new RuntimeException("Unsupported type for parameter " + parameter.getName() + ": " + parameter.getType());
+                }
+            }
+        }
+    }
+
     // Helper method to generate default code templates
     private Problem.CodeTemplates generateDefaultCodeTemplates(String problemTitle) {
         Problem.CodeTemplates templates = new Problem.CodeTemplates();
@@ -369,20 +410,6 @@ public class ProblemService {
         return problemRepository.findByTitle(title);
     }
 
-    public Problem updateProblemStats(String problemId, boolean solved) {
-        Optional<Problem> problemOpt = problemRepository.findById(problemId);
-        if (problemOpt.isPresent()) {
-            Problem problem = problemOpt.get();
-            problem.setTotalSubmissions(problem.getTotalSubmissions() + 1);
-            if (solved) {
-                problem.setTotalSolved(problem.getTotalSolved() + 1);
-            }
-            problem.setUpdatedAt(LocalDateTime.now());
-            return problemRepository.save(problem);
-        }
-        throw new RuntimeException("Problem not found");
-    }
-
     public List<Problem> getProblemsByTopic(String topic) {
         return problemRepository.findByTopicsContaining(topic);
     }
@@ -0,0 +1,115 @@
+package com.codepvg.code.service;
+
+import com.codepvg.code.model.Problem;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Write-behind for Problem.totalSubmissions / totalSolved. Every judged submission used to $inc the
+// problem document, which turns popular problems into write hotspots; instead deltas accumulate in
+// memory and are flushed as one unordered bulk write per interval (and on shutdown).
+@Service
+public class ProblemStatsAggregator {
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    private final Map<String, Counters> pending = new ConcurrentHashMap<>();
+    // Deltas drained by the running flush, still counted by readers until the bulk write has landed
+    private final Map<String, long[]> inFlight = new ConcurrentHashMap<>();
+
+    private static final class Counters {
+        private final LongAdder submissions = new LongAdder();
+        private final LongAdder solved = new LongAdder();
+    }
+
+    public void record(String problemId, boolean solved) {
+        Counters counters = pending.computeIfAbsent(problemId, id -> new Counters());
+        counters.submissions.increment();
+        if (solved) {
+            counters.solved.increment();
+        }
+    }
+
+    // Not-yet-flushed deltas, so readers can show counts that include the last few seconds
+    public int pendingSubmissions(String problemId) {
+        Counters counters = pending.get(problemId);
+        long[] flushing = inFlight.get(problemId);
+        return (counters != null ? counters.submissions.intValue() : 0) + (flushing != null ? (int) flushing[0] : 0);
+    }
+
+    public int pendingSolved(String problemId) {
+        Counters counters = pending.get(problemId);
+        long[] flushing = inFlight.get(problemId);
+        return (counters != null ? counters.solved.intValue() : 0) + (flushing != null ? (int) flushing[1] : 0);
+    }
+
+    @Scheduled(fixedDelayString = "${problem.stats.flush-interval-ms:2000}")
+    public synchronized void flush() {
+        List<String> problemIds = new ArrayList<>();
+        List<long[]> deltas = new ArrayList<>();
+        BulkOperations bulk = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, Problem.class);
+
+        for (Map.Entry<String, Counters> entry : pending.entrySet()) {
+            long submissions = entry.getValue().submissions.sum();
+            long solved = entry.getValue().solved.sum();
+            if (submissions == 0 && solved == 0) continue;
+
+            // Publish before draining, so a reader never sees the delta in neither place
+            inFlight.put(entry.getKey(), new long[]{submissions, solved});
+            entry.getValue().submissions.add(-submissions);
+            entry.getValue().solved.add(-solved);
+
+            problemIds.add(entry.getKey());
+            deltas.add(new long[]{submissions, solved});
+            bulk.updateOne(
+                    new Query(Criteria.where("_id").is(entry.getKey())),
+                    new Update().inc("totalSubmissions", submissions).inc("totalSolved", solved));
+        }
+        if (problemIds.isEmpty()) return;
+
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // Unordered: everything except the reported updates was applied
+            System.err.println("Failed to flush stats for " + e.getErrors().size() + " problems: " + e.getMessage());
+            for (BulkWriteError error : e.getErrors()) {
+                restore(problemIds.get(error.getIndex()), deltas.get(error.getIndex()));
+            }
+        } catch (Exception e) {
+            // Put the deltas back so the next flush retries them
+            System.err.println("Failed to flush problem stats: " + e.getMessage());
+            for (int i = 0; i < problemIds.size(); i++) {
+                restore(problemIds.get(i), deltas.get(i));
+            }
+        } finally {
+            // Failed deltas are back in pending by now; the rest are in the documents
+            inFlight.clear();
+        }
+    }
+
+    private void restore(String problemId, long[] delta) {
+        Counters counters = pending.computeIfAbsent(problemId, id -> new Counters());
+        counters.submissions.add(delta[0]);
+        counters.solved.add(delta[1]);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
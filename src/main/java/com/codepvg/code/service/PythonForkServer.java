@@ -0,0 +1,179 @@
+package com.codepvg.code.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Runs the local engine's Python submissions by forking a warm interpreter (see
+// resources/judge/fork_server.py) instead of starting python3 per run, which saves the interpreter
+// start-up and stdlib imports on every test execution. CPU, address space and output size are limited
+// with rlimits in the forked child. The server is restarted on the next run if it ever dies.
+@Service
+public class PythonForkServer {
+
+    private static final int SIGXCPU = 24;
+    private static final int SIGKILL = 9;
+
+    @Autowired
+    private LocalSandbox localSandbox;
+
+    @Autowired
+    private CgroupSandbox cgroupSandbox;
+
+    @Value("${judge.engine:judge0}")
+    private String engine;
+
+    @Value("${judge.local.work-dir:${java.io.tmpdir}/codepvg-judge}")
+    private String workDir;
+
+    @Value("${judge.local.python-fork-server.enabled:true}")
+    private boolean enabled;
+
+    private Path serverDir;
+    private Path socket;
+    private Process server;
+    private ScheduledExecutorService watchdog;
+
+    @PostConstruct
+    public void init() {
+        if ("judge0".equalsIgnoreCase(engine) || !enabled) return;
+
+        serverDir = Paths.get(workDir, "python-fork-server");
+        socket = serverDir.resolve("server.sock");
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "python-fork-server-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            ensureStarted();
+        } catch (IOException e) {
+            System.err.println("Python fork server unavailable, falling back to python3 per run: " + e.getMessage());
+        }
+    }
+
+    // Runs the artifact's main.pyc in a forked child, inside the given cgroup if there is one. Returns
+    // null if the server can't be reached, in which case the caller starts python3 itself.
+    public WorkerRun run(CompiledArtifactCache.Artifact artifact, Path stdin, Path stdout, Path stderr,
+                         Path workingDirectory, CgroupSandbox.Slice slice, double cpuTimeLimit) {
+        if (watchdog == null) return null;
+        try {
+            ensureStarted();
+        } catch (IOException e) {
+            System.err.println("Failed to start Python fork server: " + e.getMessage());
+            return null;
+        }
+
+        // The sandboxed server sees only the runs directory, not the other artifacts
+        Path script = workingDirectory.resolve("main.pyc");
+        try {
+            Files.copy(artifact.getDirectory().resolve("main.pyc"), script);
+        } catch (IOException e) {
+            System.err.println("Python fork server request failed: " + e.getMessage());
+            return null;
+        }
+
+        int cpuSeconds = (int) Math.ceil(cpuTimeLimit) + 1;
+        String request = String.join("\t",
+                script.toString(),
+                stdin.toString(), stdout.toString(), stderr.toString(), workingDirectory.toString(),
+                String.valueOf(cpuSeconds), String.valueOf(LocalSandbox.MEMORY_LIMIT_BYTES),
+                slice != null ? slice.getProcsFile().toString() : "-") + "\n";
+
+        long started = System.nanoTime();
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            channel.write(ByteBuffer.wrap(request.getBytes(StandardCharsets.UTF_8)));
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            String startedLine = reader.readLine();
+            if (startedLine == null || !startedLine.startsWith("started ")) {
+                return null;
+            }
+            long pid = Long.parseLong(startedLine.substring("started ".length()).trim());
+
+            // rlimits only bound CPU time; a program blocked on sleep or I/O is stopped here
+            long budgetMillis = (long) (cpuTimeLimit * 2000) + 1000;
+            ScheduledFuture<?> kill = watchdog.schedule(
+                    () -> ProcessHandle.of(pid).ifPresent(ProcessHandle::destroyForcibly),
+                    budgetMillis, TimeUnit.MILLISECONDS);
+            String done = reader.readLine();
+            boolean killed = !kill.cancel(false);
+            if (done == null || !done.startsWith("done ")) {
+                double elapsed = (System.nanoTime() - started) / 1_000_000_000.0;
+                return new WorkerRun(1, killed, elapsed, null);
+            }
+
+            String[] fields = done.split(" ");
+            int status = Integer.parseInt(fields[1]);
+            double cpuTime = Double.parseDouble(fields[2]);
+            int memoryKb = Integer.parseInt(fields[3]);
+            // Negative status: killed by that signal (SIGXCPU/SIGKILL from the CPU rlimit or the watchdog)
+            int exitCode = status >= 0 ? status : 128 - status;
+            boolean timedOut = killed
+                    || status == -SIGXCPU
+                    || (status == -SIGKILL && cpuTime >= cpuSeconds);
+            return new WorkerRun(exitCode, timedOut, cpuTime, memoryKb);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Python fork server request failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized void ensureStarted() throws IOException {
+        if (server != null && server.isAlive()) return;
+
+        Files.createDirectories(serverDir);
+        Files.createDirectories(Paths.get(workDir, "runs"));
+        try (InputStream source = getClass().getResourceAsStream("/judge/fork_server.py")) {
+            if (source == null) throw new IOException("judge/fork_server.py is missing from the classpath");
+            Files.write(serverDir.resolve("fork_server.py"), source.readAllBytes());
+        }
+        Files.deleteIfExists(socket);
+        // Children join their run's cgroup themselves, so the sandbox needs the cgroup root writable too
+        List<Path> writable = new ArrayList<>(List.of(serverDir, Paths.get(workDir, "runs")));
+        if (cgroupSandbox.getRootDirectory() != null) {
+            writable.add(cgroupSandbox.getRootDirectory());
+        }
+        List<String> command = localSandbox.wrapWorker(
+                List.of("python3", serverDir.resolve("fork_server.py").toString(), socket.toString()),
+                serverDir, writable);
+        server = new ProcessBuilder(command)
+                .directory(serverDir.toFile())
+                .redirectInput(ProcessBuilder.Redirect.from(Paths.get("/dev/null").toFile()))
+                .redirectError(ProcessBuilder.Redirect.appendTo(serverDir.resolve("server.log").toFile()))
+                .start();
+        // The server prints READY once it is listening
+        BufferedReader ready = new BufferedReader(new InputStreamReader(server.getInputStream(), StandardCharsets.UTF_8));
+        if (!"READY".equals(ready.readLine())) {
+            server.destroyForcibly();
+            throw new IOException("fork server exited during start-up, see " + serverDir.resolve("server.log"));
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (watchdog != null) watchdog.shutdownNow();
+        if (server != null) server.destroyForcibly();
+    }
+}
@@ -0,0 +1,226 @@
+package com.codepvg.code.service;
+
+import com.codepvg.code.model.Problem;
+import com.codepvg.code.model.ShadowResult;
+import com.codepvg.code.model.Submission;
+import com.codepvg.code.repository.ShadowResultRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Shadow judging: after a submission's verdict is final, a sample of submissions is judged again on
+// the other engine (local if the primary was Judge0 and vice versa), in the background. The student
+// only ever sees the primary verdict; per-case disagreements and the latency difference are stored
+// in judge_shadow_results and summarised per language by metrics().
+@Service
+public class ShadowJudgeService {
+
+    @Autowired
+    private LocalExecutionService localExecutionService;
+
+    @Autowired
+    private Judge0ResultPoller judge0ResultPoller;
+
+    @Autowired
+    private Judge0SubmitBatcher judge0SubmitBatcher;
+
+    @Autowired
+    private CodeWrapperService codeWrapperService;
+
+    @Autowired
+    private TestCaseFileStore testCaseFileStore;
+
+    @Autowired
+    private CheckerService checkerService;
+
+    @Autowired
+    private JudgeSpeedCalibrator speedCalibrator;
+
+    @Autowired
+    private ShadowResultRepository shadowResultRepository;
+
+    @Value("${judge.shadow.enabled:false}")
+    private boolean enabled;
+
+    @Value("${judge.shadow.sample-rate:0.05}")
+    private double sampleRate;
+
+    @Value("${judge.shadow.threads:1}")
+    private int threads;
+
+    @Value("${judge.shadow.queue-size:100}")
+    private int queueSize;
+
+    private ThreadPoolExecutor executor;
+    private final Map<String, LanguageStats> stats = new ConcurrentHashMap<>();
+
+    private static final class LanguageStats {
+        private final LongAdder compared = new LongAdder();
+        private final LongAdder mismatched = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder primaryMillis = new LongAdder();
+        private final LongAdder shadowMillis = new LongAdder();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+        // Bounded: when the shadow engine falls behind, samples are dropped rather than queued forever
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "shadow-judge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Called once a submission's verdict has been saved; primaryMillis is how long judging took
+    public void maybeShadow(Submission submission, Problem problem, double timeLimit, long primaryMillis) {
+        if (executor == null || ThreadLocalRandom.current().nextDouble() >= sampleRate) return;
+
+        // The engine recorded on the runs themselves: routing may have changed since (failover, circuit
+        // breaker), and a submission that switched engines part-way has no single primary to compare
+        String primaryEngine = null;
+        for (Submission.TestCaseRun run : submission.getTestCaseRuns()) {
+            if (run.getResult() == null || run.getEngine() == null) continue;
+            if (primaryEngine == null) {
+                primaryEngine = run.getEngine();
+            } else if (!primaryEngine.equals(run.getEngine())) {
+                return;
+            }
+        }
+        if (primaryEngine == null) return;
+        String shadowEngine = primaryEngine.equals(JudgeRouter.LOCAL) ? JudgeRouter.JUDGE0 : JudgeRouter.LOCAL;
+        if (shadowEngine.equals(JudgeRouter.LOCAL) && LocalLanguage.fromLanguageId(submission.getLanguageId()) == null) return;
+
+        try {
+            String engine = primaryEngine;
+            executor.execute(() -> shadow(submission, problem, timeLimit, engine, shadowEngine, primaryMillis));
+        } catch (RejectedExecutionException e) {
+            statsFor(submission.getLanguage()).dropped.increment();
+        }
+    }
+
+    private void shadow(Submission submission, Problem problem, double timeLimit,
+                        String primaryEngine, String shadowEngine, long primaryMillis) {
+        ShadowResult shadowResult = new ShadowResult();
+        shadowResult.setSubmissionId(submission.getId());
+        shadowResult.setProblemId(submission.getProblemId());
+        shadowResult.setLanguage(submission.getLanguage());
+        shadowResult.setLanguageId(submission.getLanguageId());
+        shadowResult.setPrimaryEngine(primaryEngine);
+        shadowResult.setShadowEngine(shadowEngine);
+        shadowResult.setPrimaryMillis(primaryMillis);
+        LanguageStats languageStats = statsFor(submission.getLanguage());
+
+        long started = System.nanoTime();
+        try {
+            String code = codeWrapperService.wrapCodeForProblem(
+                    submission.getSourceCode(), submission.getLanguage(), problem);
+            List<Integer> mismatched = new ArrayList<>();
+            String primaryVerdict = "ACCEPTED";
+            String shadowVerdict = "ACCEPTED";
+            int compared = 0;
+
+            // Only the cases the primary engine actually judged (it stops early on some verdicts)
+            for (Submission.TestCaseRun run : submission.getTestCaseRuns()) {
+                if (run.getResult() == null || run.getEngine() == null
+                        || run.getIndex() >= problem.getTestCases().size()) continue;
+                int index = run.getIndex();
+                Problem.TestCase testCase = problem.getTestCases().get(index);
+
+                Map<String, Object> result = shadowEngine.equals(JudgeRouter.LOCAL)
+                        ? speedCalibrator.normalize(localExecutionService.execute(code, submission.getLanguageId(),
+                                testCaseFileStore.inputFile(problem, index),
+                                problem.getChecker() == null ? testCaseFileStore.expectedOutputFile(problem, index) : null,
+                                speedCalibrator.scaleLimit(timeLimit, JudgeSpeedCalibrator.LOCAL)), JudgeSpeedCalibrator.LOCAL)
+                        : judge0ResultPoller.waitForResult(judge0SubmitBatcher.submitCode(code, submission.getLanguageId(),
+                                testCase.getInput()));
+
+                String primaryCase = classify(run.getResult(), problem, testCase, timeLimit);
+                String shadowCase = classify(result, problem, testCase, timeLimit);
+                if (!primaryCase.equals(shadowCase)) mismatched.add(index);
+                if (primaryVerdict.equals("ACCEPTED")) primaryVerdict = primaryCase;
+                if (shadowVerdict.equals("ACCEPTED")) shadowVerdict = shadowCase;
+                compared++;
+            }
+
+            shadowResult.setPrimaryVerdict(primaryVerdict);
+            shadowResult.setShadowVerdict(shadowVerdict);
+            shadowResult.setMismatchedCases(mismatched);
+            shadowResult.setCasesCompared(compared);
+            shadowResult.setMatch(mismatched.isEmpty());
+            shadowResult.setShadowMillis((System.nanoTime() - started) / 1_000_000);
+
+            languageStats.compared.increment();
+            if (!mismatched.isEmpty()) languageStats.mismatched.increment();
+            languageStats.primaryMillis.add(primaryMillis);
+            languageStats.shadowMillis.add(shadowResult.getShadowMillis());
+        } catch (RuntimeException e) {
+            shadowResult.setShadowError(e.getMessage());
+            shadowResult.setShadowMillis((System.nanoTime() - started) / 1_000_000);
+            languageStats.failed.increment();
+        }
+
+        try {
+            shadowResultRepository.save(shadowResult);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to store shadow result for submission " + submission.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private String classify(Map<String, Object> result, Problem problem, Problem.TestCase testCase, double timeLimit) {
+        return CaseVerdict.classify(result, timeLimit, () -> checkerService.outputAccepted(
+                problem, testCase.getInput(), testCase.getExpectedOutput(), result)).name();
+    }
+
+    private LanguageStats statsFor(String language) {
+        return stats.computeIfAbsent(language != null ? language : "unknown", key -> new LanguageStats());
+    }
+
+    // Per-language agreement and latency since startup
+    public Map<String, Object> metrics() {
+        Map<String, Object> languages = new TreeMap<>();
+        for (Map.Entry<String, LanguageStats> entry : stats.entrySet()) {
+            LanguageStats languageStats = entry.getValue();
+            long compared = languageStats.compared.sum();
+            Map<String, Object> row = new HashMap<>();
+            row.put("compared", compared);
+            row.put("mismatched", languageStats.mismatched.sum());
+            row.put("failed", languageStats.failed.sum());
+            row.put("dropped", languageStats.dropped.sum());
+            row.put("mismatchRate", compared > 0 ? (double) languageStats.mismatched.sum() / compared : 0.0);
+            row.put("avgPrimaryMillis", compared > 0 ? (double) languageStats.primaryMillis.sum() / compared : 0.0);
+            row.put("avgShadowMillis", compared > 0 ? (double) languageStats.shadowMillis.sum() / compared : 0.0);
+            languages.put(entry.getKey(), row);
+        }
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("sampleRate", sampleRate);
+        metrics.put("queued", executor != null ? executor.getQueue().size() : 0);
+        metrics.put("languages", languages);
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) executor.shutdownNow();
+    }
+}
@@ -0,0 +1,80 @@
+package com.codepvg.code.service;
+
+import com.codepvg.code.model.Submission;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Picks up PENDING submissions whose judging lease has expired (the instance judging them was
+// restarted or died) and resumes them from their persisted per-test-case progress.
+@Service
+public class SubmissionRecoveryService {
+
+    @Autowired
+    private SubmissionService submissionService;
+
+    @Value("${judge.recovery.workers:2}")
+    private int recoveryWorkers;
+
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private ExecutorService executor;
+
+    // Runs shortly after startup and then periodically, so submissions orphaned by a peer
+    // instance during a rolling deploy are also recovered once its leases run out
+    @Scheduled(initialDelayString = "${judge.recovery.initial-delay-ms:10000}",
+               fixedDelayString = "${judge.recovery.interval-ms:60000}")
+    public void recoverAbandonedSubmissions() {
+        List<Submission> abandoned;
+        try {
+            abandoned = submissionService.findAbandonedSubmissions();
+        } catch (Exception e) {
+            System.err.println("Submission recovery scan failed: " + e.getMessage());
+            return;
+        }
+
+        for (Submission candidate : abandoned) {
+            if (!inFlight.add(candidate.getId())) {
+                continue;
+            }
+            Optional<Submission> claimed = submissionService.claimForRecovery(candidate.getId());
+            if (!claimed.isPresent()) {
+                // Another instance claimed it (or it finished) in the meantime
+                inFlight.remove(candidate.getId());
+                continue;
+            }
+            executor().submit(() -> {
+                try {
+                    System.out.println("Resuming judging of submission " + candidate.getId());
+                    submissionService.resumeSubmission(claimed.get());
+                } catch (Exception e) {
+                    System.err.println("Failed to resume submission " + candidate.getId() + ": " + e.getMessage());
+                } finally {
+                    inFlight.remove(candidate.getId());
+                }
+            });
+        }
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(1, recoveryWorkers));
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -3,9 +3,15 @@ package com.codepvg.code.service;
 import com.codepvg.code.dto.SubmissionDto;
 import com.codepvg.code.model.Problem;
 import com.codepvg.code.model.Submission;
-import com.codepvg.code.model.User;
 import com.codepvg.code.repository.SubmissionRepository;
+import com.mongodb.client.result.UpdateResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -14,13 +20,33 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 public class SubmissionService {
 
+    // Per-field cap on the program output kept with each test case result
+    private static final int STORED_PREVIEW_CHARS = 1024;
+
     @Autowired
     private SubmissionRepository submissionRepository;
 
+    @Autowired
+    private Judge0ResultPoller judge0ResultPoller;
+
+    @Autowired
+    private Judge0SubmitBatcher judge0SubmitBatcher;
+
+    @Autowired
+    private Judge0HedgedRunner judge0HedgedRunner;
+
+    @Autowired
+    private Judge0ConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private JudgeSpeedCalibrator speedCalibrator;
+
     @Autowired
     private Judge0Service judge0Service;
 
@@ -33,6 +59,42 @@ public class SubmissionService {
     @Autowired
     private CodeWrapperService codeWrapperService;
 
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    @Autowired
+    private ProblemStatsAggregator problemStatsAggregator;
+
+    @Autowired
+    private LocalExecutionService localExecutionService;
+
+    @Autowired
+    private TestCaseFileStore testCaseFileStore;
+
+    @Autowired
+    private JudgeRouter judgeRouter;
+
+    @Autowired
+    private CheckerService checkerService;
+
+    @Autowired
+    private ShadowJudgeService shadowJudgeService;
+
+    @Value("${judge.recovery.lease-seconds:120}")
+    private long judgeLeaseSeconds;
+
+    @Value("${judge.harness.max-cpu-seconds:15}")
+    private double harnessMaxCpuSeconds;
+
+    @Value("${judge.submissions.supersede:false}")
+    private boolean supersedePending;
+
+    @Value("${judge0.delete-cancelled:false}")
+    private boolean deleteCancelledFromJudge0;
+
+    // Submissions this instance is judging, flagged once cancelled; checked between test cases
+    private final Map<String, AtomicBoolean> judging = new ConcurrentHashMap<>();
+
     public Submission submitCode(SubmissionDto submissionDto, String userId) {
         // Create submission record
         Submission submission = new Submission();
@@ -57,10 +119,22 @@ public class SubmissionService {
             throw new RuntimeException("Template validation failed: " + templateValidationError);
         }
         submission.setTotalTestCases(problem.getTestCases().size());
+        submission.setTestCaseRuns(newTestCaseRuns(problem.getTestCases().size()));
+        submission.setJudgeLeaseUntil(nextLeaseDeadline());
 
         // Save initial submission
         submission = submissionRepository.save(submission);
 
+        // Optionally withdraw this user's earlier submissions of the problem that are still judging
+        if (supersedePending) {
+            for (Submission previous : submissionRepository.findByUserIdAndProblemIdAndStatus(
+                    userId, submission.getProblemId(), Submission.SubmissionStatus.PENDING)) {
+                if (!previous.getId().equals(submission.getId())) {
+                    cancelSubmission(previous.getId(), "Superseded by submission " + submission.getId());
+                }
+            }
+        }
+
         // Execute code against test cases
         executeSubmission(submission, problem);
 
@@ -68,6 +142,8 @@ public class SubmissionService {
     }
 
     private void executeSubmission(Submission submission, Problem problem) {
+        long judgingStarted = System.nanoTime();
+        judging.put(submission.getId(), new AtomicBoolean());
         try {
             int passedTestCases = 0;
             boolean allPassed = true;
@@ -81,31 +157,19 @@ public class SubmissionService {
             
             outputBuilder.append("=== Test Case Results ===\n");
 
+            // Opt-in: judge all test cases in one harness run; cases it can't vouch for run one by one below
+            if (codeWrapperService.isHarnessEnabled()) {
+                runHarness(submission, problem, timeLimit);
+            }
+
             for (int i = 0; i < problem.getTestCases().size(); i++) {
+                if (isCancelled(submission)) break;
                 Problem.TestCase testCase = problem.getTestCases().get(i);
                 outputBuilder.append(String.format("Test Case %d:\n", i + 1));
                 
                 try {
-                    // Wrap user code with main function and input/output handling
-                    String wrappedCode = codeWrapperService.wrapCodeForProblem(
-                        submission.getSourceCode(),
-                        submission.getLanguage(),
-                        problem.getTitle(),
-                        "" // Method signature - can be enhanced later
-                    );
-                    
-                    // Submit wrapped code to Judge0
-                    String token = judge0Service.submitCode(
-                        wrappedCode,
-                        submission.getLanguageId(),
-                        testCase.getInput()
-                    );
-
-                    // Wait for execution with timeout
-                    Thread.sleep(2000);
-
-                    // Get result
-                    Map<String, Object> result = judge0Service.getSubmissionResult(token);
+                    // Reuse a result persisted before a restart; otherwise dispatch (or resume) this case
+                    Map<String, Object> result = runTestCase(submission, problem, i);
                     
                     String status = (String) result.get("status");
                     Integer statusId = (Integer) result.get("statusId");
@@ -120,67 +184,55 @@ public class SubmissionService {
                         maxMemoryUsage = Math.max(maxMemoryUsage, memoryUsage);
                     }
 
-                    // Check for Time Limit Exceeded
-                    if (executionTime != null && executionTime > timeLimit) {
-                        allPassed = false;
-                        submission.setStatus(Submission.SubmissionStatus.TIME_LIMIT_EXCEEDED);
-                        outputBuilder.append("❌ Time Limit Exceeded\n");
-                        outputBuilder.append(String.format("Execution Time: %.3fs (Limit: %.1fs)\n", executionTime, timeLimit));
-                        errorBuilder.append("Time Limit Exceeded: Your code took too long to execute.\n");
-                        errorBuilder.append("Consider optimizing your algorithm for better time complexity.\n");
-                        break;
-                    }
-
-                    // Check for Memory Limit Exceeded (default 256MB)
-                    if (memoryUsage != null && memoryUsage > 256000) {
-                        allPassed = false;
-                        submission.setStatus(Submission.SubmissionStatus.MEMORY_LIMIT_EXCEEDED);
-                        outputBuilder.append("❌ Memory Limit Exceeded\n");
-                        outputBuilder.append(String.format("Memory Usage: %d KB (Limit: 256000 KB)\n", memoryUsage));
-                        errorBuilder.append("Memory Limit Exceeded: Your code used too much memory.\n");
-                        break;
-                    }
-
-                    // Handle different Judge0 status codes
-                    switch (statusId) {
-                        case 3: // Accepted
-                            String output = (String) result.get("output");
-                            String expectedOutput = testCase.getExpectedOutput().trim();
-                            String actualOutput = output != null ? output.trim() : "";
-                            
-                            if (actualOutput.equals(expectedOutput)) {
-                                passedTestCases++;
-                                outputBuilder.append("✅ Passed\n");
-                                outputBuilder.append(String.format("Expected: %s\n", expectedOutput));
-                                outputBuilder.append(String.format("Got: %s\n", actualOutput));
-                                if (executionTime != null) {
-                                    outputBuilder.append(String.format("Time: %.3fs\n", executionTime));
-                                }
-                            } else {
-                                allPassed = false;
-                                outputBuilder.append("❌ Wrong Answer\n");
-                                outputBuilder.append(String.format("Expected: %s\n", expectedOutput));
-                                outputBuilder.append(String.format("Got: %s\n", actualOutput));
+                    Submission.SubmissionStatus verdict = CaseVerdict.classify(result, timeLimit,
+                            () -> checkerService.outputAccepted(problem, testCase.getInput(), testCase.getExpectedOutput(), result));
+                    switch (verdict) {
+                        case ACCEPTED:
+                            passedTestCases++;
+                            outputBuilder.append("✅ Passed\n");
+                            outputBuilder.append(String.format("Expected: %s\n", testCase.getExpectedOutput().trim()));
+                            outputBuilder.append(String.format("Got: %s\n", outputOf(result)));
+                            if (executionTime != null) {
+                                outputBuilder.append(String.format("Time: %.3fs\n", executionTime));
                             }
                             break;
 
-                        case 4: // Wrong Answer
+                        case WRONG_ANSWER:
                             allPassed = false;
-                            submission.setStatus(Submission.SubmissionStatus.WRONG_ANSWER);
+                            // A program that ran fine but printed the wrong thing leaves the status to the final verdict
+                            if (!Integer.valueOf(3).equals(statusId)) {
+                                submission.setStatus(Submission.SubmissionStatus.WRONG_ANSWER);
+                            }
                             outputBuilder.append("❌ Wrong Answer\n");
-                            String wrongOutput = (String) result.get("output");
-                            outputBuilder.append(String.format("Expected: %s\n", testCase.getExpectedOutput()));
-                            outputBuilder.append(String.format("Got: %s\n", wrongOutput != null ? wrongOutput : "null"));
+                            outputBuilder.append(String.format("Expected: %s\n", testCase.getExpectedOutput().trim()));
+                            outputBuilder.append(String.format("Got: %s\n", outputOf(result)));
                             break;
 
-                        case 5: // Time Limit Exceeded
+                        case TIME_LIMIT_EXCEEDED:
                             allPassed = false;
                             submission.setStatus(Submission.SubmissionStatus.TIME_LIMIT_EXCEEDED);
                             outputBuilder.append("❌ Time Limit Exceeded\n");
-                            errorBuilder.append("Time Limit Exceeded: Your algorithm is too slow.\n");
+                            if (executionTime != null && executionTime > timeLimit) {
+                                outputBuilder.append(String.format("Execution Time: %.3fs (Limit: %.1fs)\n", executionTime, timeLimit));
+                                errorBuilder.append("Time Limit Exceeded: Your code took too long to execute.\n");
+                                errorBuilder.append("Consider optimizing your algorithm for better time complexity.\n");
+                            } else {
+                                errorBuilder.append("Time Limit Exceeded: Your algorithm is too slow.\n");
+                            }
                             break;
 
-                        case 6: // Compilation Error
+                        case MEMORY_LIMIT_EXCEEDED:
+                            allPassed = false;
+                            submission.setStatus(Submission.SubmissionStatus.MEMORY_LIMIT_EXCEEDED);
+                            outputBuilder.append("❌ Memory Limit Exceeded\n");
+                            if (memoryUsage != null) {
+                                outputBuilder.append(String.format("Memory Usage: %d KB (Limit: %d KB)\n",
+                                        memoryUsage, CaseVerdict.MEMORY_LIMIT_KB));
+                            }
+                            errorBuilder.append("Memory Limit Exceeded: Your code used too much memory.\n");
+                            break;
+
+                        case COMPILATION_ERROR:
                             allPassed = false;
                             submission.setStatus(Submission.SubmissionStatus.COMPILATION_ERROR);
                             String compileError = (String) result.get("compileError");
@@ -188,12 +240,7 @@ public class SubmissionService {
                             errorBuilder.append("Compilation Error:\n").append(compileError != null ? compileError : "Unknown compilation error");
                             break;
 
-                        case 7: // Runtime Error (SIGSEGV)
-                        case 8: // Runtime Error (SIGXFSZ)
-                        case 9: // Runtime Error (SIGFPE)
-                        case 10: // Runtime Error (SIGABRT)
-                        case 11: // Runtime Error (NZEC)
-                        case 12: // Runtime Error (Other)
+                        case RUNTIME_ERROR:
                             allPassed = false;
                             submission.setStatus(Submission.SubmissionStatus.RUNTIME_ERROR);
                             String runtimeError = (String) result.get("error");
@@ -201,33 +248,37 @@ public class SubmissionService {
                             errorBuilder.append("Runtime Error:\n").append(runtimeError != null ? runtimeError : "Unknown runtime error");
                             break;
 
-                        case 13: // Internal Error
-                            allPassed = false;
-                            submission.setStatus(Submission.SubmissionStatus.INTERNAL_ERROR);
-                            outputBuilder.append("❌ Internal Error\n");
-                            errorBuilder.append("Internal Error: Please try again later.");
-                            break;
-
                         default:
                             allPassed = false;
-                            outputBuilder.append("❌ Unknown Error\n");
-                            outputBuilder.append("Status: ").append(status).append("\n");
-                            errorBuilder.append("Unknown Error: ").append(status);
+                            if (Integer.valueOf(13).equals(statusId)) {
+                                submission.setStatus(Submission.SubmissionStatus.INTERNAL_ERROR);
+                                outputBuilder.append("❌ Internal Error\n");
+                                errorBuilder.append("Internal Error: Please try again later.");
+                            } else {
+                                outputBuilder.append("❌ Unknown Error\n");
+                                outputBuilder.append("Status: ").append(status).append("\n");
+                                errorBuilder.append("Unknown Error: ").append(status);
+                            }
                     }
 
                     outputBuilder.append("\n");
 
                 } catch (Exception e) {
+                    // Judge0 unreachable or its circuit open, the local engine failing: not a verdict on the code
                     allPassed = false;
-                    outputBuilder.append("❌ Execution Error\n");
+                    submission.setStatus(Submission.SubmissionStatus.INTERNAL_ERROR);
+                    outputBuilder.append("❌ Internal Error\n");
                     outputBuilder.append("Error: ").append(e.getMessage()).append("\n\n");
-                    errorBuilder.append("Execution Error: ").append(e.getMessage()).append("\n");
+                    errorBuilder.append(e instanceof Judge0ConcurrencyLimiter.OverloadedException
+                            ? "Internal Error: The judge is busy, please resubmit shortly.\n"
+                            : "Internal Error: Please try again later.\n");
                 }
 
                 // If we hit a critical error, stop processing further test cases
                 if (submission.getStatus() == Submission.SubmissionStatus.COMPILATION_ERROR ||
                     submission.getStatus() == Submission.SubmissionStatus.TIME_LIMIT_EXCEEDED ||
-                    submission.getStatus() == Submission.SubmissionStatus.MEMORY_LIMIT_EXCEEDED) {
+                    submission.getStatus() == Submission.SubmissionStatus.MEMORY_LIMIT_EXCEEDED ||
+                    submission.getStatus() == Submission.SubmissionStatus.INTERNAL_ERROR) {
                     break;
                 }
             }
@@ -240,32 +291,359 @@ public class SubmissionService {
             submission.setMemoryUsage(maxMemoryUsage);
 
             // Determine final status if not already set by error conditions
+            boolean solved = false;
             if (submission.getStatus() == Submission.SubmissionStatus.PENDING) {
                 if (allPassed && passedTestCases == problem.getTestCases().size()) {
                     submission.setStatus(Submission.SubmissionStatus.ACCEPTED);
-                    // Update user and problem stats, add to solved problems
-                    updateUserSolvedProblems(submission.getUserId(), submission.getProblemId(), true);
-                    problemService.updateProblemStats(submission.getProblemId(), true);
+                    solved = true;
                 } else {
                     submission.setStatus(Submission.SubmissionStatus.WRONG_ANSWER);
-                    updateUserSolvedProblems(submission.getUserId(), submission.getProblemId(), false);
-                    problemService.updateProblemStats(submission.getProblemId(), false);
                 }
-            } else {
-                // Update stats for failed submissions
-                updateUserSolvedProblems(submission.getUserId(), submission.getProblemId(), false);
-                problemService.updateProblemStats(submission.getProblemId(), false);
             }
 
-            submissionRepository.save(submission);
+            // Persist the verdict before touching stats so a crash in between never re-judges
+            // (and double counts) a submission whose verdict is already final
+            submission.setJudgeLeaseUntil(null);
+            if (isCancelled(submission) || !saveIfPending(submission)) {
+                System.out.println("Submission " + submission.getId() + " was cancelled while judging");
+                return;
+            }
+
+            // An internal error says nothing about the code, so it counts as neither an attempt nor a solve
+            if (submission.getStatus() == Submission.SubmissionStatus.INTERNAL_ERROR) {
+                return;
+            }
+
+            // Update user and problem stats, add to solved problems
+            updateUserSolvedProblems(submission.getUserId(), submission.getProblemId(), solved);
+            problemStatsAggregator.record(submission.getProblemId(), solved);
+
+            // Sampled re-judge on the other engine; never changes the verdict above
+            shadowJudgeService.maybeShadow(submission, problem, timeLimit,
+                    (System.nanoTime() - judgingStarted) / 1_000_000);
 
         } catch (Exception e) {
             submission.setStatus(Submission.SubmissionStatus.INTERNAL_ERROR);
             submission.setError("System error during execution: " + e.getMessage());
-            submissionRepository.save(submission);
+            submission.setJudgeLeaseUntil(null);
+            saveIfPending(submission);
+        } finally {
+            judging.remove(submission.getId());
+        }
+    }
+
+    // Cancels a PENDING submission: no verdict or stats are ever recorded for it, its outstanding
+    // Judge0 tokens stop being polled and, with judge0.delete-cancelled, are deleted where Judge0
+    // allows it. Empty if the submission is not pending any more.
+    public Optional<Submission> cancelSubmission(String submissionId, String reason) {
+        Query query = new Query(Criteria.where("_id").is(submissionId)
+                .and("status").is(Submission.SubmissionStatus.PENDING));
+        Update update = new Update()
+                .set("status", Submission.SubmissionStatus.CANCELLED)
+                .set("error", reason)
+                .set("judgeLeaseUntil", null);
+        Submission cancelled = mongoOperations.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Submission.class);
+        if (cancelled == null) {
+            return Optional.empty();
+        }
+
+        // Judged here: stop between test cases. Judged elsewhere: that instance notices on its next write.
+        markCancelled(submissionId);
+        List<String> tokens = new ArrayList<>();
+        if (cancelled.getHarnessToken() != null) {
+            tokens.add(cancelled.getHarnessToken());
+        }
+        if (cancelled.getTestCaseRuns() != null) {
+            for (Submission.TestCaseRun run : cancelled.getTestCaseRuns()) {
+                if (run.getToken() != null && run.getResult() == null) {
+                    tokens.add(run.getToken());
+                }
+            }
+        }
+        for (String token : tokens) {
+            judge0ResultPoller.cancel(token);
+            if (deleteCancelledFromJudge0 && !judge0Service.deleteSubmission(token)) {
+                System.err.println("Judge0 did not delete token " + token + " of cancelled submission " + submissionId);
+            }
+        }
+        return Optional.of(cancelled);
+    }
+
+    private void markCancelled(String submissionId) {
+        AtomicBoolean flag = judging.get(submissionId);
+        if (flag != null) {
+            flag.set(true);
         }
     }
 
+    private boolean isCancelled(Submission submission) {
+        AtomicBoolean flag = judging.get(submission.getId());
+        return flag != null && flag.get();
+    }
+
+    // Final write of a judged submission; false (and nothing written) if it was cancelled meanwhile
+    private boolean saveIfPending(Submission submission) {
+        Query query = new Query(Criteria.where("_id").is(submission.getId())
+                .and("status").is(Submission.SubmissionStatus.PENDING));
+        return mongoOperations.findAndReplace(query, submission) != null;
+    }
+
+    // Resumes a PENDING submission left behind by a restart. Test cases with a stored result are
+    // not re-run, dispatched ones are polled by token, and only the rest are sent to Judge0 again.
+    public void resumeSubmission(Submission submission) {
+        Optional<Problem> problemOpt = problemService.getProblemById(submission.getProblemId());
+        if (!problemOpt.isPresent()) {
+            submission.setStatus(Submission.SubmissionStatus.INTERNAL_ERROR);
+            submission.setError("System error during execution: Problem not found");
+            submission.setJudgeLeaseUntil(null);
+            // Leaves a submission cancelled in the meantime as it is
+            saveIfPending(submission);
+            return;
+        }
+
+        Problem problem = problemOpt.get();
+        int totalTestCases = problem.getTestCases().size();
+        if (submission.getTestCaseRuns() == null || submission.getTestCaseRuns().size() != totalTestCases) {
+            // Test cases changed (or the submission predates progress tracking): judge from scratch
+            submission.setTestCaseRuns(newTestCaseRuns(totalTestCases));
+        }
+        submission.setTotalTestCases(totalTestCases);
+        executeSubmission(submission, problem);
+    }
+
+    // Claims a PENDING submission for judging if nobody holds a live lease on it
+    public Optional<Submission> claimForRecovery(String submissionId) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = new Query(Criteria.where("_id").is(submissionId)
+                .and("status").is(Submission.SubmissionStatus.PENDING)
+                .orOperator(Criteria.where("judgeLeaseUntil").is(null), Criteria.where("judgeLeaseUntil").lt(now)));
+        Update update = new Update().set("judgeLeaseUntil", nextLeaseDeadline());
+        Submission claimed = mongoOperations.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Submission.class);
+        return Optional.ofNullable(claimed);
+    }
+
+    public List<Submission> findAbandonedSubmissions() {
+        return submissionRepository.findPendingWithExpiredLease(LocalDateTime.now());
+    }
+
+    private void runHarness(Submission submission, Problem problem, double timeLimit) {
+        List<Problem.TestCase> testCases = problem.getTestCases();
+        if (testCases.size() < 2 || !codeWrapperService.supportsHarness(submission.getLanguage())) {
+            return;
+        }
+        // Only for fresh submissions (or a harness run interrupted by a restart), never once
+        // individual test cases have started
+        for (Submission.TestCaseRun run : submission.getTestCaseRuns()) {
+            if (run.getToken() != null) return;
+        }
+
+        try {
+            // One process runs every case, so it gets the summed budget (capped at the judge's maximum)
+            double cpuTimeLimit = Math.min(timeLimit * testCases.size() + 1.0, harnessMaxCpuSeconds);
+            Map<String, Object> harnessResult;
+            String engineKey;
+            String nonce;
+            if (judgeRouter.useLocal(submission.getLanguageId(), problem)) {
+                engineKey = JudgeSpeedCalibrator.LOCAL;
+                nonce = codeWrapperService.newHarnessNonce();
+                harnessResult = localExecutionService.execute(harnessCode(submission, problem), submission.getLanguageId(),
+                        codeWrapperService.harnessHeader(testCases.size(), nonce), testCaseFileStore.harnessFramesFile(problem),
+                        null, speedCalibrator.scaleLimit(cpuTimeLimit, engineKey));
+            } else {
+                // Counts against Judge0's in-flight limit, but is too long to be a latency sample
+                concurrencyLimiter.acquire();
+                try {
+                    String token = submission.getHarnessToken();
+                    nonce = submission.getHarnessNonce();
+                    if (token != null && nonce == null) {
+                        // Dispatched before runs carried a nonce; its output can't be trusted
+                        return;
+                    }
+                    if (token == null) {
+                        nonce = codeWrapperService.newHarnessNonce();
+                        token = judge0SubmitBatcher.submitCode(harnessCode(submission, problem), submission.getLanguageId(),
+                                harnessInput(testCases, nonce), speedCalibrator.scaleJudge0Limit(cpuTimeLimit));
+                        submission.setHarnessToken(token);
+                        submission.setHarnessNonce(nonce);
+                        LocalDateTime leaseUntil = nextLeaseDeadline();
+                        submission.setJudgeLeaseUntil(leaseUntil);
+                        mongoOperations.updateFirst(
+                                new Query(Criteria.where("_id").is(submission.getId())),
+                                new Update().set("harnessToken", token).set("harnessNonce", nonce)
+                                        .set("judge0Token", token).set("judgeLeaseUntil", leaseUntil),
+                                Submission.class);
+                    }
+                    harnessResult = judge0ResultPoller.waitForResult(token);
+                    engineKey = speedCalibrator.engineOf(token);
+                } finally {
+                    concurrencyLimiter.release();
+                }
+            }
+
+            Map<Integer, Map<String, Object>> caseResults = codeWrapperService.parseHarnessOutput(
+                    (String) harnessResult.get("output"), (Integer) harnessResult.get("memoryUsage"), nonce);
+            for (Map.Entry<Integer, Map<String, Object>> entry : caseResults.entrySet()) {
+                if (entry.getKey() < 0 || entry.getKey() >= testCases.size()) continue;
+                Submission.TestCaseRun run = submission.getTestCaseRuns().get(entry.getKey());
+                if (run.getResult() == null) {
+                    // Per-case times come from inside the harness, so they are normalized here
+                    recordResult(submission, problem, run, speedCalibrator.normalize(entry.getValue(), engineKey),
+                            engineKey.equals(JudgeSpeedCalibrator.LOCAL) ? JudgeRouter.LOCAL : JudgeRouter.JUDGE0);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Fall back to running every remaining case on its own
+            System.err.println("Harness run failed for submission " + submission.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private String harnessCode(Submission submission, Problem problem) {
+        return codeWrapperService.wrapCodeInHarness(submission.getSourceCode(), submission.getLanguage(), problem);
+    }
+
+    private String harnessInput(List<Problem.TestCase> testCases, String nonce) {
+        List<String> inputs = new ArrayList<>();
+        for (Problem.TestCase testCase : testCases) {
+            inputs.add(testCase.getInput());
+        }
+        return codeWrapperService.buildHarnessInput(inputs, nonce);
+    }
+
+    private Map<String, Object> runTestCase(Submission submission, Problem problem, int index) {
+        Submission.TestCaseRun run = submission.getTestCaseRuns().get(index);
+        if (run.getResult() != null) {
+            return run.getResult();
+        }
+
+        if (run.getToken() != null) {
+            try {
+                Map<String, Object> result = judge0ResultPoller.waitForResult(run.getToken());
+                return recordResult(submission, problem, run, result, JudgeRouter.JUDGE0);
+            } catch (RuntimeException e) {
+                if (isCancelled(submission)) throw e;
+                // Token expired or unknown to Judge0 (e.g. dispatched long before a restart); send it again
+                System.err.println("Re-dispatching test case " + (index + 1) + " of submission "
+                        + submission.getId() + ": " + e.getMessage());
+            }
+        }
+
+        // Wrap user code with main function and input/output handling
+        String wrappedCode = codeWrapperService.wrapCodeForProblem(
+            submission.getSourceCode(),
+            submission.getLanguage(),
+            problem
+        );
+
+        if (judgeRouter.useLocal(submission.getLanguageId(), problem)) {
+            return runTestCaseLocally(submission, problem, run, wrappedCode);
+        }
+
+        Map<String, Object> result;
+        try {
+            // Submit wrapped code to Judge0 (hedged on another node if it stalls)
+            result = judge0HedgedRunner.run(
+                wrappedCode,
+                submission.getLanguageId(),
+                problem.getTestCases().get(index).getInput(),
+                token -> recordDispatch(submission, run, token)
+            );
+        } catch (RuntimeException e) {
+            // Judge0 down or stuck: judge the case here rather than failing the submission
+            if (isCancelled(submission) || !judgeRouter.canFailOver(submission.getLanguageId())) throw e;
+            System.err.println("Judge0 failed for test case " + (index + 1) + " of submission "
+                    + submission.getId() + ", running it locally: " + e.getMessage());
+            return runTestCaseLocally(submission, problem, run, wrappedCode);
+        }
+        return recordResult(submission, problem, run, result, JudgeRouter.JUDGE0);
+    }
+
+    private Map<String, Object> runTestCaseLocally(Submission submission, Problem problem, Submission.TestCaseRun run,
+                                                   String wrappedCode) {
+        // Runs synchronously, so there is no token to persist before the result. A checker needs the
+        // whole output, so only plain problems compare against the expected output file.
+        Map<String, Object> result = localExecutionService.execute(wrappedCode, submission.getLanguageId(),
+                testCaseFileStore.inputFile(problem, run.getIndex()),
+                problem.getChecker() == null ? testCaseFileStore.expectedOutputFile(problem, run.getIndex()) : null,
+                speedCalibrator.scaleLimit(extractTimeLimitFromConstraints(problem.getConstraints()), JudgeSpeedCalibrator.LOCAL));
+        speedCalibrator.normalize(result, JudgeSpeedCalibrator.LOCAL);
+        return recordResult(submission, problem, run, result, JudgeRouter.LOCAL);
+    }
+
+    private void recordDispatch(Submission submission, Submission.TestCaseRun run, String token) {
+        run.setToken(token);
+        run.setDispatchedAt(LocalDateTime.now());
+        submission.setJudge0Token(token);
+        if (!persistTestCaseRun(submission, run, new Update().set("judge0Token", token))) {
+            // Cancelled before the token was recorded: nobody will wait for this run
+            throw new RuntimeException("Submission cancelled");
+        }
+    }
+
+    // Stores (and returns) the compact form of a case's result: the verdict is settled here, against the
+    // whole output, so the submission document never holds more than a preview of what the program printed
+    private Map<String, Object> recordResult(Submission submission, Problem problem, Submission.TestCaseRun run,
+                                             Map<String, Object> result, String engine) {
+        Map<String, Object> stored = new HashMap<>();
+        for (String key : List.of("status", "statusId", "executionTime", "rawExecutionTime", "memoryUsage",
+                "memoryLimitExceeded")) {
+            if (result.get(key) != null) stored.put(key, result.get(key));
+        }
+        if (Integer.valueOf(3).equals(result.get("statusId"))) {
+            Problem.TestCase testCase = problem.getTestCases().get(run.getIndex());
+            stored.put("passed", checkerService.outputAccepted(problem, testCase.getInput(), testCase.getExpectedOutput(), result));
+        }
+        for (String key : List.of("output", "error", "compileError")) {
+            String text = (String) result.get(key);
+            if (text != null) stored.put(key, preview(text));
+        }
+
+        run.setResult(stored);
+        run.setEngine(engine);
+        run.setCompletedAt(LocalDateTime.now());
+        persistTestCaseRun(submission, run, new Update());
+        return stored;
+    }
+
+    private static String outputOf(Map<String, Object> result) {
+        String output = (String) result.get("output");
+        return output != null ? output.trim() : "";
+    }
+
+    private static String preview(String text) {
+        return text.length() <= STORED_PREVIEW_CHARS ? text
+                : text.substring(0, STORED_PREVIEW_CHARS) + "\n... (truncated)";
+    }
+
+    // Writes only the changed test case slot (and renews the judging lease) instead of the whole document.
+    // False if the submission is no longer pending, i.e. it was cancelled.
+    private boolean persistTestCaseRun(Submission submission, Submission.TestCaseRun run, Update update) {
+        LocalDateTime leaseUntil = nextLeaseDeadline();
+        submission.setJudgeLeaseUntil(leaseUntil);
+        update.set("testCaseRuns." + run.getIndex(), run).set("judgeLeaseUntil", leaseUntil);
+        Query query = new Query(Criteria.where("_id").is(submission.getId())
+                .and("status").is(Submission.SubmissionStatus.PENDING));
+        UpdateResult result = mongoOperations.updateFirst(query, update, Submission.class);
+        if (result.getMatchedCount() == 0) {
+            markCancelled(submission.getId());
+            return false;
+        }
+        return true;
+    }
+
+    private List<Submission.TestCaseRun> newTestCaseRuns(int count) {
+        List<Submission.TestCaseRun> runs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            runs.add(new Submission.TestCaseRun(i));
+        }
+        return runs;
+    }
+
+    private LocalDateTime nextLeaseDeadline() {
+        return LocalDateTime.now().plusSeconds(judgeLeaseSeconds);
+    }
+
     private double extractTimeLimitFromConstraints(java.util.List<String> constraints) {
         if (constraints == null || constraints.isEmpty()) return 2.0; // Default 2 seconds
         
@@ -287,29 +665,7 @@ public class SubmissionService {
 
     private void updateUserSolvedProblems(String userId, String problemId, boolean solved) {
         try {
-            Optional<User> userOpt = userService.getUserById(userId);
-            if (userOpt.isPresent()) {
-                User user = userOpt.get();
-                
-                // Initialize solved problems list if null
-                if (user.getSolvedProblems() == null) {
-                    user.setSolvedProblems(new ArrayList<>());
-                }
-                
-                // Update total submissions
-                user.setTotalSubmissions(user.getTotalSubmissions() + 1);
-                
-                if (solved) {
-                    // Add to solved problems if not already present
-                    if (!user.getSolvedProblems().contains(problemId)) {
-                        user.getSolvedProblems().add(problemId);
-                        user.setTotalSolved(user.getTotalSolved() + 1);
-                    }
-                }
-                
-                user.setUpdatedAt(LocalDateTime.now());
-                userService.saveUser(user);
-            }
+            userService.recordSubmission(userId, problemId, solved);
         } catch (Exception e) {
             // Log error but don't fail the submission
             System.err.println("Error updating user solved problems: " + e.getMessage());
@@ -381,28 +737,34 @@ public class SubmissionService {
                 
                 try {
                     // Convert example input to test case format
-                    String testInput = convertExampleInputToTestFormat(example.getInput());
+                    String testInput = codeWrapperService.exampleInputForSignature(
+                        example.getInput(), problem.getFunctionSignature());
+                    if (testInput == null) {
+                        testInput = convertExampleInputToTestFormat(example.getInput());
+                    }
                     
                     // Wrap user code with main function and input/output handling
                     String wrappedCode = codeWrapperService.wrapCodeForProblem(
                         submissionDto.getSourceCode(),
                         submissionDto.getLanguage(),
-                        problem.getTitle(),
-                        "" // Method signature - can be enhanced later
+                        problem
                     );
                     
-                    // Submit wrapped code to Judge0
-                    String token = judge0Service.submitCode(
-                        wrappedCode,
-                        submissionDto.getLanguageId(),
-                        testInput
-                    );
-
-                    // Wait for execution
-                    Thread.sleep(2000);
-
-                    // Get result
-                    Map<String, Object> judgeResult = judge0Service.getSubmissionResult(token);
+                    Map<String, Object> judgeResult;
+                    if (judgeRouter.useLocal(submissionDto.getLanguageId(), problem)) {
+                        judgeResult = speedCalibrator.normalize(localExecutionService.execute(wrappedCode,
+                            submissionDto.getLanguageId(), testInput, speedCalibrator.scaleLimit(
+                                extractTimeLimitFromConstraints(problem.getConstraints()), JudgeSpeedCalibrator.LOCAL)),
+                            JudgeSpeedCalibrator.LOCAL);
+                    } else {
+                        // Submit wrapped code to Judge0 and wait for execution
+                        judgeResult = judge0HedgedRunner.run(
+                            wrappedCode,
+                            submissionDto.getLanguageId(),
+                            testInput,
+                            token -> { }
+                        );
+                    }
                     
                     String status = (String) judgeResult.get("status");
                     Integer statusId = (Integer) judgeResult.get("statusId");
@@ -424,7 +786,7 @@ public class SubmissionService {
                             String expectedOutput = example.getOutput().trim();
                             String cleanActualOutput = actualOutput != null ? actualOutput.trim() : "";
                             
-                            if (cleanActualOutput.equals(expectedOutput)) {
+                            if (checkerService.outputAccepted(problem, testInput, example.getOutput(), judgeResult)) {
                                 passedExamples++;
                                 outputBuilder.append("✅ Passed\n");
                                 outputBuilder.append(String.format("Your Output: %s\n", cleanActualOutput));
@@ -469,6 +831,9 @@ public class SubmissionService {
                             errorBuilder.append("Execution Error: ").append(status);
                     }
 
+                } catch (Judge0ConcurrencyLimiter.OverloadedException e) {
+                    // No capacity to run the example at all, which is no verdict on the code
+                    throw e;
                 } catch (Exception e) {
                     allExamplesPassed = false;
                     outputBuilder.append("❌ Execution Error\n");
@@ -513,6 +878,11 @@ public class SubmissionService {
                 result.put("status", "WRONG_ANSWER");
             }
 
+        } catch (Judge0ConcurrencyLimiter.OverloadedException e) {
+            result.put("success", false);
+            result.put("status", "INTERNAL_ERROR");
+            result.put("error", e.getMessage());
+            result.put("message", "⏳ The judge is busy right now. Please run your code again shortly.");
         } catch (Exception e) {
             result.put("success", false);
             result.put("error", "Failed to run code: " + e.getMessage());
@@ -0,0 +1,389 @@
+package com.codepvg.code.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Compile-only checks for the editor: javac without annotation processing or code generation (in a
+// warm child JVM, see resources/judge/JavacWorker.java, which is killed and replaced when a check
+// overruns), gcc/g++ -fsyntax-only, and Python's compile(). Runs on its own small pool and never
+// touches Judge0 or Mongo, so using it as a "does this compile" button costs no judge capacity. Code
+// judged on Judge0 is checked against Judge0's Java release, which is older than the server's.
+// gcc reads whatever a source #includes and quotes it in diagnostics, so C/C++ checks are off unless
+// judge.check.native.enabled is set, and even then only run inside the local engine's sandbox.
+@Service
+public class SyntaxCheckService {
+
+    private static final long CHECK_TIMEOUT_MILLIS = 5000;
+    private static final int MAX_DIAGNOSTICS = 50;
+    private static final int MAX_TOOL_OUTPUT = 64 * 1024;
+    private static final Pattern GCC_DIAGNOSTIC = Pattern.compile(
+            "^<stdin>:(\\d+):(\\d+): (fatal error|error|warning): (.*)$", Pattern.MULTILINE);
+    // Prints "<line>:<column>:<message>" if the source doesn't compile, nothing otherwise
+    private static final String PYTHON_CHECK =
+            "import sys\n"
+            + "try:\n"
+            + "    compile(sys.stdin.buffer.read(), 'main.py', 'exec')\n"
+            + "except (SyntaxError, ValueError) as e:\n"
+            + "    print('%s:%s:%s' % (getattr(e, 'lineno', 0) or 0, getattr(e, 'offset', 0) or 0, getattr(e, 'msg', e)))\n";
+
+    @Value("${judge.check.threads:2}")
+    private int threads;
+
+    @Value("${judge.check.queue-size:64}")
+    private int queueSize;
+
+    @Value("${judge.check.native.enabled:false}")
+    private boolean nativeEnabled;
+
+    @Value("${judge.local.work-dir:${java.io.tmpdir}/codepvg-judge}")
+    private String workDir;
+
+    @Value("${judge0.java-release:13}")
+    private String judge0JavaRelease;
+
+    @Autowired
+    private LocalSandbox localSandbox;
+
+    private ThreadPoolExecutor executor;
+    // Feeds stdin to and drains output from the checking tools, so the check thread only waits
+    private ExecutorService toolIo;
+    private JavaCompiler javaCompiler;
+    private Path javacWorkerDir;
+    // Idle javac workers, guarded by itself; one per check thread at most
+    private final Deque<JavacProcess> javacIdle = new ArrayDeque<>();
+
+    private static final class JavacProcess {
+        private Process process;
+        private DataInputStream in;
+        private DataOutputStream out;
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "syntax-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        toolIo = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "syntax-check-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (nativeEnabled && !localSandbox.isIsolated()) {
+            System.err.println("C/C++ syntax checks disabled: they need the local engine's bwrap sandbox");
+            nativeEnabled = false;
+        }
+        javaCompiler = ToolProvider.getSystemJavaCompiler();
+        if (javaCompiler != null) {
+            // Compiling the worker and its first javac task (which loads the compiler) take a while;
+            // pay that before the first student does
+            executor.execute(() -> {
+                try {
+                    compileJavacWorker();
+                    checkJava("public class Main { public static void main(String[] a) {} }", "");
+                } catch (Exception e) {
+                    System.err.println("Java syntax checks unavailable: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    // Diagnostics for the code as it would be compiled for judging (wrapped if it's a signature
+    // problem, and against Judge0's Java release if Judge0 judges it); line numbers refer to the
+    // student's code. Returns null for an unknown language.
+    public Map<String, Object> check(String code, String wrappedCode, Integer languageId, boolean judgedOnJudge0) {
+        LocalLanguage language = LocalLanguage.fromLanguageId(languageId);
+        if (language == null) return null;
+        if ((language == LocalLanguage.C || language == LocalLanguage.CPP) && !nativeEnabled) return null;
+
+        long started = System.nanoTime();
+        Future<List<Map<String, Object>>> future;
+        try {
+            future = executor.submit(() -> {
+                switch (language) {
+                    case JAVA:
+                        return checkJava(wrappedCode, judgedOnJudge0 ? judge0JavaRelease : "");
+                    case PYTHON:
+                        return checkPython(wrappedCode);
+                    default:
+                        return checkNative(language, wrappedCode);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new RuntimeException("Too many syntax checks in progress, try again shortly");
+        }
+
+        List<Map<String, Object>> diagnostics;
+        try {
+            diagnostics = future.get(CHECK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Interrupts the check thread, which kills the tool's process tree (the javac worker for Java)
+            future.cancel(true);
+            throw new RuntimeException("Syntax check timed out");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Syntax check failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Syntax check interrupted", e);
+        }
+
+        // Shift driver-relative lines back onto the student's code
+        int offset = lineOffset(code, wrappedCode);
+        boolean ok = true;
+        for (Map<String, Object> diagnostic : diagnostics) {
+            if ("error".equals(diagnostic.get("severity"))) ok = false;
+            Integer line = (Integer) diagnostic.get("line");
+            if (line != null && offset >= 0) {
+                int shifted = line - offset;
+                diagnostic.put("line", shifted >= 1 && shifted <= countLines(code) ? shifted : null);
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("ok", ok);
+        result.put("language", language.name().toLowerCase(Locale.ROOT));
+        result.put("diagnostics", diagnostics);
+        result.put("timeMs", (System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+
+    // Waits with a real deadline; on timeout or interruption the worker JVM, and with it javac, is killed
+    private List<Map<String, Object>> checkJava(String source, String release) throws IOException, InterruptedException {
+        if (javaCompiler == null) {
+            throw new RuntimeException("javac is not available in this runtime");
+        }
+        JavacProcess worker = takeJavacWorker();
+        boolean healthy = false;
+        try {
+            byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+            worker.out.writeUTF(release);
+            worker.out.writeInt(bytes.length);
+            worker.out.write(bytes);
+            worker.out.flush();
+
+            Future<List<Map<String, Object>>> reply = toolIo.submit(() -> readJavacReply(worker.in));
+            List<Map<String, Object>> diagnostics = reply.get(CHECK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            healthy = true;
+            return diagnostics;
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Syntax check timed out");
+        } catch (ExecutionException e) {
+            throw new IOException("javac worker failed", e.getCause());
+        } finally {
+            if (healthy) {
+                synchronized (javacIdle) {
+                    javacIdle.push(worker);
+                }
+            } else {
+                // A timed-out or interrupted check leaves javac running; only killing its JVM stops it
+                worker.process.descendants().forEach(ProcessHandle::destroyForcibly);
+                worker.process.destroyForcibly();
+            }
+        }
+    }
+
+    private List<Map<String, Object>> readJavacReply(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Map<String, Object>> diagnostics = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long line = in.readLong();
+            long column = in.readLong();
+            boolean error = in.readBoolean();
+            String message = in.readUTF();
+            if (diagnostics.size() < MAX_DIAGNOSTICS) {
+                diagnostics.add(diagnostic(line > 0 ? (int) line : null, column > 0 ? (int) column : null,
+                        error ? "error" : "warning", message));
+            }
+        }
+        return diagnostics;
+    }
+
+    private JavacProcess takeJavacWorker() throws IOException {
+        synchronized (javacIdle) {
+            while (!javacIdle.isEmpty()) {
+                JavacProcess idle = javacIdle.pop();
+                if (idle.process.isAlive()) return idle;
+            }
+        }
+        if (javacWorkerDir == null) {
+            throw new RuntimeException("Java syntax checks are still starting, try again shortly");
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        // Only parses and attributes the source (no annotation processors), but sandboxed like the workers
+        List<String> command = localSandbox.wrapWorker(List.of(java, "-Xmx256m", "-XX:+UseSerialGC",
+                "-cp", javacWorkerDir.toString(), "JavacWorker"), javacWorkerDir, List.of());
+        JavacProcess worker = new JavacProcess();
+        worker.process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        worker.in = new DataInputStream(new BufferedInputStream(worker.process.getInputStream()));
+        worker.out = new DataOutputStream(new BufferedOutputStream(worker.process.getOutputStream()));
+        return worker;
+    }
+
+    private synchronized void compileJavacWorker() throws IOException {
+        Path directory = Paths.get(workDir, "javac-worker");
+        Files.createDirectories(directory);
+        try (InputStream source = getClass().getResourceAsStream("/judge/JavacWorker.java")) {
+            if (source == null) throw new IOException("judge/JavacWorker.java is missing from the classpath");
+            Files.write(directory.resolve("JavacWorker.java"), source.readAllBytes());
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int exitCode = javaCompiler.run(null, output, output, "-encoding", "UTF-8", "-d", directory.toString(),
+                directory.resolve("JavacWorker.java").toString());
+        if (exitCode != 0) {
+            throw new IOException("could not compile the javac worker: " + output.toString(StandardCharsets.UTF_8));
+        }
+        javacWorkerDir = directory;
+    }
+
+    private List<Map<String, Object>> checkNative(LocalLanguage language, String source) throws IOException, InterruptedException {
+        List<String> command = language == LocalLanguage.CPP
+                ? Arrays.asList("g++", "-fsyntax-only", "-std=gnu++17", "-fdiagnostics-color=never", "-x", "c++", "-")
+                : Arrays.asList("gcc", "-fsyntax-only", "-std=gnu11", "-fdiagnostics-color=never", "-x", "c", "-");
+        Path directory = Files.createTempDirectory(Files.createDirectories(Paths.get(workDir, "runs")), "check-");
+        String output;
+        try {
+            output = runTool(localSandbox.wrap(command, directory, List.of(), (int) (CHECK_TIMEOUT_MILLIS / 1000),
+                    true), source);
+        } finally {
+            CompiledArtifactCache.deleteRecursively(directory);
+        }
+
+        List<Map<String, Object>> diagnostics = new ArrayList<>();
+        Matcher matcher = GCC_DIAGNOSTIC.matcher(output);
+        while (matcher.find() && diagnostics.size() < MAX_DIAGNOSTICS) {
+            String severity = matcher.group(3).equals("warning") ? "warning" : "error";
+            diagnostics.add(diagnostic(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)),
+                    severity, matcher.group(4)));
+        }
+        return diagnostics;
+    }
+
+    private List<Map<String, Object>> checkPython(String source) throws IOException, InterruptedException {
+        String output = runTool(Arrays.asList("python3", "-I", "-S", "-c", PYTHON_CHECK), source).trim();
+        List<Map<String, Object>> diagnostics = new ArrayList<>();
+        if (!output.isEmpty()) {
+            String[] parts = output.split(":", 3);
+            int line = Integer.parseInt(parts[0]);
+            int column = Integer.parseInt(parts[1]);
+            diagnostics.add(diagnostic(line > 0 ? line : null, column > 0 ? column : null, "error", parts[2]));
+        }
+        return diagnostics;
+    }
+
+    // Waits with a real deadline; on timeout or interruption the tool and its children are killed
+    private String runTool(List<String> command, String source) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try {
+            toolIo.execute(() -> {
+                try (OutputStream stdin = process.getOutputStream()) {
+                    stdin.write(source.getBytes(StandardCharsets.UTF_8));
+                } catch (IOException ignored) {
+                    // The tool exited without reading everything
+                }
+            });
+            Future<String> output = toolIo.submit(() -> readCapped(process.getInputStream()));
+            if (!process.waitFor(CHECK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Syntax check timed out");
+            }
+            return output.get(CHECK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("could not read the tool's output", e);
+        } finally {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+    }
+
+    // Keeps the first MAX_TOOL_OUTPUT bytes and discards the rest, so the tool never blocks on a full pipe
+    private static String readCapped(InputStream in) throws IOException {
+        ByteArrayOutputStream kept = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            int room = MAX_TOOL_OUTPUT - kept.size();
+            if (room > 0) kept.write(buffer, 0, Math.min(room, read));
+        }
+        return kept.toString(StandardCharsets.UTF_8);
+    }
+
+    private Map<String, Object> diagnostic(Integer line, Integer column, String severity, String message) {
+        Map<String, Object> diagnostic = new HashMap<>();
+        diagnostic.put("line", line);
+        diagnostic.put("column", column);
+        diagnostic.put("severity", severity);
+        diagnostic.put("message", message);
+        return diagnostic;
+    }
+
+    // Lines of wrapper before the student's code, or -1 if it isn't embedded verbatim
+    private int lineOffset(String code, String wrappedCode) {
+        int at = wrappedCode.indexOf(code);
+        if (at < 0) return -1;
+        int lines = 0;
+        for (int i = 0; i < at; i++) {
+            if (wrappedCode.charAt(i) == '\n') lines++;
+        }
+        return lines;
+    }
+
+    private int countLines(String code) {
+        int lines = 1;
+        for (int i = 0; i < code.length(); i++) {
+            if (code.charAt(i) == '\n') lines++;
+        }
+        return lines;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        toolIo.shutdownNow();
+        synchronized (javacIdle) {
+            for (JavacProcess worker : javacIdle) {
+                worker.process.destroyForcibly();
+            }
+            javacIdle.clear();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.codepvg.code.service;
+
+import com.codepvg.code.model.Problem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Test cases written out as files once per problem version for the local engine: <i>.in, <i>.out
+// and harness.frames (all inputs framed for the harness, without the per-run header). Programs read stdin straight from these files
+// and their output is compared against <i>.out through memory-mapped buffers, so big test data isn't
+// copied into a request, a String or a temporary file for every run.
+@Service
+public class TestCaseFileStore {
+
+    @Autowired
+    private CodeWrapperService codeWrapperService;
+
+    @Value("${judge.local.work-dir:${java.io.tmpdir}/codepvg-judge}")
+    private String workDir;
+
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    public Path inputFile(Problem problem, int index) {
+        return materialize(problem).resolve(index + ".in");
+    }
+
+    public Path expectedOutputFile(Problem problem, int index) {
+        return materialize(problem).resolve(index + ".out");
+    }
+
+    public Path harnessFramesFile(Problem problem) {
+        Path versionDir = materialize(problem);
+        Path frames = versionDir.resolve("harness.frames");
+        if (!Files.exists(frames)) {
+            // Version directory written before frames were kept apart from the header
+            synchronized (locks.computeIfAbsent(problem.getId(), id -> new Object())) {
+                if (!Files.exists(frames)) {
+                    Path staging = versionDir.resolve("harness.frames.tmp-" + Thread.currentThread().getId());
+                    try {
+                        List<Path> inputs = new ArrayList<>();
+                        for (int i = 0; i < problem.getTestCases().size(); i++) {
+                            inputs.add(versionDir.resolve(i + ".in"));
+                        }
+                        codeWrapperService.writeHarnessFrames(inputs, staging);
+                        Files.move(staging, frames, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (FileAlreadyExistsException e) {
+                        // Another instance sharing the directory wrote it first
+                    } catch (IOException e) {
+                        throw new RuntimeException("Failed to write harness input for problem " + problem.getId() + ": " + e.getMessage(), e);
+                    } finally {
+                        CompiledArtifactCache.deleteRecursively(staging);
+                    }
+                }
+            }
+        }
+        return frames;
+    }
+
+    // Same rule as comparing output.trim() with expectedOutput.trim(), without reading either file
+    // onto the heap
+    public static boolean sameIgnoringOuterWhitespace(Path actual, Path expected) throws IOException {
+        try (FileChannel actualChannel = FileChannel.open(actual, StandardOpenOption.READ);
+             FileChannel expectedChannel = FileChannel.open(expected, StandardOpenOption.READ)) {
+            if (actualChannel.size() > Integer.MAX_VALUE || expectedChannel.size() > Integer.MAX_VALUE) {
+                return false;
+            }
+            ByteBuffer actualBytes = trimmed(actualChannel.map(FileChannel.MapMode.READ_ONLY, 0, actualChannel.size()));
+            ByteBuffer expectedBytes = trimmed(expectedChannel.map(FileChannel.MapMode.READ_ONLY, 0, expectedChannel.size()));
+            return actualBytes.equals(expectedBytes);
+        }
+    }
+
+    private static ByteBuffer trimmed(ByteBuffer buffer) {
+        int start = 0;
+        int end = buffer.limit();
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') start++;
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') end--;
+        return buffer.slice(start, end - start);
+    }
+
+    private Path materialize(Problem problem) {
+        Path problemDir = Paths.get(workDir, "testcases", problem.getId());
+        Path versionDir = problemDir.resolve("v" + problem.getVersion());
+        if (Files.isDirectory(versionDir)) {
+            return versionDir;
+        }
+
+        synchronized (locks.computeIfAbsent(problem.getId(), id -> new Object())) {
+            if (Files.isDirectory(versionDir)) {
+                return versionDir;
+            }
+            Path staging = problemDir.resolve("v" + problem.getVersion() + ".tmp-" + Thread.currentThread().getId());
+            try {
+                CompiledArtifactCache.deleteRecursively(staging);
+                Files.createDirectories(staging);
+                List<Path> inputs = new ArrayList<>();
+                List<Problem.TestCase> testCases = problem.getTestCases();
+                for (int i = 0; i < testCases.size(); i++) {
+                    Problem.TestCase testCase = testCases.get(i);
+                    Path input = staging.resolve(i + ".in");
+                    Files.write(input, bytes(testCase.getInput()));
+                    Files.write(staging.resolve(i + ".out"), bytes(testCase.getExpectedOutput()));
+                    inputs.add(input);
+                }
+                codeWrapperService.writeHarnessFrames(inputs, staging.resolve("harness.frames"));
+                try {
+                    Files.move(staging, versionDir, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException | AtomicMoveNotSupportedException e) {
+                    // Another instance sharing the directory wrote this version first
+                    if (!Files.isDirectory(versionDir)) throw e;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write test cases for problem " + problem.getId() + ": " + e.getMessage(), e);
+            } finally {
+                CompiledArtifactCache.deleteRecursively(staging);
+            }
+            deleteOlderVersions(problemDir, problem.getVersion());
+            return versionDir;
+        }
+    }
+
+    // Runs already reading an old version keep their open files; only new runs see the new version
+    private void deleteOlderVersions(Path problemDir, long currentVersion) {
+        try (Stream<Path> entries = Files.list(problemDir)) {
+            entries.forEach(entry -> {
+                String name = entry.getFileName().toString();
+                if (!name.matches("v\\d+")) return;
+                if (Long.parseLong(name.substring(1)) < currentVersion) {
+                    CompiledArtifactCache.deleteRecursively(entry);
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Failed to clean up old test cases in " + problemDir + ": " + e.getMessage());
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -3,17 +3,28 @@ package com.codepvg.code.service;
 import com.codepvg.code.dto.AdminRegistrationDto;
 import com.codepvg.code.dto.UserProfile;
 import com.codepvg.code.dto.UserRegistrationDto;
+import com.codepvg.code.model.Submission;
 import com.codepvg.code.model.User;
 import com.codepvg.code.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeSet;
 
 @Service
 public class UserService {
@@ -24,6 +35,12 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
     @Value("${admin.access.code}")
     private String adminAccessCode;
 
@@ -106,6 +123,7 @@ public class UserService {
             user.setStatus(User.UserStatus.APPROVED);
             user.setUpdatedAt(LocalDateTime.now());
             userRepository.save(user);
+            leaderboardService.update(user);
 
             UserProfile userProfiles = new UserProfile();
             userProfiles.setId(userId);
@@ -132,7 +150,9 @@ public class UserService {
             User user = userOpt.get();
             user.setStatus(User.UserStatus.REJECTED);
             user.setUpdatedAt(LocalDateTime.now());
-            return userRepository.save(user);
+            User saved = userRepository.save(user);
+            leaderboardService.update(saved);
+            return saved;
         }
         throw new RuntimeException("User not found");
     }
@@ -141,18 +161,108 @@ public class UserService {
         return userRepository.findAllOrderByLeaderboard();
     }
 
-    public User updateUserStats(String userId, boolean solved) {
-        Optional<User> userOpt = userRepository.findById(userId);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            user.setTotalSubmissions(user.getTotalSubmissions() + 1);
-            if (solved) {
-                user.setTotalSolved(user.getTotalSolved() + 1);
+    // Counts a judged submission with in-place $inc/$addToSet updates rather than rewriting the
+    // user document, so concurrent verdicts for the same user can't lose increments.
+    // Returns true if this submission solved the problem for the first time. The new counters
+    // come back from the same update and re-place the user on the leaderboard.
+    public boolean recordSubmission(String userId, String problemId, boolean solved) {
+        LocalDateTime now = LocalDateTime.now();
+        if (solved) {
+            // Only matches while the problem isn't in solvedProblems yet, so two concurrent
+            // accepts of the same problem count it once
+            User firstSolve = mongoOperations.findAndModify(
+                    LeaderboardService.withStandingFields(
+                            new Query(Criteria.where("_id").is(userId).and("solvedProblems").ne(problemId))),
+                    new Update()
+                            .inc("totalSubmissions", 1)
+                            .inc("totalSolved", 1)
+                            .addToSet("solvedProblems", problemId)
+                            .set("updatedAt", now),
+                    FindAndModifyOptions.options().returnNew(true),
+                    User.class);
+            if (firstSolve != null) {
+                leaderboardService.update(recordAcceptedDay(userId, firstSolve));
+                return true;
             }
-            user.setUpdatedAt(LocalDateTime.now());
-            return userRepository.save(user);
         }
-        throw new RuntimeException("User not found");
+        User updated = mongoOperations.findAndModify(
+                LeaderboardService.withStandingFields(new Query(Criteria.where("_id").is(userId))),
+                new Update().inc("totalSubmissions", 1).set("updatedAt", now),
+                FindAndModifyOptions.options().returnNew(true),
+                User.class);
+        if (solved && updated != null) {
+            updated = recordAcceptedDay(userId, updated);
+        }
+        leaderboardService.update(updated);
+        return false;
+    }
+
+    // Extends the streak if the last accepted day was yesterday, restarts it otherwise, and leaves it
+    // alone if today already counted. Conditional updates keep concurrent accepts from counting a day twice.
+    private User recordAcceptedDay(String userId, User current) {
+        LocalDate today = LocalDate.now();
+        User extended = mongoOperations.findAndModify(
+                LeaderboardService.withStandingFields(new Query(Criteria.where("_id").is(userId)
+                        .and("lastAcceptedDay").is(today.minusDays(1)))),
+                new Update().inc("currentStreak", 1).set("lastAcceptedDay", today),
+                FindAndModifyOptions.options().returnNew(true),
+                User.class);
+        if (extended != null) {
+            mongoOperations.updateFirst(new Query(Criteria.where("_id").is(userId)),
+                    new Update().max("maxStreak", extended.getCurrentStreak()), User.class);
+            extended.setMaxStreak(Math.max(extended.getMaxStreak(), extended.getCurrentStreak()));
+            return extended;
+        }
+        User restarted = mongoOperations.findAndModify(
+                LeaderboardService.withStandingFields(new Query(Criteria.where("_id").is(userId)
+                        .and("lastAcceptedDay").ne(today))),
+                new Update().set("currentStreak", 1).set("lastAcceptedDay", today).max("maxStreak", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                User.class);
+        return restarted != null ? restarted : current;
+    }
+
+    // The stored streak as of today: it stays alive until a whole day passes without an accept
+    public static int currentStreak(int streak, LocalDate lastAcceptedDay) {
+        if (lastAcceptedDay == null) return 0;
+        return lastAcceptedDay.isBefore(LocalDate.now().minusDays(1)) ? 0 : streak;
+    }
+
+    // One-off for users created before streaks were stored: derives them from accepted submissions
+    public void backfillStreaks() {
+        List<User> users = mongoOperations.find(
+                LeaderboardService.withStandingFields(new Query(Criteria.where("maxStreak").exists(false))), User.class);
+        for (User user : users) {
+            Query accepted = new Query(Criteria.where("userId").is(user.getId())
+                    .and("status").is(Submission.SubmissionStatus.ACCEPTED));
+            accepted.fields().include("submittedAt");
+            TreeSet<LocalDate> days = new TreeSet<>();
+            for (Submission submission : mongoOperations.find(accepted, Submission.class)) {
+                if (submission.getSubmittedAt() != null) {
+                    days.add(submission.getSubmittedAt().toLocalDate());
+                }
+            }
+
+            int run = 0;
+            int longest = 0;
+            LocalDate previous = null;
+            for (LocalDate day : days) {
+                run = previous != null && day.equals(previous.plusDays(1)) ? run + 1 : 1;
+                longest = Math.max(longest, run);
+                previous = day;
+            }
+
+            User updated = mongoOperations.findAndModify(
+                    LeaderboardService.withStandingFields(new Query(Criteria.where("_id").is(user.getId())
+                            .and("maxStreak").exists(false))),
+                    new Update().set("currentStreak", run).set("maxStreak", longest).set("lastAcceptedDay", previous),
+                    FindAndModifyOptions.options().returnNew(true),
+                    User.class);
+            leaderboardService.update(updated);
+        }
+        if (!users.isEmpty()) {
+            System.out.println("Backfilled streaks for " + users.size() + " users");
+        }
     }
 
     public List<User> getAllUsers() {
@@ -163,8 +273,19 @@ public class UserService {
         return userRepository.findById(id);
     }
 
+    // Full documents for just these users (e.g. one leaderboard page), keyed by id
+    public Map<String, User> getUsersById(Collection<String> ids) {
+        Map<String, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(ids)) {
+            users.put(user.getId(), user);
+        }
+        return users;
+    }
+
     public User saveUser(User user) {
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        leaderboardService.update(saved);
+        return saved;
     }
 
     public List<User> getApprovedStudents() {
@@ -0,0 +1,25 @@
+package com.codepvg.code.service;
+
+// Outcome of a run on one of the local engine's warm workers (JvmWorkerPool, PythonForkServer).
+// The program's output went to the stdout/stderr files passed to the worker.
+public class WorkerRun {
+    private final int exitCode;
+    private final boolean timedOut;
+    private final double cpuTime;
+    private final Integer memoryUsage;
+
+    WorkerRun(int exitCode, boolean timedOut, double cpuTime, Integer memoryUsage) {
+        this.exitCode = exitCode;
+        this.timedOut = timedOut;
+        this.cpuTime = cpuTime;
+        this.memoryUsage = memoryUsage;
+    }
+
+    // Process-style exit code; 128 + n when the program was killed by signal n
+    public int getExitCode() { return exitCode; }
+    public boolean isTimedOut() { return timedOut; }
+    // Seconds of CPU used by the program (wall time if the worker died mid-run)
+    public double getCpuTime() { return cpuTime; }
+    // Peak memory in KB, or null if the worker died before reporting it
+    public Integer getMemoryUsage() { return memoryUsage; }
+}
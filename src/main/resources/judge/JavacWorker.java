@@ -0,0 +1,82 @@
+import com.sun.source.util.JavacTask;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Long-lived JVM started by SyntaxCheckService (this file is compiled at startup, not part of the
+// application). javac ignores interrupts, so a check that runs away can only be stopped by killing the
+// JVM it runs in; this keeps that JVM warm between checks. Requests arrive on stdin: the --release
+// value ("" for the JDK's own), then the source's length and UTF-8 bytes. The reply on stdout is the
+// diagnostic count, then line, column, error flag and message of each.
+public class JavacWorker {
+
+    private static final int MAX_DIAGNOSTICS = 50;
+    private static final int MAX_MESSAGE = 4000;
+
+    public static void main(String[] args) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+        while (true) {
+            String release;
+            try {
+                release = in.readUTF();
+            } catch (EOFException e) {
+                return;
+            }
+            byte[] source = new byte[in.readInt()];
+            in.readFully(source);
+
+            List<Diagnostic<? extends JavaFileObject>> diagnostics =
+                    analyze(compiler, release, new String(source, StandardCharsets.UTF_8));
+            int count = Math.min(diagnostics.size(), MAX_DIAGNOSTICS);
+            out.writeInt(count);
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.subList(0, count)) {
+                String message = diagnostic.getMessage(Locale.ROOT);
+                out.writeLong(diagnostic.getLineNumber());
+                out.writeLong(diagnostic.getColumnNumber());
+                out.writeBoolean(diagnostic.getKind() == Diagnostic.Kind.ERROR);
+                out.writeUTF(message.length() > MAX_MESSAGE ? message.substring(0, MAX_MESSAGE) : message);
+            }
+            out.flush();
+        }
+    }
+
+    private static List<Diagnostic<? extends JavaFileObject>> analyze(JavaCompiler compiler, String release,
+                                                                     String source) throws IOException {
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///Main.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        List<String> options = new ArrayList<>(List.of("-proc:none", "-Xlint:none"));
+        if (!release.isEmpty()) {
+            options.add("--release");
+            options.add(release);
+        }
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(collector, Locale.ROOT, StandardCharsets.UTF_8)) {
+            JavacTask task = (JavacTask) compiler.getTask(null, fileManager, collector, options, null, List.of(file));
+            // Parse and attribute only: no class files are generated
+            task.analyze();
+        }
+        return collector.getDiagnostics();
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Long-lived JVM started by JvmWorkerPool (this file is compiled at startup, not part of the
+// application). Requests arrive over a Unix socket so the program's own stdin/stdout stay free:
+// each one carries the compiled classes and the files to use as System.in/out/err, and the classes
+// run in a fresh class loader. A run that leaves a thread behind is reported unclean and the pool
+// retires the worker, since that thread would otherwise keep running into the next program's run.
+public class JvmWorker {
+
+    private static final com.sun.management.OperatingSystemMXBean OS =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    private static volatile PrintStream runOut;
+    private static volatile PrintStream runErr;
+
+    public static void main(String[] args) throws Exception {
+        SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(args[0]));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+        // A program calling System.exit ends the worker; its output must still reach the files
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            PrintStream o = runOut, e = runErr;
+            if (o != null) o.flush();
+            if (e != null) e.flush();
+        }));
+
+        warmUp();
+        out.writeUTF("READY");
+        out.flush();
+
+        while (true) {
+            int classCount;
+            try {
+                classCount = in.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            Map<String, byte[]> classes = new HashMap<>();
+            for (int i = 0; i < classCount; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classes.put(name, bytes);
+            }
+            String classPath = in.readUTF();
+            String mainClass = in.readUTF();
+            String stdin = in.readUTF();
+            String stdout = in.readUTF();
+            String stderr = in.readUTF();
+            long timeLimitMillis = in.readLong();
+
+            long[] result = run(classes, classPath, mainClass, stdin, stdout, stderr, timeLimitMillis);
+            out.writeInt((int) result[0]);
+            out.writeBoolean(result[1] != 0);
+            out.writeLong(result[2]);
+            out.writeLong(result[3]);
+            out.writeBoolean(result[4] != 0);
+            out.flush();
+            if (result[1] != 0) {
+                // The runaway thread cannot be stopped safely; the pool replaces this worker
+                Runtime.getRuntime().halt(0);
+            }
+        }
+    }
+
+    // Returns {exitCode, timedOut, cpuNanos, peakHeapKb, clean}
+    private static long[] run(Map<String, byte[]> classes, String classPath, String mainClass,
+                              String stdin, String stdout, String stderr, long timeLimitMillis) throws Exception {
+        // Classes keep a code source so harnesses that reload the entry class per case still work
+        ProtectionDomain domain = new ProtectionDomain(
+                new CodeSource(new File(classPath).toURI().toURL(), (Certificate[]) null), null);
+        ClassLoader loader = new ClassLoader(ClassLoader.getPlatformClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                byte[] bytes = classes.get(name);
+                if (bytes == null) throw new ClassNotFoundException(name);
+                return defineClass(name, bytes, 0, bytes.length, domain);
+            }
+        };
+
+        InputStream originalIn = System.in;
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        InputStream programIn = new BufferedInputStream(new FileInputStream(stdin), 1 << 16);
+        runOut = new PrintStream(new BufferedOutputStream(new FileOutputStream(stdout), 1 << 16), false);
+        runErr = new PrintStream(new BufferedOutputStream(new FileOutputStream(stderr), 1 << 12), true);
+
+        // Start from a collected heap so the peak reflects this program only
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+
+        // Whole-process CPU, so threads the program starts and the GC work it causes are counted too
+        Set<Long> threadsBefore = liveThreads();
+        long cpuBefore = OS.getProcessCpuTime();
+
+        long[] result = new long[5];
+        System.setIn(programIn);
+        System.setOut(runOut);
+        System.setErr(runErr);
+        Thread runner = new Thread(null, () -> {
+            try {
+                Method main = loader.loadClass(mainClass).getMethod("main", String[].class);
+                main.invoke(null, (Object) new String[0]);
+            } catch (InvocationTargetException e) {
+                // Same report a plain "java Main" would print, without the worker's reflection frames
+                Throwable failure = e.getCause();
+                StackTraceElement[] trace = failure.getStackTrace();
+                int depth = 0;
+                while (depth < trace.length && !trace[depth].getClassName().startsWith("jdk.internal.reflect.")
+                        && !trace[depth].getClassName().equals("java.lang.reflect.Method")) {
+                    depth++;
+                }
+                failure.setStackTrace(java.util.Arrays.copyOf(trace, depth));
+                System.err.print("Exception in thread \"main\" ");
+                failure.printStackTrace();
+                result[0] = 1;
+            } catch (Throwable e) {
+                e.printStackTrace();
+                result[0] = 1;
+            }
+        }, "main", 64L << 20);
+        runner.setContextClassLoader(loader);
+        runner.start();
+        runner.join(timeLimitMillis);
+
+        if (runner.isAlive()) {
+            result[1] = 1;
+        }
+        result[2] = OS.getProcessCpuTime() - cpuBefore;
+        result[4] = threadsBefore.containsAll(liveThreads()) ? 1 : 0;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        result[3] = peak / 1024;
+
+        runOut.flush();
+        runErr.flush();
+        System.setIn(originalIn);
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+        if (result[1] == 0) {
+            runOut.close();
+            runErr.close();
+            programIn.close();
+            runOut = null;
+            runErr = null;
+        }
+        return result;
+    }
+
+    private static Set<Long> liveThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) root = root.getParent();
+        Thread[] threads = new Thread[root.activeCount() + 16];
+        int count = root.enumerate(threads, true);
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            if (threads[i].isAlive()) ids.add(threads[i].getId());
+        }
+        return ids;
+    }
+
+    // Load and JIT the library code typical solutions touch, so the first real run doesn't pay for it
+    private static void warmUp() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            java.util.Scanner scanner = new java.util.Scanner("3 4\nhello world\n");
+            int sum = scanner.nextInt() + scanner.nextInt();
+            scanner.nextLine();
+            String line = scanner.nextLine();
+            java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.StringReader(line + "\n" + sum));
+            java.util.StringTokenizer tokens = new java.util.StringTokenizer(reader.readLine());
+            StringBuilder builder = new StringBuilder();
+            while (tokens.hasMoreTokens()) builder.append(tokens.nextToken()).append(' ');
+            builder.append(Integer.parseInt(reader.readLine()));
+            java.util.List<Integer> list = new java.util.ArrayList<>();
+            java.util.Map<String, Integer> map = new java.util.HashMap<>();
+            for (String word : line.split(" ")) {
+                list.add(word.length());
+                map.merge(word, 1, Integer::sum);
+            }
+            java.util.Collections.sort(list);
+            java.util.Arrays.sort(new int[]{sum, 2, 1});
+            new java.util.ArrayDeque<Integer>(list).poll();
+            new java.util.PriorityQueue<Integer>(list).poll();
+            new java.util.TreeMap<String, Integer>(map).firstKey();
+            String.format("%d %s %.2f", sum, builder, 1.5);
+        }
+    }
+}
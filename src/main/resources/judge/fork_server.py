@@ -0,0 +1,162 @@
+# Fork server for the local engine's Python runs, started by PythonForkServer (not part of the
+# application itself). The interpreter starts once with the standard library already imported; each
+# request on the Unix socket forks a child that applies rlimits, redirects stdin/stdout/stderr to the
+# run's files and executes the compiled main.pyc as __main__.
+#
+# Request:  "<main.pyc>\t<stdin>\t<stdout>\t<stderr>\t<working dir>\t<cpu seconds>\t<memory bytes>\t<cgroup.procs or ->\n"
+# Replies:  "started <pid>\n", then "done <exit code, or -signal> <cpu seconds> <peak rss kb>\n"
+
+import atexit
+import builtins
+import marshal
+import os
+import resource
+import selectors
+import signal
+import socket
+import sys
+import traceback
+import types
+
+# What solutions commonly import; the children inherit them already loaded
+import array, bisect, collections, copy, decimal, fractions, functools, heapq, itertools, json, math  # noqa: E401,F401
+import operator, random, re, statistics, string, typing  # noqa: E401,F401
+
+MAX_OUTPUT_BYTES = 64 * 1024 * 1024
+
+
+def run_child(script, stdin, stdout, stderr, workdir, cpu_seconds, memory_bytes, cgroup_procs):
+    signal.set_wakeup_fd(-1)
+    signal.signal(signal.SIGCHLD, signal.SIG_DFL)
+    if cgroup_procs != '-':
+        # Join the run's cgroup before doing anything it should account for
+        with open(cgroup_procs, 'w') as procs:
+            procs.write(str(os.getpid()))
+    resource.setrlimit(resource.RLIMIT_CPU, (cpu_seconds, cpu_seconds + 1))
+    resource.setrlimit(resource.RLIMIT_AS, (memory_bytes, memory_bytes))
+    resource.setrlimit(resource.RLIMIT_FSIZE, (MAX_OUTPUT_BYTES, MAX_OUTPUT_BYTES))
+
+    for fd, path, flags in ((0, stdin, os.O_RDONLY),
+                            (1, stdout, os.O_WRONLY | os.O_CREAT | os.O_TRUNC),
+                            (2, stderr, os.O_WRONLY | os.O_CREAT | os.O_TRUNC)):
+        opened = os.open(path, flags, 0o644)
+        os.dup2(opened, fd)
+        os.close(opened)
+    # Drop the server's socket and the other requests' connections
+    os.closerange(3, 65536)
+    os.chdir(workdir)
+
+    sys.stdin = open(0, 'r', closefd=False)
+    sys.stdout = open(1, 'w', closefd=False)
+    sys.stderr = open(2, 'w', buffering=1, closefd=False)
+    sys.argv = [script]
+
+    with open(script, 'rb') as compiled:
+        code = marshal.loads(compiled.read()[16:])
+    main = types.ModuleType('__main__')
+    main.__file__ = script
+    main.__builtins__ = builtins
+    sys.modules['__main__'] = main
+
+    status = 0
+    try:
+        exec(code, main.__dict__)
+    except SystemExit as e:
+        if e.code is None:
+            status = 0
+        elif isinstance(e.code, int):
+            status = e.code
+        else:
+            print(e.code, file=sys.stderr)
+            status = 1
+    except BaseException as e:
+        # Same report "python3 main.py" would print, minus this file's frame
+        traceback.print_exception(type(e), e, e.__traceback__.tb_next)
+        status = 1
+    try:
+        atexit._run_exitfuncs()
+        sys.stdout.flush()
+        sys.stderr.flush()
+    except BaseException:
+        status = status or 1
+    os._exit(status & 0xFF)
+
+
+def read_request(conn):
+    conn.settimeout(5)
+    data = b''
+    while not data.endswith(b'\n'):
+        chunk = conn.recv(4096)
+        if not chunk:
+            raise ConnectionError('request truncated')
+        data += chunk
+    fields = data.decode('utf-8').rstrip('\n').split('\t')
+    return fields[:5] + [int(fields[5]), int(fields[6]), fields[7]]
+
+
+def main():
+    path = sys.argv[1]
+    server = socket.socket(socket.AF_UNIX, socket.SOCK_STREAM)
+    server.bind(path)
+    server.listen(64)
+
+    # SIGCHLD wakes the selector through this pipe, so finished children are reaped promptly
+    wakeup_read, wakeup_write = os.pipe()
+    os.set_blocking(wakeup_read, False)
+    os.set_blocking(wakeup_write, False)
+    signal.set_wakeup_fd(wakeup_write)
+    signal.signal(signal.SIGCHLD, lambda signum, frame: None)
+
+    selector = selectors.DefaultSelector()
+    selector.register(server, selectors.EVENT_READ)
+    selector.register(wakeup_read, selectors.EVENT_READ)
+    running = {}
+
+    print('READY', flush=True)
+    while True:
+        for key, _ in selector.select():
+            if key.fileobj is server:
+                conn, _ = server.accept()
+                try:
+                    request = read_request(conn)
+                except (OSError, ValueError, IndexError):
+                    conn.close()
+                    continue
+                pid = os.fork()
+                if pid == 0:
+                    try:
+                        run_child(*request)
+                    finally:
+                        os._exit(1)
+                running[pid] = conn
+                try:
+                    conn.sendall(('started %d\n' % pid).encode())
+                except OSError:
+                    pass
+            else:
+                try:
+                    while os.read(wakeup_read, 4096):
+                        pass
+                except BlockingIOError:
+                    pass
+                while running:
+                    try:
+                        pid, status, usage = os.wait4(-1, os.WNOHANG)
+                    except ChildProcessError:
+                        break
+                    if pid == 0:
+                        break
+                    conn = running.pop(pid, None)
+                    if conn is None:
+                        continue
+                    reply = 'done %d %.6f %d\n' % (os.waitstatus_to_exitcode(status),
+                                                   usage.ru_utime + usage.ru_stime, usage.ru_maxrss)
+                    try:
+                        conn.sendall(reply.encode())
+                    except OSError:
+                        pass
+                    conn.close()
+
+
+if __name__ == '__main__':
+    main()
@@ -0,0 +1,78 @@
+package com.codepvg.code.service;
+
+import com.codepvg.code.model.Submission.SubmissionStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class CaseVerdictTest {
+
+    @Test
+    void acceptedRunsAreJudgedOnTheirOutput() {
+        assertEquals(SubmissionStatus.ACCEPTED, CaseVerdict.classify(result(3, 0.1, 1000), 2.0, () -> true));
+        assertEquals(SubmissionStatus.WRONG_ANSWER, CaseVerdict.classify(result(3, 0.1, 1000), 2.0, () -> false));
+    }
+
+    @Test
+    void judgeStatusesMapToVerdicts() {
+        assertEquals(SubmissionStatus.WRONG_ANSWER, classify(4));
+        assertEquals(SubmissionStatus.TIME_LIMIT_EXCEEDED, classify(5));
+        assertEquals(SubmissionStatus.COMPILATION_ERROR, classify(6));
+        for (int statusId = 7; statusId <= 12; statusId++) {
+            assertEquals(SubmissionStatus.RUNTIME_ERROR, classify(statusId));
+        }
+        assertEquals(SubmissionStatus.INTERNAL_ERROR, classify(13));
+        assertEquals(SubmissionStatus.INTERNAL_ERROR, classify(1));
+    }
+
+    @Test
+    void missingStatusIsAnInternalError() {
+        assertEquals(SubmissionStatus.INTERNAL_ERROR, CaseVerdict.classify(result(null, 0.1, 1000), 2.0, () -> true));
+    }
+
+    @Test
+    void timeLimitIsCheckedBeforeAnythingElse() {
+        Map<String, Object> slow = result(3, 2.5, CaseVerdict.MEMORY_LIMIT_KB + 1);
+        slow.put("memoryLimitExceeded", true);
+
+        assertEquals(SubmissionStatus.TIME_LIMIT_EXCEEDED, CaseVerdict.classify(slow, 2.0, () -> true));
+        assertEquals(SubmissionStatus.TIME_LIMIT_EXCEEDED, CaseVerdict.classify(result(6, 2.5, 0), 2.0, () -> true));
+        // Exactly the limit still passes
+        assertEquals(SubmissionStatus.ACCEPTED, CaseVerdict.classify(result(3, 2.0, 1000), 2.0, () -> true));
+    }
+
+    @Test
+    void memoryLimitComesFromUsageOrTheEnginesFlag() {
+        assertEquals(SubmissionStatus.MEMORY_LIMIT_EXCEEDED,
+                CaseVerdict.classify(result(3, 0.1, CaseVerdict.MEMORY_LIMIT_KB + 1), 2.0, () -> true));
+        assertEquals(SubmissionStatus.ACCEPTED,
+                CaseVerdict.classify(result(3, 0.1, CaseVerdict.MEMORY_LIMIT_KB), 2.0, () -> true));
+
+        // A cgroup OOM kill reports the run as a runtime error
+        Map<String, Object> killed = result(11, 0.1, null);
+        killed.put("memoryLimitExceeded", true);
+        assertEquals(SubmissionStatus.MEMORY_LIMIT_EXCEEDED, CaseVerdict.classify(killed, 2.0, () -> true));
+    }
+
+    @Test
+    void outputIsOnlyComparedForAcceptedRuns() {
+        CaseVerdict.classify(result(11, 0.1, 1000), 2.0, () -> fail("compared a failed run's output"));
+        CaseVerdict.classify(result(3, 9.0, 1000), 2.0, () -> fail("compared a timed-out run's output"));
+    }
+
+    private static SubmissionStatus classify(int statusId) {
+        return CaseVerdict.classify(result(statusId, 0.1, 1000), 2.0, () -> true);
+    }
+
+    private static Map<String, Object> result(Integer statusId, Double executionTime, Integer memoryUsage) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("statusId", statusId);
+        result.put("executionTime", executionTime);
+        result.put("memoryUsage", memoryUsage);
+        return result;
+    }
+}
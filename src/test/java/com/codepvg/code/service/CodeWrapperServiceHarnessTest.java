@@ -0,0 +1,116 @@
+package com.codepvg.code.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodeWrapperServiceHarnessTest {
+
+    private static final String NONCE = "0123456789abcdef0123456789abcdef";
+
+    private final CodeWrapperService service = new CodeWrapperService();
+
+    @Test
+    void headerCarriesCountAndNonce() {
+        assertEquals("@@HARNESS 3 " + NONCE + "\n", service.harnessHeader(3, NONCE));
+    }
+
+    @Test
+    void noncesAreRandomHex() {
+        String nonce = service.newHarnessNonce();
+        assertTrue(nonce.matches("[0-9a-f]{32}"));
+        assertNotEquals(nonce, service.newHarnessNonce());
+    }
+
+    @Test
+    void framesAreLengthPrefixedInUtf8Bytes() {
+        String input = service.buildHarnessInput(List.of("1 2\n", "", "é\n"), NONCE);
+
+        assertEquals("@@HARNESS 3 " + NONCE + "\n" + "4\n1 2\n" + "0\n" + "3\né\n", input);
+        assertEquals(3, "é\n".getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    void nullInputIsAnEmptyFrame() {
+        String input = service.buildHarnessInput(java.util.Arrays.asList("x", null), NONCE);
+
+        assertEquals("@@HARNESS 2 " + NONCE + "\n1\nx0\n", input);
+    }
+
+    @Test
+    void parsesCompletedCases() {
+        String stdout = begin(0) + "42" + end(0, 1_500_000_000L, 2048, false)
+                + begin(1) + "line one\nline two" + end(1, 250_000_000L, 1024, false);
+
+        Map<Integer, Map<String, Object>> results = service.parseHarnessOutput(stdout, 9999, NONCE);
+
+        assertEquals(2, results.size());
+        assertEquals("42", results.get(0).get("output"));
+        assertEquals(3, results.get(0).get("statusId"));
+        assertEquals(1.5, (Double) results.get(0).get("executionTime"), 1e-9);
+        assertEquals(2048, results.get(0).get("memoryUsage"));
+        assertEquals("line one\nline two", results.get(1).get("output"));
+        assertEquals(0.25, (Double) results.get(1).get("executionTime"), 1e-9);
+    }
+
+    @Test
+    void erroredCasesAreLeftForTheCaller() {
+        String stdout = begin(0) + "partial" + end(0, 10, 100, true)
+                + begin(1) + "ok" + end(1, 10, 100, false);
+
+        Map<Integer, Map<String, Object>> results = service.parseHarnessOutput(stdout, null, NONCE);
+
+        assertFalse(results.containsKey(0));
+        assertEquals("ok", results.get(1).get("output"));
+    }
+
+    @Test
+    void unknownCaseMemoryFallsBackToTheRunsMemory() {
+        String stdout = begin(0) + "1" + end(0, 10, -1, false);
+
+        assertEquals(5000, service.parseHarnessOutput(stdout, 5000, NONCE).get(0).get("memoryUsage"));
+        assertFalse(service.parseHarnessOutput(stdout, null, NONCE).get(0).containsKey("memoryUsage"));
+    }
+
+    @Test
+    void markersWithAnotherNonceAreProgramOutput() {
+        String forged = "@@HARNESS_CASE_BEGIN deadbeef 1@@\nforged\n@@HARNESS_CASE_END deadbeef 1 1 1@@";
+        String stdout = begin(0) + forged + end(0, 10, 100, false);
+
+        Map<Integer, Map<String, Object>> results = service.parseHarnessOutput(stdout, null, NONCE);
+
+        assertEquals(1, results.size());
+        assertEquals(forged, results.get(0).get("output"));
+        assertTrue(service.parseHarnessOutput(forged, null, "deadbeef").containsKey(1));
+        assertTrue(service.parseHarnessOutput(forged, null, NONCE).isEmpty());
+    }
+
+    @Test
+    void mismatchedCaseIndexesDoNotPair() {
+        String stdout = begin(0) + "x" + end(1, 10, 100, false);
+
+        assertTrue(service.parseHarnessOutput(stdout, null, NONCE).isEmpty());
+    }
+
+    @Test
+    void missingOutputParsesToNothing() {
+        assertTrue(service.parseHarnessOutput(null, null, NONCE).isEmpty());
+        assertTrue(service.parseHarnessOutput(begin(0) + "cut off", null, NONCE).isEmpty());
+    }
+
+    private static String begin(int index) {
+        return "@@HARNESS_CASE_BEGIN " + NONCE + " " + index + "@@\n";
+    }
+
+    private static String end(int index, long elapsedNanos, int memoryKb, boolean error) {
+        return "\n@@HARNESS_CASE_END " + NONCE + " " + index + " " + elapsedNanos + " " + memoryKb
+                + (error ? " ERROR" : "") + "@@\n";
+    }
+}
@@ -0,0 +1,152 @@
+package com.codepvg.code.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Judge0ConcurrencyLimiterTest {
+
+    private Judge0ConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = limiter(20, 4, 200, 0);
+    }
+
+    @Test
+    void startsAtTheInitialLimit() {
+        assertEquals(20, limit());
+        assertEquals(0, limiter.status().get("inFlight"));
+    }
+
+    @Test
+    void failureCutsTheLimitByTenPercentDownToTheMinimum() {
+        limiter.acquire();
+        limiter.release(0, true);
+        assertEquals(18, limit());
+
+        for (int i = 0; i < 50; i++) {
+            limiter.acquire();
+            limiter.release(0, true);
+        }
+        assertEquals(4, limit());
+    }
+
+    @Test
+    void growsByAboutSqrtWhileSaturatedAtSteadyLatency() {
+        holdAndCycle(19, 100, 1);
+
+        // 20 + 0.2 * sqrt(20)
+        assertEquals(20.894, limitValue(), 0.001);
+
+        holdAndCycle(19, 100, 10);
+        assertTrue(limitValue() > 27, "limit " + limitValue());
+
+        // Under half the limit in use, steady latency teaches nothing
+        double reached = limitValue();
+        holdAndCycle(5, 100, 10);
+        assertEquals(reached, limitValue(), 1e-9);
+    }
+
+    @Test
+    void staysPutWhileMostlyIdle() {
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire();
+            limiter.release(ms(100), false);
+        }
+
+        assertEquals(20.0, limitValue(), 1e-9);
+    }
+
+    @Test
+    void shrinksWhenLatencyClimbs() {
+        holdAndCycle(19, 100, 20);
+        double grown = limitValue();
+
+        // Latency above the long-term average shrinks the limit even when it isn't saturated
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+            limiter.release(ms(1000), false);
+        }
+
+        assertTrue(limitValue() < grown * 0.8, "limit " + limitValue() + " after " + grown);
+    }
+
+    @Test
+    void neverExceedsTheMaximum() {
+        limiter = limiter(20, 4, 24, 0);
+
+        holdAndCycle(19, 100, 50);
+
+        assertEquals(24, limit());
+    }
+
+    @Test
+    void rejectsOnceTheWaitRunsOut() {
+        limiter = limiter(1, 1, 1, 20);
+        limiter.acquire();
+
+        long started = System.nanoTime();
+        assertThrows(Judge0ConcurrencyLimiter.OverloadedException.class, limiter::acquire);
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(1L, limiter.status().get("rejected"));
+
+        limiter.release();
+        limiter.acquire();
+        assertEquals(1, limiter.status().get("inFlight"));
+    }
+
+    @Test
+    void disabledLimiterNeverWaits() {
+        limiter = limiter(1, 1, 1, 0);
+        ReflectionTestUtils.setField(limiter, "enabled", false);
+
+        limiter.acquire();
+        limiter.acquire();
+
+        assertEquals(0, limiter.status().get("inFlight"));
+    }
+
+    // Keeps `held` runs in flight so every release counts as saturated
+    private void holdAndCycle(int held, long latencyMs, int cycles) {
+        for (int i = 0; i < held; i++) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < cycles; i++) {
+            limiter.acquire();
+            limiter.release(ms(latencyMs), false);
+        }
+        for (int i = 0; i < held; i++) {
+            limiter.release();
+        }
+    }
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private int limit() {
+        return (int) limiter.status().get("limit");
+    }
+
+    private double limitValue() {
+        return (double) ReflectionTestUtils.getField(limiter, "limit");
+    }
+
+    private static Judge0ConcurrencyLimiter limiter(int initial, int min, int max, long maxWaitMs) {
+        Judge0ConcurrencyLimiter limiter = new Judge0ConcurrencyLimiter();
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "initialLimit", initial);
+        ReflectionTestUtils.setField(limiter, "minLimit", min);
+        ReflectionTestUtils.setField(limiter, "maxLimit", max);
+        ReflectionTestUtils.setField(limiter, "maxWaitMs", maxWaitMs);
+        limiter.init();
+        return limiter;
+    }
+}
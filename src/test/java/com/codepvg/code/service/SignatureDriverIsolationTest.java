@@ -0,0 +1,159 @@
+package com.codepvg.code.service;
+
+import com.codepvg.code.model.Problem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Runs the generated signature drivers for real (skipped where the toolchain is missing): every case must
+// start from fresh program state, and a case that throws or exits must not take the others with it.
+// Cases: x=1 s="ab", x=2 s="", x=7 (throws), x=9 (exits where the language allows it), x=3 s="abc".
+class SignatureDriverIsolationTest {
+
+    private static final List<String> INPUTS = List.of("1\n\"ab\"\n", "2\n\"\"\n", "7\nx\n", "9\nx\n", "3\nabc\n");
+
+    private final CodeWrapperService service = new CodeWrapperService();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void pythonCasesDoNotShareState() throws Exception {
+        assumeTrue(available("python3", "--version"));
+        String solution = "seen = []\n"
+                + "class Solution:\n"
+                + "    calls = 0\n"
+                + "    def count(self, x, s):\n"
+                + "        Solution.calls += 1\n"
+                + "        seen.append(x)\n"
+                + "        if x == 7: raise ValueError('boom')\n"
+                + "        if x == 9:\n"
+                + "            import os\n"
+                + "            os._exit(3)\n"
+                + "        return Solution.calls * 100 + len(seen) * 10 + len(s)\n";
+        Path driver = dir.resolve("main.py");
+        Files.writeString(driver, service.wrapCodeInHarness(solution, "python", problem()));
+
+        Map<Integer, Map<String, Object>> results = run(List.of("python3", driver.toString()));
+
+        assertOutputs(results, "112", "110", "113");
+    }
+
+    @Test
+    void cppCasesDoNotShareState() throws Exception {
+        assumeTrue(available("g++", "--version"));
+        String solution = "static int calls = 0;\n"
+                + "class Solution {\n"
+                + "public:\n"
+                + "    int count(int x, string s) {\n"
+                + "        calls++;\n"
+                + "        if (x == 7) throw runtime_error(\"boom\");\n"
+                + "        if (x == 9) abort();\n"
+                + "        return calls * 100 + (int) s.size();\n"
+                + "    }\n"
+                + "};\n";
+        Path source = dir.resolve("main.cpp");
+        Path binary = dir.resolve("main");
+        Files.writeString(source, service.wrapCodeInHarness(solution, "cpp", problem()));
+        compile(List.of("g++", "-O0", "-o", binary.toString(), source.toString()));
+
+        Map<Integer, Map<String, Object>> results = run(List.of(binary.toString()));
+
+        assertOutputs(results, "102", "100", "103");
+    }
+
+    @Test
+    void javaCasesDoNotShareState() throws Exception {
+        String javac = Paths.get(System.getProperty("java.home"), "bin", "javac").toString();
+        assumeTrue(available(javac, "-version"));
+        String solution = "class Solution {\n"
+                + "    static int calls = 0;\n"
+                + "    public int count(int x, String s) {\n"
+                + "        calls++;\n"
+                + "        if (x == 7) throw new IllegalStateException(\"boom\");\n"
+                + "        return calls * 100 + x * 10 + s.length();\n"
+                + "    }\n"
+                + "}\n";
+        Path source = dir.resolve("Main.java");
+        Files.writeString(source, service.wrapCodeInHarness(solution, "java", problem()));
+        compile(List.of(javac, "-d", dir.toString(), source.toString()));
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Map<Integer, Map<String, Object>> results = run(List.of(java, "-cp", dir.toString(), "Main"));
+
+        assertFalse(results.containsKey(2));
+        assertEquals("191", output(results, 3));
+        assertEquals("112", output(results, 0));
+        assertEquals("120", output(results, 1));
+        assertEquals("133", output(results, 4));
+    }
+
+    private static void assertOutputs(Map<Integer, Map<String, Object>> results, String first, String second,
+                                      String last) {
+        assertFalse(results.containsKey(2), "the throwing case must be reported as an error");
+        assertFalse(results.containsKey(3), "the exiting case must be reported as an error");
+        assertEquals(first, output(results, 0));
+        assertEquals(second, output(results, 1));
+        assertEquals(last, output(results, 4));
+    }
+
+    private static String output(Map<Integer, Map<String, Object>> results, int index) {
+        assertTrue(results.containsKey(index), "case " + index + " missing from " + results.keySet());
+        return ((String) results.get(index).get("output")).trim();
+    }
+
+    private Map<Integer, Map<String, Object>> run(List<String> command) throws Exception {
+        String nonce = service.newHarnessNonce();
+        Path input = dir.resolve("stdin");
+        Files.writeString(input, service.buildHarnessInput(INPUTS, nonce));
+        Process process = new ProcessBuilder(command)
+                .redirectInput(input.toFile())
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        String stdout = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS), "driver did not finish");
+        return service.parseHarnessOutput(stdout, null, nonce);
+    }
+
+    private static void compile(List<String> command) throws Exception {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(120, TimeUnit.SECONDS) && process.exitValue() == 0, output);
+    }
+
+    private static boolean available(String... command) {
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            return process.waitFor(30, TimeUnit.SECONDS) && process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Problem problem() {
+        Problem problem = new Problem();
+        List<Problem.Parameter> parameters = new ArrayList<>();
+        parameters.add(new Problem.Parameter("x", "int"));
+        parameters.add(new Problem.Parameter("s", "string"));
+        problem.setFunctionSignature(new Problem.FunctionSignature("count", "int", parameters));
+        return problem;
+    }
+}